@@ -12,7 +12,7 @@ if not exist target\classes (
 )
 
 echo Компиляция проекта...
-javac -d target/classes -encoding UTF-8 -sourcepath src/main src/main/*.java src/main/model/*.java src/main/service/*.java src/main/util/*.java
+javac -d target/classes -encoding UTF-8 -sourcepath src/main src/main/*.java src/main/model/*.java src/main/service/*.java src/main/server/*.java src/main/util/*.java src/main/load/*.java
 
 if %ERRORLEVEL% NEQ 0 (
     echo.
@@ -0,0 +1,69 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import service.LinkService;
+import service.ShortUrlGenerator;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Создание ссылок и генерация кодов. Сервис пересоздается на каждой итерации,
+ * чтобы число ссылок не росло неограниченно; {@code linkCount} — сколько ссылок
+ * уже есть в сервисе до начала измерения.
+ */
+@State(Scope.Benchmark)
+public class CreateBenchmark {
+
+    @Param({"0", "1000000"})
+    public int linkCount;
+
+    @Param({"heap", "compact"})
+    public String engine;
+
+    @Param({"random", "sequential"})
+    public String generator;
+
+    private LinkService service;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = Workload.newService(engine, generator);
+        Workload.populate(service, linkCount, 42);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    /**
+     * Владелец и счетчик ссылок потока
+     */
+    @State(Scope.Thread)
+    public static class Owner {
+        final UUID userId = UUID.randomUUID();
+        int next = ThreadLocalRandom.current().nextInt();
+    }
+
+    @Benchmark
+    public String createShortLink(Owner owner) {
+        return service.createShortLink(Workload.url(owner.next++), owner.userId, 100);
+    }
+
+    @Benchmark
+    public String generateShortUrl(Owner owner) {
+        return ShortUrlGenerator.generateShortUrl(owner.userId);
+    }
+
+    @Benchmark
+    public String sequentialShortUrl(Owner owner) {
+        return ShortUrlGenerator.sequentialShortUrl(owner.next++ & Long.MAX_VALUE, owner.userId);
+    }
+}
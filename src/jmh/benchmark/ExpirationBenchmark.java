@@ -0,0 +1,57 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import service.ExpirationIndex;
+
+import java.util.SplittableRandom;
+
+/**
+ * Очистка просроченных ссылок: постановка ссылок в {@link ExpirationIndex} и
+ * выборка истекших. Время указано на одну ссылку.
+ */
+@State(Scope.Benchmark)
+public class ExpirationBenchmark {
+    private static final int BATCH = 100_000;
+
+    // Точность индекса, мс
+    @Param({"10", "1000"})
+    public long precisionMillis;
+
+    // Разброс сроков истечения, мс
+    @Param({"60000", "86400000"})
+    public long spreadMillis;
+
+    private String[] codes;
+    private long[] expiresAt;
+
+    @Setup
+    public void setUp() {
+        codes = new String[BATCH];
+        expiresAt = new long[BATCH];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < BATCH; i++) {
+            codes[i] = "clck.ru/ex" + Integer.toString(i, 36);
+            expiresAt[i] = random.nextLong(spreadMillis);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void scheduleAndSweep(Blackhole blackhole) {
+        ExpirationIndex index = new ExpirationIndex(precisionMillis);
+        for (int i = 0; i < BATCH; i++) {
+            index.add(codes[i], expiresAt[i]);
+        }
+        // Очистка идет шагами точности, как поток обслуживания сервиса
+        for (long now = 0; now <= spreadMillis; now += Math.max(precisionMillis, spreadMillis / 1000)) {
+            blackhole.consume(index.pollExpired(now));
+        }
+        blackhole.consume(index.pollExpired(spreadMillis + precisionMillis));
+    }
+}
@@ -0,0 +1,70 @@
+package benchmark;
+
+import model.ResolveResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import service.LinkService;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Переход по короткой ссылке: {@link LinkService#resolve} с учетом перехода.
+ * Число потоков задается параметром JMH -t.
+ */
+@State(Scope.Benchmark)
+public class ResolveBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int linkCount;
+
+    @Param({"heap", "compact", "offheap"})
+    public String engine;
+
+    // Доля обращений к существующим ссылкам
+    @Param({"1.0", "0.5"})
+    public double hitRatio;
+
+    // Показатель закона Ципфа для популярности ссылок: 0 — равномерно
+    @Param({"0", "0.99"})
+    public double skew;
+
+    private LinkService service;
+    private String[] accesses;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = Workload.newService(engine, "random");
+        String[] codes = Workload.populate(service, linkCount, 42);
+        accesses = Workload.accessSequence(codes, hitRatio, skew, 43);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    /**
+     * Позиция потока в последовательности обращений
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position = ThreadLocalRandom.current().nextInt(Workload.ACCESS_SEQUENCE_LENGTH);
+    }
+
+    @Benchmark
+    public ResolveResult resolve(Cursor cursor) {
+        String shortUrl = accesses[cursor.position++ & (Workload.ACCESS_SEQUENCE_LENGTH - 1)];
+        return service.resolve(shortUrl);
+    }
+
+    @Benchmark
+    public String getOriginalUrl(Cursor cursor) {
+        String shortUrl = accesses[cursor.position++ & (Workload.ACCESS_SEQUENCE_LENGTH - 1)];
+        return service.getOriginalUrl(shortUrl);
+    }
+}
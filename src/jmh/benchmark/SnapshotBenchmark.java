@@ -0,0 +1,92 @@
+package benchmark;
+
+import model.Link;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import service.MappedLinkStore;
+import service.SnapshotFormat;
+import service.StorageService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Запись и чтение снимка ссылок: полный снимок {@link StorageService#saveAll},
+ * формат файла отдельно и отображение снимка в память при запуске
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int linkCount;
+
+    private List<Link> links;
+    private Path directory;
+    private Path written;
+
+    @Setup
+    public void setUp() throws IOException {
+        StorageService.clearAll();
+        UUID[] owners = Workload.owners(42);
+        long expiresAt = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        links = new ArrayList<>(linkCount);
+        for (int i = 0; i < linkCount; i++) {
+            links.add(new Link("clck.ru/s" + Integer.toString(i, 36), Workload.url(i),
+                    owners[i % owners.length], 100, expiresAt));
+        }
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        written = directory.resolve("links.dat");
+        SnapshotFormat.writeLinks(written, links);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        StorageService.clearAll();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public boolean saveAll() {
+        return StorageService.saveAll(links, List.of());
+    }
+
+    @Benchmark
+    public void writeLinks() throws IOException {
+        SnapshotFormat.writeLinks(directory.resolve("links-write.dat"), links);
+    }
+
+    @Benchmark
+    public Map<String, Link> readLinks() throws IOException {
+        return SnapshotFormat.readLinks(written);
+    }
+
+    @Benchmark
+    public void openMappedAndScan(Blackhole blackhole) throws IOException {
+        MappedLinkStore store = MappedLinkStore.open(written);
+        for (Link link : store) {
+            blackhole.consume(link);
+        }
+    }
+}
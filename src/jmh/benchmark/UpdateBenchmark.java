@@ -0,0 +1,60 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import service.LinkService;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Изменение лимита и срока ссылки владельцем: {@link LinkService#updateLink}
+ */
+@State(Scope.Benchmark)
+public class UpdateBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int linkCount;
+
+    @Param({"heap", "compact"})
+    public String engine;
+
+    @Param({"0", "0.99"})
+    public double skew;
+
+    private LinkService service;
+    private String[] accesses;
+    private UUID[] ownerOf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = Workload.newService(engine, "random");
+        String[] codes = Workload.populate(service, linkCount, 42);
+        accesses = Workload.accessSequence(codes, 1.0, skew, 43);
+        ownerOf = new UUID[accesses.length];
+        for (int i = 0; i < accesses.length; i++) {
+            ownerOf[i] = service.getLinkInfo(accesses[i]).getUserId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position = ThreadLocalRandom.current().nextInt(Workload.ACCESS_SEQUENCE_LENGTH);
+    }
+
+    @Benchmark
+    public boolean updateLink(Cursor cursor) {
+        int index = cursor.position++ & (Workload.ACCESS_SEQUENCE_LENGTH - 1);
+        return service.updateLink(accesses[index], ownerOf[index], 1000 + (index & 1023), 24 + (index & 7));
+    }
+}
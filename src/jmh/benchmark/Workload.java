@@ -0,0 +1,93 @@
+package benchmark;
+
+import load.ZipfSampler;
+import service.LinkService;
+import service.LinkServiceConfig;
+import service.StorageService;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Общая подготовка данных для бенчмарков.
+ *
+ * Сервис ссылок пишет журнал и снимки в каталог data текущей директории,
+ * поэтому профиль benchmark запускает JMH из target/jmh, а каждый бенчмарк
+ * начинает с пустого каталога данных.
+ */
+final class Workload {
+    // Длина заранее построенной последовательности обращений (степень двойки)
+    static final int ACCESS_SEQUENCE_LENGTH = 1 << 20;
+    // Лимит переходов, который не исчерпывается за время измерения
+    static final int UNLIMITED_CLICKS = Integer.MAX_VALUE;
+    // Число владельцев, между которыми распределяются ссылки
+    private static final int OWNERS = 1000;
+
+    private Workload() {
+    }
+
+    /**
+     * Создает сервис на пустом каталоге данных
+     */
+    static LinkService newService(String engine, String generator) {
+        StorageService.clearAll();
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setStorageEngine(engine);
+        config.setCodeGenerator(generator);
+        return new LinkService(config);
+    }
+
+    static UUID[] owners(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        UUID[] owners = new UUID[OWNERS];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return owners;
+    }
+
+    /**
+     * Создает ссылки и возвращает их коды
+     */
+    static String[] populate(LinkService service, int linkCount, long seed) {
+        UUID[] owners = owners(seed);
+        String[] codes = new String[linkCount];
+        for (int i = 0; i < linkCount; i++) {
+            codes[i] = service.createShortLink(url(i), owners[i % owners.length], UNLIMITED_CLICKS);
+        }
+        return codes;
+    }
+
+    static String url(int i) {
+        return "https://www.example.com/articles/" + i + "?utm_source=benchmark";
+    }
+
+    /**
+     * Строит последовательность обращений: с вероятностью {@code hitRatio} — к
+     * существующей ссылке, выбранной по закону Ципфа с показателем {@code skew}
+     * (0 — равномерно), иначе — к несуществующему коду
+     */
+    static String[] accessSequence(String[] codes, double hitRatio, double skew, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        ZipfSampler popularity = new ZipfSampler(codes.length, skew);
+        // Популярность не должна совпадать с порядком создания ссылок
+        String[] ranked = codes.clone();
+        for (int i = ranked.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String swap = ranked[i];
+            ranked[i] = ranked[j];
+            ranked[j] = swap;
+        }
+
+        String[] sequence = new String[ACCESS_SEQUENCE_LENGTH];
+        for (int i = 0; i < sequence.length; i++) {
+            if (random.nextDouble() < hitRatio) {
+                sequence[i] = ranked[popularity.sample(random)];
+            } else {
+                // Длиннее случайных кодов, поэтому гарантированно не существует
+                sequence[i] = "clck.ru/miss" + Integer.toString(random.nextInt(Integer.MAX_VALUE), 36);
+            }
+        }
+        return sequence;
+    }
+}
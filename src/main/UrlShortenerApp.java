@@ -1,9 +1,10 @@
 import model.Link;
+import model.LinkPage;
+import model.ResolveResult;
 import service.LinkService;
 import util.BrowserOpener;
 import util.NotificationService;
 
-import java.util.List;
 import java.util.Scanner;
 import java.util.UUID;
 
@@ -11,6 +12,9 @@ import java.util.UUID;
  * Главное консольное приложение для работы с сервисом сокращения ссылок
  */
 public class UrlShortenerApp {
+    // Число ссылок на странице в списке «Мои ссылки»
+    private static final int LINKS_PAGE_SIZE = 10;
+
     private static LinkService linkService = new LinkService();
     private static Scanner scanner = new Scanner(System.in);
     private static UUID currentUserId = null;
@@ -248,20 +252,13 @@ public class UrlShortenerApp {
             return;
         }
         
-        String status = linkService.checkLinkStatus(shortUrl);
-        if (status != null) {
-            Link link = linkService.getLinkInfo(shortUrl);
-            NotificationService.notifyLinkUnavailable(link, status);
-            return;
-        }
-        
-        String originalUrl = linkService.getOriginalUrl(shortUrl);
-        
-        if (originalUrl == null) {
-            NotificationService.notifyError("Ссылка не найдена или недоступна");
+        ResolveResult result = linkService.resolve(shortUrl);
+        if (!result.isSuccess()) {
+            NotificationService.notifyLinkUnavailable(result, result.getStatus().getMessage());
             return;
         }
         
+        String originalUrl = result.getOriginalUrl();
         System.out.println("Переход на: " + originalUrl);
         System.out.println("Открываю в браузере...");
         
@@ -269,9 +266,8 @@ public class UrlShortenerApp {
             System.out.println("✅ Браузер открыт!");
         }
         
-        Link link = linkService.getLinkInfo(shortUrl);
-        if (link != null && link.isClickLimitReached()) {
-            NotificationService.notifyLinkUnavailable(link, "Лимит переходов исчерпан");
+        if (result.getRemainingClicks() == 0) {
+            NotificationService.notifyLinkUnavailable(result, ResolveResult.Status.CLICK_LIMIT_REACHED.getMessage());
         }
     }
 
@@ -283,25 +279,58 @@ public class UrlShortenerApp {
             return;
         }
         
-        List<Link> userLinks = linkService.getUserLinks(currentUserId);
-        
-        if (userLinks.isEmpty()) {
+        int total = linkService.getUserLinkCount(currentUserId);
+        if (total == 0) {
             System.out.println("У вас пока нет созданных ссылок.");
             return;
         }
         
-        System.out.println("Всего ссылок: " + userLinks.size());
+        System.out.println("Фильтр: 1 - все, 2 - активные, 3 - просроченные, 4 - близкие к лимиту (Enter - все)");
+        System.out.print("Выберите фильтр: ");
+        LinkPage.Filter filter;
+        switch (scanner.nextLine().trim()) {
+            case "2":
+                filter = LinkPage.Filter.ACTIVE;
+                break;
+            case "3":
+                filter = LinkPage.Filter.EXPIRED;
+                break;
+            case "4":
+                filter = LinkPage.Filter.NEAR_LIMIT;
+                break;
+            default:
+                filter = LinkPage.Filter.ALL;
+        }
+        
+        System.out.println("Всего ссылок: " + total + ", показаны: " + filter.getDescription());
         System.out.println("─────────────────────────────────────────────────────");
         
-        for (int i = 0; i < userLinks.size(); i++) {
-            Link link = userLinks.get(i);
-            System.out.println((i + 1) + ". " + link.getShortUrl());
-            System.out.println("   Оригинал: " + link.getOriginalUrl());
-            System.out.println("   Переходов: " + link.getCurrentClicks() + " / " + link.getClickLimit());
-            System.out.println("   Создана: " + formatDateTime(link.getCreatedAt()));
-            System.out.println("   Истекает: " + formatDateTime(link.getExpiresAt()));
-            System.out.println("   Статус: " + (link.canBeAccessed() ? "✅ Активна" : "❌ Недоступна"));
-            System.out.println("─────────────────────────────────────────────────────");
+        int number = 0;
+        String cursor = null;
+        do {
+            LinkPage page = linkService.getUserLinks(currentUserId, cursor, LINKS_PAGE_SIZE, filter);
+            for (Link link : page.getLinks()) {
+                number++;
+                System.out.println(number + ". " + link.getShortUrl());
+                System.out.println("   Оригинал: " + link.getOriginalUrl());
+                System.out.println("   Переходов: " + link.getCurrentClicks() + " / " + link.getClickLimit());
+                System.out.println("   Создана: " + formatDateTime(link.getCreatedAt()));
+                System.out.println("   Истекает: " + formatDateTime(link.getExpiresAt()));
+                System.out.println("   Статус: " + (link.canBeAccessed() ? "✅ Активна" : "❌ Недоступна"));
+                System.out.println("─────────────────────────────────────────────────────");
+            }
+            cursor = page.getNextCursor();
+            // Пустую страницу отбора пропускаем без вопроса
+            if (cursor != null && !page.getLinks().isEmpty()) {
+                System.out.print("Enter - следующая страница, q - завершить просмотр: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    return;
+                }
+            }
+        } while (cursor != null);
+        
+        if (number == 0) {
+            System.out.println("Нет ссылок, подходящих под фильтр.");
         }
     }
 
@@ -492,8 +521,7 @@ public class UrlShortenerApp {
             currentUserId = UUID.fromString(userIdInput);
             NotificationService.notifySuccess("User ID установлен: " + currentUserId);
             
-            List<Link> userLinks = linkService.getUserLinks(currentUserId);
-            System.out.println("Найдено ссылок для этого User ID: " + userLinks.size());
+            System.out.println("Найдено ссылок для этого User ID: " + linkService.getUserLinkCount(currentUserId));
         } catch (IllegalArgumentException e) {
             NotificationService.notifyError("Неверный формат UUID");
         }
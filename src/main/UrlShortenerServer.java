@@ -0,0 +1,44 @@
+import server.HttpRedirectServer;
+import server.NioRedirectServer;
+import server.ServerConfig;
+import service.LinkService;
+
+import java.io.IOException;
+
+/**
+ * Запуск сервиса сокращения ссылок как HTTP-сервера переходов
+ */
+public class UrlShortenerServer {
+
+    public static void main(String[] args) throws IOException {
+        LinkService linkService = new LinkService();
+        linkService.getMetrics().register();
+        ServerConfig config = ServerConfig.fromSystemProperties();
+
+        Runnable stopServer;
+        int port;
+        String threads;
+        if (config.getMode().equals("nio")) {
+            NioRedirectServer server = new NioRedirectServer(linkService, config);
+            server.start();
+            stopServer = server::stop;
+            port = server.getPort();
+            threads = "селекторов: " + config.getSelectorThreads();
+        } else {
+            HttpRedirectServer server = new HttpRedirectServer(linkService, config);
+            server.start();
+            stopServer = server::stop;
+            port = server.getPort();
+            threads = "рабочих потоков: " + config.getWorkers();
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("\n💾 Остановка сервера и сохранение данных...");
+            stopServer.run();
+            linkService.shutdown();
+            System.out.println("✅ Данные сохранены");
+        }));
+
+        System.out.println("🌐 Сервер переходов (" + config.getMode() + ") запущен на порту " + port + " (" + threads + ")");
+    }
+}
@@ -0,0 +1,73 @@
+package load;
+
+import util.ConcurrentHistogram;
+
+/**
+ * Гистограмма задержек в наносекундах с теми же корзинами, что и
+ * {@link ConcurrentHistogram} (погрешность не больше 1/64), но без атомарных
+ * операций: у каждого потока нагрузки своя гистограмма, в конце они
+ * сливаются через {@link #add}.
+ */
+public final class LatencyHistogram {
+    private static final int SIZE = ConcurrentHistogram.BUCKET_COUNT;
+
+    private final long[] counts = new long[SIZE];
+    private long totalCount;
+    private long max;
+    private long sum;
+
+    /**
+     * Учитывает одно значение; отрицательные считаются нулем
+     */
+    public void record(long value) {
+        long recorded = Math.max(0, value);
+        counts[ConcurrentHistogram.bucketOf(recorded)]++;
+        totalCount++;
+        sum += recorded;
+        max = Math.max(max, recorded);
+    }
+
+    /**
+     * Добавляет значения другой гистограммы
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < SIZE; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * @param percentile процентиль от 0 до 100
+     * @return наибольшее значение корзины, в которую попадает процентиль
+     * (не больше максимума), или 0 для пустой гистограммы
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < SIZE; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(ConcurrentHistogram.highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+}
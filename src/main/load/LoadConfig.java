@@ -0,0 +1,160 @@
+package load;
+
+/**
+ * Настройки генератора нагрузки.
+ * Значения по умолчанию можно переопределить системными свойствами
+ * (например, -Durlshortener.load.rate=50000).
+ */
+public class LoadConfig {
+    private static final String PREFIX = "urlshortener.load.";
+
+    // Число ссылок, создаваемых до начала нагрузки
+    private int links = 100_000;
+    // Целевая частота операций в секунду (открытая модель: не зависит от скорости ответов)
+    private int rate = 10_000;
+    // Длительность измерения, с
+    private int durationSeconds = 30;
+    // Длительность прогрева перед измерением, с
+    private int warmupSeconds = 5;
+    // Число потоков, выполняющих операции
+    private int threads = 4;
+    // Доли операций в процентах; сумма должна быть 100
+    private int redirectPercent = 90;
+    private int createPercent = 5;
+    private int updatePercent = 4;
+    private int deletePercent = 1;
+    // Показатель закона Ципфа для популярности ссылок: 0 — равномерно
+    private double skew = 0.99;
+    // Доля новых ссылок со сроком жизни 1 час, %
+    private int churnPercent = 10;
+    // Ускорение часов сервиса: при 3600 час срока жизни проходит за секунду нагрузки
+    private int timeScale = 3600;
+    // Лимит переходов предзагруженных ссылок
+    private int clickLimit = 1_000_000;
+
+    /**
+     * Создает настройки по умолчанию с учетом системных свойств
+     */
+    public static LoadConfig fromSystemProperties() {
+        LoadConfig config = new LoadConfig();
+        config.links = Integer.getInteger(PREFIX + "links", config.links);
+        config.rate = Integer.getInteger(PREFIX + "rate", config.rate);
+        config.durationSeconds = Integer.getInteger(PREFIX + "durationSeconds", config.durationSeconds);
+        config.warmupSeconds = Integer.getInteger(PREFIX + "warmupSeconds", config.warmupSeconds);
+        config.threads = Integer.getInteger(PREFIX + "threads", config.threads);
+        config.setMix(Integer.getInteger(PREFIX + "redirectPercent", config.redirectPercent),
+                Integer.getInteger(PREFIX + "createPercent", config.createPercent),
+                Integer.getInteger(PREFIX + "updatePercent", config.updatePercent),
+                Integer.getInteger(PREFIX + "deletePercent", config.deletePercent));
+        config.skew = Double.parseDouble(System.getProperty(PREFIX + "skew", String.valueOf(config.skew)));
+        config.churnPercent = Integer.getInteger(PREFIX + "churnPercent", config.churnPercent);
+        config.timeScale = Integer.getInteger(PREFIX + "timeScale", config.timeScale);
+        config.clickLimit = Integer.getInteger(PREFIX + "clickLimit", config.clickLimit);
+        return config;
+    }
+
+    public int getLinks() {
+        return links;
+    }
+
+    public void setLinks(int links) {
+        this.links = links;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public void setRate(int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Частота операций должна быть больше 0");
+        }
+        this.rate = rate;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(int durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public void setWarmupSeconds(int warmupSeconds) {
+        this.warmupSeconds = warmupSeconds;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getRedirectPercent() {
+        return redirectPercent;
+    }
+
+    public int getCreatePercent() {
+        return createPercent;
+    }
+
+    public int getUpdatePercent() {
+        return updatePercent;
+    }
+
+    public int getDeletePercent() {
+        return deletePercent;
+    }
+
+    /**
+     * Задает доли переходов, созданий, изменений и удалений в процентах
+     */
+    public void setMix(int redirectPercent, int createPercent, int updatePercent, int deletePercent) {
+        if (redirectPercent < 0 || createPercent < 0 || updatePercent < 0 || deletePercent < 0
+                || redirectPercent + createPercent + updatePercent + deletePercent != 100) {
+            throw new IllegalArgumentException("Доли операций должны быть неотрицательными и давать в сумме 100%");
+        }
+        this.redirectPercent = redirectPercent;
+        this.createPercent = createPercent;
+        this.updatePercent = updatePercent;
+        this.deletePercent = deletePercent;
+    }
+
+    public double getSkew() {
+        return skew;
+    }
+
+    public void setSkew(double skew) {
+        this.skew = skew;
+    }
+
+    public int getChurnPercent() {
+        return churnPercent;
+    }
+
+    public void setChurnPercent(int churnPercent) {
+        this.churnPercent = churnPercent;
+    }
+
+    public int getTimeScale() {
+        return timeScale;
+    }
+
+    public void setTimeScale(int timeScale) {
+        this.timeScale = timeScale;
+    }
+
+    public int getClickLimit() {
+        return clickLimit;
+    }
+
+    public void setClickLimit(int clickLimit) {
+        this.clickLimit = clickLimit;
+    }
+}
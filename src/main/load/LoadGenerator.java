@@ -0,0 +1,308 @@
+package load;
+
+import service.LinkService;
+import service.LinkServiceConfig;
+import service.StorageService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Генератор нагрузки на сервис ссылок в том же процессе.
+ *
+ * Создает заданное число ссылок, затем выполняет смесь переходов, созданий,
+ * изменений и удалений с постоянной целевой частотой (открытая модель): момент
+ * каждой операции задан расписанием и не сдвигается, если сервис отвечает
+ * медленно. Популярность ссылок распределена по закону Ципфа. Часы сервиса
+ * ускорены, поэтому часть новых ссылок со сроком жизни в час истекает прямо во
+ * время прогона и нагружает очистку.
+ *
+ * Запуск: {@code java -cp target/classes -Durlshortener.load.rate=20000 load.LoadGenerator}
+ * из пустой директории — сервис пишет данные в ./data и удаляет их в конце.
+ */
+public class LoadGenerator {
+    // Срок жизни предзагруженных ссылок: год, чтобы они не истекали на ускоренных часах
+    private static final int PRELOADED_EXPIRATION_HOURS = 24 * 365;
+    private static final int DEFAULT_EXPIRATION_HOURS = 24;
+    private static final int CHURN_EXPIRATION_HOURS = 1;
+    // Короче этого ожидания поток не засыпает, а крутится
+    private static final long SPIN_THRESHOLD_NANOS = 50_000;
+    private static final int REDIRECT = 0;
+    private static final int CREATE = 1;
+    private static final int UPDATE = 2;
+    private static final int DELETE = 3;
+
+    private final LoadConfig config;
+    private final LinkServiceConfig serviceConfig;
+
+    public LoadGenerator(LoadConfig config, LinkServiceConfig serviceConfig) {
+        this.config = config;
+        this.serviceConfig = serviceConfig;
+    }
+
+    public static void main(String[] args) {
+        Path dataDir = Paths.get("data");
+        if (isNotEmpty(dataDir)) {
+            System.err.println("Директория " + dataDir.toAbsolutePath()
+                    + " не пуста: запустите генератор нагрузки из пустой директории, чтобы не затронуть рабочие данные");
+            System.exit(1);
+        }
+        LoadConfig config = LoadConfig.fromSystemProperties();
+        System.out.println("🚀 Нагрузка: " + config.getLinks() + " ссылок, " + config.getRate() + " оп/с, "
+                + config.getThreads() + " потоков, " + config.getWarmupSeconds() + " + "
+                + config.getDurationSeconds() + " с");
+        LoadReport report = new LoadGenerator(config, LinkServiceConfig.fromSystemProperties()).run();
+        report.print(System.out);
+    }
+
+    /**
+     * Выполняет прогон: предзагрузка, прогрев и измерение
+     */
+    public LoadReport run() {
+        serviceConfig.setClock(new ScaledClock(config.getTimeScale()));
+        LinkService service = new LinkService(serviceConfig);
+        try {
+            return run(service);
+        } finally {
+            service.shutdown();
+            StorageService.clearAll();
+        }
+    }
+
+    private LoadReport run(LinkService service) {
+        SplittableRandom random = new SplittableRandom(42);
+        int linkCount = Math.max(1, config.getLinks());
+        UUID[] owners = new UUID[Math.max(1, linkCount / 100)];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        // Слот ключа: код и владелец; удаленные ссылки заменяются новыми
+        AtomicReferenceArray<String> codes = new AtomicReferenceArray<>(linkCount);
+        for (int i = 0; i < linkCount; i++) {
+            codes.set(i, service.createShortLink(url(i), owners[i % owners.length],
+                    config.getClickLimit(), PRELOADED_EXPIRATION_HOURS));
+        }
+        ZipfSampler popularity = new ZipfSampler(linkCount, config.getSkew());
+
+        int threads = Math.max(1, config.getThreads());
+        double intervalNanos = threads * 1e9 / config.getRate();
+        long start = System.nanoTime() + 100_000_000L;
+        long measureStart = start + config.getWarmupSeconds() * 1_000_000_000L;
+        long end = measureStart + config.getDurationSeconds() * 1_000_000_000L;
+
+        List<Worker> workers = new ArrayList<>(threads);
+        List<Thread> running = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            // Потоки сдвинуты друг относительно друга, чтобы операции шли равномерно
+            long offset = (long) (intervalNanos * t / threads);
+            Worker worker = new Worker(service, codes, owners, popularity, random.split(),
+                    start + offset, intervalNanos, measureStart, end);
+            workers.add(worker);
+            Thread thread = new Thread(worker, "load-" + t);
+            running.add(thread);
+            thread.start();
+        }
+        for (Thread thread : running) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Прогон нагрузки прерван", e);
+            }
+        }
+
+        LatencyHistogram responseTime = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        long[] operations = new long[LoadReport.OPERATIONS.length];
+        long errors = 0;
+        long finished = end;
+        for (Worker worker : workers) {
+            responseTime.add(worker.responseTime);
+            serviceTime.add(worker.serviceTime);
+            for (int i = 0; i < operations.length; i++) {
+                operations[i] += worker.operations[i];
+            }
+            errors += worker.errors;
+            finished = Math.max(finished, worker.finished);
+        }
+        return new LoadReport(config.getRate(), finished - measureStart, operations, errors, responseTime, serviceTime);
+    }
+
+    private static String url(long i) {
+        return "https://www.example.com/articles/" + i;
+    }
+
+    private static boolean isNotEmpty(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.findAny().isPresent();
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Поток нагрузки: выполняет операции в моменты по своему расписанию
+     */
+    private final class Worker implements Runnable {
+        private final LinkService service;
+        private final AtomicReferenceArray<String> codes;
+        private final UUID[] owners;
+        private final ZipfSampler popularity;
+        private final SplittableRandom random;
+        private final long start;
+        private final double intervalNanos;
+        private final long measureStart;
+        private final long end;
+
+        final LatencyHistogram responseTime = new LatencyHistogram();
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final long[] operations = new long[LoadReport.OPERATIONS.length];
+        long errors;
+        long finished;
+
+        Worker(LinkService service, AtomicReferenceArray<String> codes, UUID[] owners, ZipfSampler popularity,
+               SplittableRandom random, long start, double intervalNanos, long measureStart, long end) {
+            this.service = service;
+            this.codes = codes;
+            this.owners = owners;
+            this.popularity = popularity;
+            this.random = random;
+            this.start = start;
+            this.intervalNanos = intervalNanos;
+            this.measureStart = measureStart;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            for (long i = 0; ; i++) {
+                long intended = start + (long) (i * intervalNanos);
+                if (intended >= end) {
+                    break;
+                }
+                waitUntil(intended);
+                int operation = chooseOperation();
+                long begin = System.nanoTime();
+                try {
+                    execute(operation);
+                } catch (RuntimeException e) {
+                    errors++;
+                }
+                long done = System.nanoTime();
+                if (intended >= measureStart) {
+                    responseTime.record(done - intended);
+                    serviceTime.record(done - begin);
+                    operations[operation]++;
+                    finished = done;
+                }
+            }
+        }
+
+        private int chooseOperation() {
+            int roll = random.nextInt(100);
+            if ((roll -= config.getRedirectPercent()) < 0) {
+                return REDIRECT;
+            }
+            if ((roll -= config.getCreatePercent()) < 0) {
+                return CREATE;
+            }
+            return roll - config.getUpdatePercent() < 0 ? UPDATE : DELETE;
+        }
+
+        private void execute(int operation) {
+            switch (operation) {
+                case REDIRECT:
+                    service.resolve(codes.get(popularity.sample(random)));
+                    break;
+                case CREATE:
+                    int hours = random.nextInt(100) < config.getChurnPercent()
+                            ? CHURN_EXPIRATION_HOURS : DEFAULT_EXPIRATION_HOURS;
+                    service.createShortLink(url(random.nextLong() & Long.MAX_VALUE),
+                            owners[random.nextInt(owners.length)], config.getClickLimit(), hours);
+                    break;
+                case UPDATE:
+                    int slot = popularity.sample(random);
+                    service.updateLink(codes.get(slot), ownerOf(slot),
+                            config.getClickLimit() + random.nextInt(1000), null);
+                    break;
+                default:
+                    // Удаленную ссылку сразу заменяет новая, чтобы число ссылок не убывало
+                    int removed = random.nextInt(codes.length());
+                    String code = codes.get(removed);
+                    if (service.deleteLink(code, ownerOf(removed))) {
+                        codes.compareAndSet(removed, code, service.createShortLink(url(removed), ownerOf(removed),
+                                config.getClickLimit(), PRELOADED_EXPIRATION_HOURS));
+                    }
+            }
+        }
+
+        private UUID ownerOf(int slot) {
+            return owners[slot % owners.length];
+        }
+
+        private void waitUntil(long deadline) {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                if (remaining > SPIN_THRESHOLD_NANOS) {
+                    LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+    }
+
+    /**
+     * Часы, идущие в заданное число раз быстрее реальных, начиная с момента создания
+     */
+    private static final class ScaledClock extends Clock {
+        private final long origin;
+        private final long scale;
+        private final ZoneId zone;
+
+        ScaledClock(long scale) {
+            this(System.currentTimeMillis(), scale, ZoneId.systemDefault());
+        }
+
+        private ScaledClock(long origin, long scale, ZoneId zone) {
+            this.origin = origin;
+            this.scale = Math.max(1, scale);
+            this.zone = zone;
+        }
+
+        @Override
+        public long millis() {
+            return origin + (System.currentTimeMillis() - origin) * scale;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return new ScaledClock(origin, scale, zone);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package load;
+
+import java.io.PrintStream;
+
+/**
+ * Итоги прогона нагрузки: число операций каждого вида, пропускная способность
+ * и две гистограммы задержек.
+ *
+ * Время ответа отсчитывается от момента, когда операция должна была начаться по
+ * расписанию, поэтому задержки операций, ждавших освобождения потока, тоже
+ * попадают в гистограмму (поправка на координированное пропускание). Время
+ * обслуживания отсчитывается от фактического начала и показывает, сколько
+ * заняла сама операция.
+ */
+public final class LoadReport {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    static final String[] OPERATIONS = {"redirect", "create", "update", "delete"};
+
+    private final int targetRate;
+    private final long elapsedNanos;
+    private final long[] operations;
+    private final long errors;
+    private final LatencyHistogram responseTime;
+    private final LatencyHistogram serviceTime;
+
+    LoadReport(int targetRate, long elapsedNanos, long[] operations, long errors,
+               LatencyHistogram responseTime, LatencyHistogram serviceTime) {
+        this.targetRate = targetRate;
+        this.elapsedNanos = elapsedNanos;
+        this.operations = operations;
+        this.errors = errors;
+        this.responseTime = responseTime;
+        this.serviceTime = serviceTime;
+    }
+
+    public long getTotalOperations() {
+        return responseTime.getTotalCount();
+    }
+
+    /**
+     * @return выполнено операций в секунду за время измерения
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getTotalOperations() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return число операций вида: redirect, create, update или delete
+     */
+    public long getOperations(String operation) {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i].equals(operation)) {
+                return operations[i];
+            }
+        }
+        throw new IllegalArgumentException("Неизвестная операция: " + operation);
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public LatencyHistogram getResponseTime() {
+        return responseTime;
+    }
+
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("Целевая частота: %d оп/с, достигнута: %.0f оп/с за %.1f с%n",
+                targetRate, getThroughput(), elapsedNanos / 1e9);
+        StringBuilder mix = new StringBuilder("Операции:");
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            mix.append(' ').append(OPERATIONS[i]).append('=').append(operations[i]);
+        }
+        out.println(mix + ", ошибок: " + errors);
+        if (getThroughput() < targetRate * 0.95) {
+            out.println("⚠️ Сервис не успевает за целевой частотой: время ответа растет из-за очереди");
+        }
+        printHistogram(out, "Время ответа (от момента по расписанию), мс", responseTime);
+        printHistogram(out, "Время обслуживания, мс", serviceTime);
+    }
+
+    private static void printHistogram(PrintStream out, String title, LatencyHistogram histogram) {
+        out.println(title + ":");
+        for (double percentile : PERCENTILES) {
+            out.printf("  p%-6s %10.3f%n", formatPercentile(percentile),
+                    histogram.getValueAtPercentile(percentile) / 1e6);
+        }
+        out.printf("  %-7s %10.3f%n", "max", histogram.getMax() / 1e6);
+        out.printf("  %-7s %10.3f%n", "mean", histogram.getMean() / 1e6);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
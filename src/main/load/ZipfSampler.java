@@ -0,0 +1,33 @@
+package load;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Выбор номера от 0 до size - 1 по закону Ципфа: номер k выбирается с
+ * вероятностью, пропорциональной 1 / (k + 1)^skew. При skew = 0 выбор равномерный.
+ * Таблица накопленных вероятностей строится один раз, выбор — двоичный поиск.
+ */
+public final class ZipfSampler {
+    private final double[] cumulative;
+
+    public ZipfSampler(int size, double skew) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Число элементов должно быть больше 0");
+        }
+        cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
@@ -1,34 +1,69 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
 
 /**
  * Модель короткой ссылки
  */
 public class Link implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Сериализованная форма прежней версии класса: срок действия хранился как LocalDateTime
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("shortUrl", String.class),
+            new ObjectStreamField("originalUrl", String.class),
+            new ObjectStreamField("userId", UUID.class),
+            new ObjectStreamField("clickLimit", int.class),
+            new ObjectStreamField("currentClicks", int.class),
+            new ObjectStreamField("createdAt", LocalDateTime.class),
+            new ObjectStreamField("expiresAt", LocalDateTime.class),
+            new ObjectStreamField("isActive", boolean.class)
+    };
+    private static final AtomicIntegerFieldUpdater<Link> CURRENT_CLICKS =
+            AtomicIntegerFieldUpdater.newUpdater(Link.class, "currentClicks");
+    // Число полос распределенного счетчика (степень двойки) и размер квоты, выдаваемой полосе
+    private static final int STRIPES = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) << 1);
+    private static final int STRIPE_LEASE = 64;
+    // Бит в currentClicks: ссылка вытеснена из памяти, переходы по этому объекту не учитываются
+    private static final int RETIRED = Integer.MIN_VALUE;
     private String shortUrl;
     private String originalUrl;
     private UUID userId;
-    private int clickLimit;
-    private int currentClicks;
+    private volatile int clickLimit;
+    private volatile int currentClicks;
     private LocalDateTime createdAt;
-    private LocalDateTime expiresAt;
+    // Срок действия в epoch millis: проверка истечения — одно сравнение
+    private volatile long expiresAtMillis;
     private boolean isActive;
+    // Распределенный счетчик: неизрасходованные квоты переходов по полосам.
+    // Квота заранее учтена в currentClicks, поэтому лимит не может быть превышен.
+    private transient volatile AtomicIntegerArray clickCredits;
 
     public Link() {
     }
 
     public Link(String shortUrl, String originalUrl, UUID userId, int clickLimit, LocalDateTime expiresAt) {
+        this(shortUrl, originalUrl, userId, clickLimit, toMillis(expiresAt));
+    }
+
+    public Link(String shortUrl, String originalUrl, UUID userId, int clickLimit, long expiresAtMillis) {
         this.shortUrl = shortUrl;
         this.originalUrl = originalUrl;
         this.userId = userId;
         this.clickLimit = clickLimit;
         this.currentClicks = 0;
         this.createdAt = LocalDateTime.now();
-        this.expiresAt = expiresAt;
+        this.expiresAtMillis = expiresAtMillis;
         this.isActive = true;
     }
 
@@ -65,11 +100,35 @@ public class Link implements Serializable {
     }
 
     public int getCurrentClicks() {
-        return currentClicks;
+        AtomicIntegerArray credits = clickCredits;
+        if (credits == null) {
+            return currentClicks & ~RETIRED;
+        }
+        int unused = 0;
+        for (int i = 0; i < credits.length(); i++) {
+            unused += credits.get(i);
+        }
+        return currentClicks - unused;
     }
 
     public void setCurrentClicks(int currentClicks) {
-        this.currentClicks = currentClicks;
+        if (clickCredits == null) {
+            this.currentClicks = currentClicks;
+            // Распределенный счетчик создается под монитором до первой квоты,
+            // поэтому квота, выданная позже, уже видит новое значение
+            if (clickCredits == null) {
+                return;
+            }
+        }
+        // Сброс не должен пересечься с выдачей квоты: иначе квота,
+        // уже учтенная в прежнем значении, переживет сброс
+        synchronized (this) {
+            AtomicIntegerArray credits = clickCredits;
+            for (int i = 0; i < credits.length(); i++) {
+                credits.set(i, 0);
+            }
+            this.currentClicks = currentClicks;
+        }
     }
 
     public LocalDateTime getCreatedAt() {
@@ -81,11 +140,19 @@ public class Link implements Serializable {
     }
 
     public LocalDateTime getExpiresAt() {
-        return expiresAt;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAtMillis), ZoneId.systemDefault());
     }
 
     public void setExpiresAt(LocalDateTime expiresAt) {
-        this.expiresAt = expiresAt;
+        this.expiresAtMillis = toMillis(expiresAt);
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public void setExpiresAtMillis(long expiresAtMillis) {
+        this.expiresAtMillis = expiresAtMillis;
     }
 
     public boolean isActive() {
@@ -97,19 +164,168 @@ public class Link implements Serializable {
     }
 
     public void incrementClicks() {
-        this.currentClicks++;
+        CURRENT_CLICKS.incrementAndGet(this);
+    }
+
+    /**
+     * Атомарно резервирует один переход, если лимит ещё не исчерпан.
+     * При любом числе параллельных вызовов успешных резервирований не больше лимита.
+     * @return новое значение счетчика или 0, если лимит исчерпан
+     */
+    public int tryReserveClick() {
+        reconcileClicks();
+        while (true) {
+            int clicks = currentClicks;
+            // Отрицательное значение — вытесненная ссылка
+            if (clicks < 0 || clicks >= clickLimit) {
+                return 0;
+            }
+            if (CURRENT_CLICKS.compareAndSet(this, clicks, clicks + 1)) {
+                return clicks + 1;
+            }
+        }
+    }
+
+    /**
+     * Учитывает переход в распределенном счетчике без конкуренции за одно поле.
+     * Каждая полоса счетчика получает из лимита квоту переходов и расходует её
+     * независимо от других полос. Квоты выдаются, только пока до лимита остается
+     * больше {@code margin} переходов; последние переходы считаются точно.
+     * @param margin запас до лимита, ниже которого нужен точный учет через {@link #tryReserveClick()}
+     * @param onFirstStripedClick вызывается один раз, когда для ссылки создается распределенный счетчик
+     * @return значение счетчика для этого перехода или 0, если нужен точный учет. Значение — счетчик
+     * без неизрасходованной квоты своей полосы: оно не меньше числа учтенных переходов, поэтому
+     * остаток по нему не завышается
+     */
+    public int tryRecordStripedClick(int margin, Consumer<Link> onFirstStripedClick) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        AtomicIntegerArray credits = clickCredits;
+        if (credits != null) {
+            while (true) {
+                int credit = credits.get(stripe);
+                if (credit <= 0) {
+                    break;
+                }
+                if (credits.compareAndSet(stripe, credit, credit - 1)) {
+                    return Math.max(1, getCurrentClicks() - (credit - 1));
+                }
+            }
+        }
+
+        // Без запаса до лимита распределенный счетчик не создается
+        int clicks = currentClicks;
+        if (clicks < 0 || clickLimit - clicks - margin <= 0) {
+            return 0;
+        }
+        return leaseStripeCredit(stripe, margin, onFirstStripedClick);
+    }
+
+    /**
+     * Выдает полосе новую квоту из лимита. Выполняется под монитором ссылки,
+     * чтобы не пересекаться со сбросом счетчика и сверкой квот
+     * @return значение счетчика для перехода, взявшего квоту, или 0
+     */
+    private synchronized int leaseStripeCredit(int stripe, int margin, Consumer<Link> onFirstStripedClick) {
+        while (true) {
+            int clicks = currentClicks;
+            int available = clickLimit - clicks - margin;
+            if (clicks < 0 || available <= 0) {
+                return 0;
+            }
+            AtomicIntegerArray credits = clickCredits;
+            if (credits == null) {
+                credits = new AtomicIntegerArray(STRIPES);
+                clickCredits = credits;
+                onFirstStripedClick.accept(this);
+            }
+            int lease = Math.min(STRIPE_LEASE, available);
+            // currentClicks меняет и точный учет без монитора, поэтому CAS
+            if (CURRENT_CLICKS.compareAndSet(this, clicks, clicks + lease)) {
+                credits.addAndGet(stripe, lease - 1);
+                return clicks + 1;
+            }
+        }
+    }
+
+    /**
+     * Возвращает неизрасходованные квоты полос в лимит, после чего
+     * currentClicks совпадает с числом учтенных переходов
+     */
+    public void reconcileClicks() {
+        AtomicIntegerArray credits = clickCredits;
+        if (credits == null || !hasCredits(credits)) {
+            return;
+        }
+        synchronized (this) {
+            int unused = 0;
+            for (int i = 0; i < credits.length(); i++) {
+                if (credits.get(i) != 0) {
+                    unused += credits.getAndSet(i, 0);
+                }
+            }
+            if (unused != 0) {
+                CURRENT_CLICKS.addAndGet(this, -unused);
+            }
+        }
+    }
+
+    private static boolean hasCredits(AtomicIntegerArray credits) {
+        for (int i = 0; i < credits.length(); i++) {
+            if (credits.get(i) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Помечает ссылку вытесненной, если её состояние совпадает с копией из снимка
+     * и переходы по ней не учитываются в распределенном счетчике. После этого
+     * {@link #tryReserveClick()} для объекта возвращает 0, а переход нужно учесть
+     * в ссылке, заново прочитанной из хранилища. Изменения полей, которые не
+     * должны потеряться, выполняются под монитором ссылки с проверкой {@link #isRetired()}.
+     * @return true, если ссылка помечена
+     */
+    public synchronized boolean retireIfUnchanged(Link expected) {
+        int clicks = currentClicks;
+        if (clickCredits != null || clicks < 0 || clicks != expected.getCurrentClicks()
+                || clickLimit != expected.clickLimit || expiresAtMillis != expected.expiresAtMillis
+                || isActive != expected.isActive || !originalUrl.equals(expected.originalUrl)
+                || !userId.equals(expected.userId)) {
+            return false;
+        }
+        // Переход, учтенный после сравнения, меняет счетчик, и пометка не ставится
+        return CURRENT_CLICKS.compareAndSet(this, clicks, clicks | RETIRED);
+    }
+
+    /**
+     * @return true, если ссылка вытеснена из памяти и этот объект больше не изменяется
+     */
+    public boolean isRetired() {
+        return currentClicks < 0;
     }
 
     public boolean isClickLimitReached() {
-        return currentClicks >= clickLimit;
+        return getCurrentClicks() >= clickLimit;
     }
 
     public boolean isExpired() {
-        return LocalDateTime.now().isAfter(expiresAt);
+        return isExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * @param nowMillis текущее время в epoch millis (например, из кешированных часов)
+     */
+    public boolean isExpired(long nowMillis) {
+        return nowMillis > expiresAtMillis;
     }
 
     public boolean canBeAccessed() {
-        return isActive && !isExpired() && !isClickLimitReached();
+        return canBeAccessed(System.currentTimeMillis());
+    }
+
+    public boolean canBeAccessed(long nowMillis) {
+        return isActive && !isExpired(nowMillis) && !isClickLimitReached();
     }
 
     @Override
@@ -119,10 +335,40 @@ public class Link implements Serializable {
                 ", originalUrl='" + originalUrl + '\'' +
                 ", userId=" + userId +
                 ", clickLimit=" + clickLimit +
-                ", currentClicks=" + currentClicks +
+                ", currentClicks=" + getCurrentClicks() +
                 ", createdAt=" + createdAt +
-                ", expiresAt=" + expiresAt +
+                ", expiresAt=" + getExpiresAt() +
                 ", isActive=" + isActive +
                 '}';
     }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("shortUrl", shortUrl);
+        fields.put("originalUrl", originalUrl);
+        fields.put("userId", userId);
+        fields.put("clickLimit", clickLimit);
+        fields.put("currentClicks", getCurrentClicks());
+        fields.put("createdAt", createdAt);
+        fields.put("expiresAt", getExpiresAt());
+        fields.put("isActive", isActive);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        shortUrl = (String) fields.get("shortUrl", null);
+        originalUrl = (String) fields.get("originalUrl", null);
+        userId = (UUID) fields.get("userId", null);
+        clickLimit = fields.get("clickLimit", 0);
+        currentClicks = fields.get("currentClicks", 0);
+        createdAt = (LocalDateTime) fields.get("createdAt", null);
+        LocalDateTime expiresAt = (LocalDateTime) fields.get("expiresAt", null);
+        expiresAtMillis = expiresAt != null ? toMillis(expiresAt) : Long.MAX_VALUE;
+        isActive = fields.get("isActive", false);
+    }
 }
@@ -0,0 +1,56 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Страница ссылок пользователя и курсор следующей страницы.
+ * Курсор — непрозрачная строка; null означает, что страниц больше нет.
+ * При отборе страница может быть неполной или пустой, но с курсором:
+ * за один запрос просматривается ограниченное число ссылок.
+ */
+public final class LinkPage {
+
+    /**
+     * Отбор ссылок при постраничном просмотре
+     */
+    public enum Filter {
+        ALL("все"),
+        ACTIVE("активные"),
+        EXPIRED("просроченные"),
+        NEAR_LIMIT("близкие к лимиту переходов");
+
+        private final String description;
+
+        Filter(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final List<Link> links;
+    private final String nextCursor;
+
+    public LinkPage(List<Link> links, String nextCursor) {
+        this.links = Collections.unmodifiableList(links);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Link> getLinks() {
+        return links;
+    }
+
+    /**
+     * @return курсор для запроса следующей страницы или null
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,132 @@
+package model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Результат перехода по короткой ссылке: оригинальный URL или причина недоступности.
+ * Неизменяемый снимок состояния ссылки на момент перехода.
+ */
+public final class ResolveResult {
+
+    /**
+     * Итог перехода
+     */
+    public enum Status {
+        OK(null),
+        NOT_FOUND("Ссылка не найдена"),
+        EXPIRED("Срок действия ссылки истек"),
+        CLICK_LIMIT_REACHED("Лимит переходов исчерпан"),
+        INACTIVE("Ссылка деактивирована");
+
+        private final String message;
+
+        Status(String message) {
+            this.message = message;
+        }
+
+        /**
+         * @return причина недоступности для пользователя или null для OK
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public static final ResolveResult NOT_FOUND = new ResolveResult(Status.NOT_FOUND, null, null, 0, 0, 0);
+
+    private final Status status;
+    private final String shortUrl;
+    private final String originalUrl;
+    private final int clickLimit;
+    private final int currentClicks;
+    private final long expiresAtMillis;
+
+    private ResolveResult(Status status, String shortUrl, String originalUrl,
+                          int clickLimit, int currentClicks, long expiresAtMillis) {
+        this.status = status;
+        this.shortUrl = shortUrl;
+        this.originalUrl = originalUrl;
+        this.clickLimit = clickLimit;
+        this.currentClicks = currentClicks;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    /**
+     * Успешный переход
+     * @param currentClicks значение счетчика после этого перехода
+     */
+    public static ResolveResult success(Link link, int currentClicks) {
+        return new ResolveResult(Status.OK, link.getShortUrl(), link.getOriginalUrl(),
+                link.getClickLimit(), currentClicks, link.getExpiresAtMillis());
+    }
+
+    /**
+     * Успешный переход по данным ссылки без её объекта (например, из кеша)
+     * @param currentClicks значение счетчика после этого перехода
+     */
+    public static ResolveResult success(String shortUrl, String originalUrl, int clickLimit,
+                                        int currentClicks, long expiresAtMillis) {
+        return new ResolveResult(Status.OK, shortUrl, originalUrl, clickLimit, currentClicks, expiresAtMillis);
+    }
+
+    /**
+     * Переход отклонен по указанной причине
+     */
+    public static ResolveResult unavailable(Status status, Link link) {
+        return new ResolveResult(status, link.getShortUrl(), link.getOriginalUrl(),
+                link.getClickLimit(), link.getCurrentClicks(), link.getExpiresAtMillis());
+    }
+
+    public boolean isSuccess() {
+        return status == Status.OK;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    /**
+     * @return оригинальный URL (для недоступной ссылки — справочно, переходить по нему нельзя)
+     */
+    public String getOriginalUrl() {
+        return originalUrl;
+    }
+
+    public int getClickLimit() {
+        return clickLimit;
+    }
+
+    public int getCurrentClicks() {
+        return currentClicks;
+    }
+
+    public int getRemainingClicks() {
+        return Math.max(0, clickLimit - currentClicks);
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAtMillis), ZoneId.systemDefault());
+    }
+
+    @Override
+    public String toString() {
+        return "ResolveResult{" +
+                "status=" + status +
+                ", shortUrl='" + shortUrl + '\'' +
+                ", originalUrl='" + originalUrl + '\'' +
+                ", currentClicks=" + currentClicks +
+                ", clickLimit=" + clickLimit +
+                ", expiresAt=" + (status == Status.NOT_FOUND ? null : getExpiresAt()) +
+                '}';
+    }
+}
@@ -1,5 +1,9 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,17 +14,23 @@ import java.util.UUID;
  */
 public class User implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Сериализованная форма прежней версии класса: ссылки хранились списком
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", UUID.class),
+            new ObjectStreamField("shortUrls", List.class)
+    };
     private UUID id;
-    private List<String> shortUrls;
+    // Ссылки пользователя: добавление и удаление за O(1), обход страницами
+    private transient UserLinkIndex shortUrls;
 
     public User() {
         this.id = UUID.randomUUID();
-        this.shortUrls = new ArrayList<>();
+        this.shortUrls = new UserLinkIndex();
     }
 
     public User(UUID id) {
         this.id = id;
-        this.shortUrls = new ArrayList<>();
+        this.shortUrls = new UserLinkIndex();
     }
 
     public UUID getId() {
@@ -31,12 +41,30 @@ public class User implements Serializable {
         this.id = id;
     }
 
+    /**
+     * @return копия списка ссылок в порядке добавления
+     */
     public List<String> getShortUrls() {
-        return shortUrls;
+        return shortUrls.toList();
     }
 
     public void setShortUrls(List<String> shortUrls) {
-        this.shortUrls = shortUrls;
+        UserLinkIndex index = new UserLinkIndex();
+        for (String shortUrl : shortUrls) {
+            index.add(shortUrl);
+        }
+        this.shortUrls = index;
+    }
+
+    /**
+     * @return индекс ссылок пользователя для постраничного обхода
+     */
+    public UserLinkIndex getShortUrlIndex() {
+        return shortUrls;
+    }
+
+    public int getShortUrlCount() {
+        return shortUrls.size();
     }
 
     public void addShortUrl(String shortUrl) {
@@ -54,4 +82,19 @@ public class User implements Serializable {
                 ", shortUrls=" + shortUrls.size() +
                 '}';
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("shortUrls", new ArrayList<>(shortUrls.toList()));
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = (UUID) fields.get("id", null);
+        List<String> list = (List<String>) fields.get("shortUrls", null);
+        setShortUrls(list != null ? list : new ArrayList<>());
+    }
 }
@@ -0,0 +1,272 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Коды ссылок одного пользователя в порядке добавления.
+ *
+ * Коды лежат в массиве в порядке добавления вместе с возрастающими номерами
+ * добавления; удаленный код оставляет пустую позицию, и массив уплотняется,
+ * когда пустых позиций становится больше половины. Позиция кода находится по
+ * таблице с открытой адресацией из int, поэтому добавление и удаление —
+ * O(1) в среднем, а в куче на код приходится около 20–40 байт массивов
+ * (номер, ссылка на строку и слоты таблицы с учетом запаса) без отдельных
+ * объектов на каждый код. Сами строки кодов индекс тоже держит.
+ *
+ * Обход идет страницами по курсору {@link Cursor} (номер и код последнего
+ * выданного элемента): продолжение с курсора — двоичный поиск по номерам,
+ * O(log n), в том числе если ссылку курсора удалили между страницами.
+ * Каждая страница читается под блокировкой индекса, поэтому параллельные
+ * изменения не портят обход, но могут быть не видны в нем.
+ */
+public final class UserLinkIndex {
+    private static final int INITIAL_CAPACITY = 4;
+
+    // Номера и коды в порядке добавления; null — удаленный код
+    private long[] sequences = new long[INITIAL_CAPACITY];
+    private String[] codes = new String[INITIAL_CAPACITY];
+    private int end;
+    private int size;
+    // Позиция кода + 1 (0 — пустой слот), заполнение не больше половины
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    private long nextSequence = 1;
+
+    /**
+     * Добавляет код в конец; повторное добавление ничего не меняет
+     * @return true, если код добавлен
+     */
+    public synchronized boolean add(String shortUrl) {
+        if (find(shortUrl) >= 0) {
+            return false;
+        }
+        if (end == codes.length) {
+            // Уплотняем, если пустых позиций много, иначе растем
+            if (end - size >= end / 2) {
+                compact(Math.max(INITIAL_CAPACITY, size * 2));
+            } else {
+                compact(codes.length * 2);
+            }
+        }
+        sequences[end] = nextSequence++;
+        codes[end] = shortUrl;
+        end++;
+        size++;
+        if (size * 2 > table.length) {
+            rebuildTable(table.length * 2);
+        } else {
+            insert(end - 1);
+        }
+        return true;
+    }
+
+    /**
+     * @return true, если код был в индексе
+     */
+    public synchronized boolean remove(String shortUrl) {
+        int slot = find(shortUrl);
+        if (slot < 0) {
+            return false;
+        }
+        int position = table[slot] - 1;
+        deleteSlot(slot);
+        codes[position] = null;
+        size--;
+        if (end > INITIAL_CAPACITY && end - size > end / 2) {
+            compact(Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(String shortUrl) {
+        return find(shortUrl) >= 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return копия всех кодов в порядке добавления
+     */
+    public synchronized List<String> toList() {
+        List<String> result = new ArrayList<>(size);
+        for (int i = 0; i < end; i++) {
+            if (codes[i] != null) {
+                result.add(codes[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет в {@code page} не больше {@code limit} кодов, следующих за курсором
+     * @param after курсор предыдущей страницы или null для первой страницы
+     * @return курсор последнего добавленного кода или null, если кодов больше нет
+     */
+    public synchronized Cursor page(Cursor after, int limit, List<String> page) {
+        int position = after == null ? 0 : firstAfter(after.getSequence());
+        int last = -1;
+        for (int added = 0; added < limit && position < end; position++) {
+            if (codes[position] != null) {
+                page.add(codes[position]);
+                last = position;
+                added++;
+            }
+        }
+        return last < 0 ? null : new Cursor(sequences[last], codes[last]);
+    }
+
+    /**
+     * Обход кодов, читающий индекс страницами заданного размера
+     */
+    public Iterator<String> iterator(int pageSize) {
+        return new Iterator<String>() {
+            private final List<String> page = new ArrayList<>(pageSize);
+            private Cursor cursor;
+            private int position;
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                if (position < page.size()) {
+                    return true;
+                }
+                if (finished) {
+                    return false;
+                }
+                page.clear();
+                position = 0;
+                cursor = page(cursor, pageSize, page);
+                finished = cursor == null || page.size() < pageSize;
+                return !page.isEmpty();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(position++);
+            }
+        };
+    }
+
+    /**
+     * @return первая позиция с номером больше заданного (номера возрастают и у удаленных позиций)
+     */
+    private int firstAfter(long sequence) {
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sequences[middle] <= sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return слот таблицы с кодом или -1
+     */
+    private int find(String shortUrl) {
+        int mask = table.length - 1;
+        for (int slot = mix(shortUrl.hashCode()) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (codes[table[slot] - 1].equals(shortUrl)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int position) {
+        int mask = table.length - 1;
+        int slot = mix(codes[position].hashCode()) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = position + 1;
+    }
+
+    /**
+     * Удаляет слот сдвигом назад, чтобы цепочки пробирования не рвались
+     */
+    private void deleteSlot(int slot) {
+        int mask = table.length - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (table[next] == 0) {
+                break;
+            }
+            int home = mix(codes[table[next] - 1].hashCode()) & mask;
+            // Запись остается на месте, если её исходный слот лежит между дыркой и ней
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!stays) {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    /**
+     * Переносит живые коды в начало массивов заданной емкости и перестраивает таблицу
+     */
+    private void compact(int capacity) {
+        long[] newSequences = new long[capacity];
+        String[] newCodes = new String[capacity];
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (codes[i] != null) {
+                newSequences[count] = sequences[i];
+                newCodes[count] = codes[i];
+                count++;
+            }
+        }
+        sequences = newSequences;
+        codes = newCodes;
+        end = count;
+        rebuildTable(Math.max(INITIAL_CAPACITY * 2, Integer.highestOneBit(Math.max(size, 1) * 4 - 1)));
+    }
+
+    private void rebuildTable(int length) {
+        table = new int[length];
+        for (int i = 0; i < end; i++) {
+            if (codes[i] != null) {
+                insert(i);
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash * 0x9E3779B9 ^ (hash >>> 16);
+    }
+
+    /**
+     * Позиция в обходе: номер добавления и код последнего выданного элемента
+     */
+    public static final class Cursor {
+        private final long sequence;
+        private final String shortUrl;
+
+        public Cursor(long sequence, String shortUrl) {
+            this.sequence = sequence;
+            this.shortUrl = shortUrl;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getShortUrl() {
+            return shortUrl;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.Link;
+import model.ResolveResult;
+import service.LinkService;
+import service.ShortUrlGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP-сервер переходов на JDK {@link HttpServer}.
+ *
+ * GET /{code} — переход по короткой ссылке (301/302 с заголовком Location),
+ * 404, если ссылки нет, и 410, если она просрочена, исчерпана или деактивирована.
+ *
+ * API управления ссылками (параметры — в строке запроса или в теле
+ * application/x-www-form-urlencoded):
+ * POST /api/links (url, userId, clickLimit, expirationHours) — создание;
+ * PUT /api/links/{code} (userId, clickLimit, expirationHours) — изменение;
+ * DELETE /api/links/{code} (userId) — удаление.
+ * GET /api/metrics — метрики сервиса в текстовом формате Prometheus.
+ *
+ * Запросы обрабатывает ограниченный пул потоков; соединения HTTP/1.1 остаются
+ * открытыми (keep-alive) между запросами. Если очередь пула переполнена,
+ * запрос получает 503 из отдельного потока отказов: принимающий поток JDK
+ * не обрабатывает запросы сам и продолжает обслуживать остальные соединения.
+ * Очередь потока отказов тоже ограничена; при её переполнении 503 пишет
+ * принимающий поток.
+ */
+public class HttpRedirectServer {
+    private static final String API_PATH = "/api/links";
+    private static final String METRICS_PATH = "/api/metrics";
+    private static final int DEFAULT_CLICK_LIMIT = 10;
+    private static final int DEFAULT_EXPIRATION_HOURS = 24;
+
+    private final LinkService linkService;
+    private final ServerConfig config;
+    private HttpServer server;
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor rejectExecutor;
+    // Запрос выполняется потоком отказов и получает 503 без обращения к сервису
+    private final ThreadLocal<Boolean> overloaded = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    public HttpRedirectServer(LinkService linkService, ServerConfig config) {
+        this.linkService = linkService;
+        this.config = config;
+    }
+
+    /**
+     * Запускает сервер
+     */
+    public void start() throws IOException {
+        // Настройки keep-alive читаются JDK при первом создании сервера и действуют
+        // на все HttpServer в JVM; заданное при запуске свойство не перезаписывается
+        if (System.getProperty("sun.net.httpserver.idleInterval") == null) {
+            System.setProperty("sun.net.httpserver.idleInterval", String.valueOf(config.getKeepAliveSeconds()));
+        }
+
+        // Очередь отказов ограничена; если переполнена и она, короткий ответ 503
+        // пишет принимающий поток JDK, не накапливая запросы в памяти
+        rejectExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "http-reject");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(config.getWorkers(), config.getWorkers(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "http-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, pool) -> rejectExecutor.execute(() -> {
+                    overloaded.set(Boolean.TRUE);
+                    try {
+                        task.run();
+                    } finally {
+                        overloaded.set(Boolean.FALSE);
+                    }
+                }));
+
+        server = HttpServer.create(new InetSocketAddress(config.getPort()), config.getBacklog());
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return порт, на котором сервер принимает соединения
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Останавливает сервер, дожидаясь завершения текущих запросов
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+        }
+        if (executor != null) {
+            executor.shutdown();
+            rejectExecutor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+                rejectExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (overloaded.get()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.getResponseHeaders().set("Connection", "close");
+                send(exchange, 503, "Сервер перегружен, повторите запрос позже");
+                return;
+            }
+
+            String path = exchange.getRequestURI().getRawPath();
+            String method = exchange.getRequestMethod();
+
+            if (path.equals(API_PATH) || path.startsWith(API_PATH + "/")) {
+                handleApi(exchange, method, path.substring(API_PATH.length()));
+            } else if (path.equals(METRICS_PATH) && method.equals("GET")) {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                send(exchange, 200, linkService.getMetrics().getText());
+            } else if (method.equals("GET")) {
+                redirect(exchange, path.substring(1));
+            } else {
+                send(exchange, 405, "Метод не поддерживается");
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка обработки запроса " + exchange.getRequestURI() + ": " + e.getMessage());
+            send(exchange, 500, "Внутренняя ошибка сервера");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void redirect(HttpExchange exchange, String code) throws IOException {
+        if (code.isEmpty()) {
+            send(exchange, 404, ResolveResult.Status.NOT_FOUND.getMessage());
+            return;
+        }
+
+        ResolveResult result = linkService.resolve(ShortUrlGenerator.BASE_URL + code);
+        if (result.isSuccess()) {
+            exchange.getResponseHeaders().set("Location", result.getOriginalUrl());
+            exchange.sendResponseHeaders(config.getRedirectStatus(), -1);
+        } else if (result.getStatus() == ResolveResult.Status.NOT_FOUND) {
+            send(exchange, 404, result.getStatus().getMessage());
+        } else {
+            send(exchange, 410, result.getStatus().getMessage());
+        }
+    }
+
+    private void handleApi(HttpExchange exchange, String method, String rest) throws IOException {
+        Map<String, String> params = readParams(exchange);
+
+        if (rest.isEmpty()) {
+            if (!method.equals("POST")) {
+                send(exchange, 405, "Метод не поддерживается");
+                return;
+            }
+            createLink(exchange, params);
+            return;
+        }
+
+        String shortUrl = ShortUrlGenerator.BASE_URL + rest.substring(1);
+        UUID userId = parseUserId(params.get("userId"));
+        if (userId == null) {
+            throw new IllegalArgumentException("Не указан userId");
+        }
+
+        Link link = linkService.getLinkInfo(shortUrl);
+        if (link == null) {
+            send(exchange, 404, ResolveResult.Status.NOT_FOUND.getMessage());
+            return;
+        }
+        if (!link.getUserId().equals(userId)) {
+            send(exchange, 403, "Ссылка принадлежит другому пользователю");
+            return;
+        }
+
+        switch (method) {
+            case "PUT":
+                Integer clickLimit = parseInt(params.get("clickLimit"));
+                Integer expirationHours = parseInt(params.get("expirationHours"));
+                checkPositive(clickLimit, expirationHours);
+                if (linkService.updateLink(shortUrl, userId, clickLimit, expirationHours)) {
+                    send(exchange, 204, null);
+                } else {
+                    send(exchange, 409, "Параметры ссылки не изменились");
+                }
+                break;
+            case "DELETE":
+                if (linkService.deleteLink(shortUrl, userId)) {
+                    send(exchange, 204, null);
+                } else {
+                    send(exchange, 404, ResolveResult.Status.NOT_FOUND.getMessage());
+                }
+                break;
+            default:
+                send(exchange, 405, "Метод не поддерживается");
+        }
+    }
+
+    private void createLink(HttpExchange exchange, Map<String, String> params) throws IOException {
+        UUID userId = parseUserId(params.get("userId"));
+        if (userId == null) {
+            userId = UUID.randomUUID();
+        }
+        Integer clickLimit = parseInt(params.get("clickLimit"));
+        Integer expirationHours = parseInt(params.get("expirationHours"));
+        checkPositive(clickLimit, expirationHours);
+
+        String shortUrl = linkService.createShortLink(params.get("url"), userId,
+                clickLimit != null ? clickLimit : DEFAULT_CLICK_LIMIT,
+                expirationHours != null ? expirationHours : DEFAULT_EXPIRATION_HOURS);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        send(exchange, 201, "{\"shortUrl\":\"" + shortUrl + "\",\"userId\":\"" + userId + "\"}");
+    }
+
+    /**
+     * Проверяет переданные лимит и время жизни; отсутствующие параметры не проверяются
+     */
+    private static void checkPositive(Integer clickLimit, Integer expirationHours) {
+        if (clickLimit != null && clickLimit <= 0) {
+            throw new IllegalArgumentException("Лимит должен быть больше 0");
+        }
+        if (expirationHours != null && expirationHours <= 0) {
+            throw new IllegalArgumentException("Время жизни должно быть больше 0");
+        }
+    }
+
+    /**
+     * Собирает параметры из строки запроса и тела формы
+     */
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseQuery(exchange.getRequestURI().getRawQuery(), params);
+
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            parseQuery(new String(readBody(exchange.getRequestBody()), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseQuery(String query, Map<String, String> params) {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static UUID parseUserId(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неверный формат userId");
+        }
+    }
+
+    private static Integer parseInt(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверный формат числа: " + value);
+        }
+    }
+
+    /**
+     * Отправляет ответ с текстовым телом (или без тела, если body == null)
+     */
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        if (!headers.containsKey("Content-Type")) {
+            headers.set("Content-Type", "text/plain; charset=utf-8");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
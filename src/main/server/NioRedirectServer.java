@@ -0,0 +1,433 @@
+package server;
+
+import model.ResolveResult;
+import service.LinkService;
+import service.ShortUrlGenerator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Неблокирующий сервер переходов на селекторах NIO (альтернатива {@link HttpRedirectServer}).
+ *
+ * Обслуживает только GET /{code}. Поток приема раздает соединения по кругу
+ * потокам-селекторам; каждый селектор сам читает запросы, разбирает строку
+ * запроса прямо в {@link ByteBuffer} и отвечает готовым буфером. Для каждого кода
+ * селектор хранит строку короткой ссылки и заранее закодированный ответ с Location
+ * в direct-буфере, поэтому на повторных переходах сервер не создает строк и буферов.
+ * Учет перехода и проверки лимита и срока выполняет {@link LinkService} при каждом запросе.
+ */
+public class NioRedirectServer {
+    // Размер кеша кодов на один селектор (степень двойки); при коллизии запись вытесняется
+    private static final int CACHE_SIZE = 1 << 16;
+    private static final int REQUEST_BUFFER_SIZE = 8192;
+    private static final byte[] CONNECTION_CLOSE = "\nconnection: close".getBytes(StandardCharsets.US_ASCII);
+
+    private final LinkService linkService;
+    private final ServerConfig config;
+    private ServerSocketChannel serverChannel;
+    private Worker[] workers;
+    private Thread acceptThread;
+    private volatile boolean running;
+
+    public NioRedirectServer(LinkService linkService, ServerConfig config) {
+        this.linkService = linkService;
+        this.config = config;
+    }
+
+    /**
+     * Запускает поток приема и потоки-селекторы
+     */
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
+
+        running = true;
+        workers = new Worker[config.getSelectorThreads()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker();
+            Thread thread = new Thread(workers[i], "nio-selector-" + (i + 1));
+            thread.setDaemon(true);
+            workers[i].thread = thread;
+            thread.start();
+        }
+
+        acceptThread = new Thread(this::acceptLoop, "nio-acceptor");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return порт, на котором сервер принимает соединения
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Останавливает сервер и закрывает все соединения
+     */
+    public void stop() {
+        running = false;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка при остановке сервера: " + e.getMessage());
+        }
+        if (workers != null) {
+            for (Worker worker : workers) {
+                worker.selector.wakeup();
+                try {
+                    worker.thread.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Worker worker = workers[next];
+                next = (next + 1) % workers.length;
+                worker.newChannels.add(channel);
+                worker.selector.wakeup();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Ошибка при приеме соединения: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Состояние соединения: накопленные байты запроса и недописанный ответ
+     */
+    private static final class Connection {
+        final ByteBuffer in = ByteBuffer.allocateDirect(REQUEST_BUFFER_SIZE);
+        ByteBuffer pending;
+        int pendingPosition;
+        boolean closeAfterWrite;
+    }
+
+    /**
+     * Запись кеша: код из запроса, строка короткой ссылки и готовый ответ
+     */
+    private static final class CodeEntry {
+        final byte[] code;
+        final int hash;
+        final String shortUrl;
+        String originalUrl;
+        ByteBuffer response;
+
+        CodeEntry(byte[] code, int hash, String shortUrl) {
+            this.code = code;
+            this.hash = hash;
+            this.shortUrl = shortUrl;
+        }
+    }
+
+    /**
+     * Поток-селектор; все его структуры используются только из этого потока
+     */
+    private final class Worker implements Runnable {
+        final Selector selector;
+        final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        final CodeEntry[] cache = new CodeEntry[CACHE_SIZE];
+        final ByteBuffer notFound = staticResponse("404 Not Found", "Link not found");
+        final ByteBuffer gone = staticResponse("410 Gone", "Link expired or click limit reached");
+        final ByteBuffer methodNotAllowed = staticResponse("405 Method Not Allowed", "Only GET is supported");
+        final ByteBuffer badRequest = staticResponse("400 Bad Request", "Bad request");
+        final String statusLine = config.getRedirectStatus() == 301
+                ? "HTTP/1.1 301 Moved Permanently\r\n" : "HTTP/1.1 302 Found\r\n";
+        Thread thread;
+
+        Worker() throws IOException {
+            selector = Selector.open();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    registerNewChannels();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            if (key.isValid() && key.isWritable()) {
+                                onWritable(key);
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                onReadable(key);
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            // Сбой одного соединения не должен останавливать селектор
+                            close(key);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Ошибка селектора: " + e.getMessage());
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                close(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Селектор уже закрыт
+            }
+        }
+
+        private void registerNewChannels() throws IOException {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                channel.register(selector, SelectionKey.OP_READ, new Connection());
+            }
+        }
+
+        private void onReadable(SelectionKey key) throws IOException {
+            Connection connection = (Connection) key.attachment();
+            SocketChannel channel = (SocketChannel) key.channel();
+            if (channel.read(connection.in) < 0) {
+                close(key);
+                return;
+            }
+            processRequests(key, connection);
+        }
+
+        private void onWritable(SelectionKey key) throws IOException {
+            Connection connection = (Connection) key.attachment();
+            if (!writePending(key, connection) || !key.isValid()) {
+                // Ответ не дописан или соединение закрыто после него
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            // Запросы, пришедшие конвейером, пока ответ дописывался
+            processRequests(key, connection);
+        }
+
+        /**
+         * Обрабатывает все полностью полученные запросы из буфера соединения
+         */
+        private void processRequests(SelectionKey key, Connection connection) throws IOException {
+            ByteBuffer in = connection.in;
+            in.flip();
+            while (connection.pending == null && key.isValid()) {
+                int end = headersEnd(in);
+                if (end < 0) {
+                    break;
+                }
+                respond(key, connection, in, in.position(), end);
+                in.position(end);
+            }
+            in.compact();
+
+            if (key.isValid() && connection.pending == null && !in.hasRemaining()) {
+                // Заголовки не помещаются в буфер
+                connection.closeAfterWrite = true;
+                send(key, connection, badRequest);
+            }
+        }
+
+        private void respond(SelectionKey key, Connection connection, ByteBuffer in, int start, int end)
+                throws IOException {
+            connection.closeAfterWrite = isConnectionClose(in, start, end);
+
+            // Строка запроса: GET /code HTTP/1.1
+            if (end - start < 5 || in.get(start) != 'G' || in.get(start + 1) != 'E'
+                    || in.get(start + 2) != 'T' || in.get(start + 3) != ' ') {
+                send(key, connection, methodNotAllowed);
+                return;
+            }
+            int codeStart = start + 4;
+            if (in.get(codeStart) != '/') {
+                send(key, connection, badRequest);
+                return;
+            }
+            codeStart++;
+            int codeEnd = codeStart;
+            int hash = 0;
+            while (codeEnd < end) {
+                byte b = in.get(codeEnd);
+                if (b == ' ' || b == '?' || b == '\r') {
+                    break;
+                }
+                hash = 31 * hash + b;
+                codeEnd++;
+            }
+            if (codeEnd == codeStart) {
+                send(key, connection, notFound);
+                return;
+            }
+
+            CodeEntry entry = lookup(in, codeStart, codeEnd, hash);
+            // Один поиск: причина отказа приходит вместе с результатом (просроченная
+            // ссылка к этому моменту уже удалена и повторный поиск её бы не нашел)
+            ResolveResult result = linkService.resolve(entry.shortUrl);
+            if (!result.isSuccess()) {
+                send(key, connection, result.getStatus() == ResolveResult.Status.NOT_FOUND ? notFound : gone);
+                return;
+            }
+            String originalUrl = result.getOriginalUrl();
+            // Компактные хранилища возвращают новую строку при каждом чтении, поэтому
+            // URL сравнивается по значению: иначе ответ собирался бы на каждый переход
+            if (!originalUrl.equals(entry.originalUrl)) {
+                entry.originalUrl = originalUrl;
+                entry.response = redirectResponse(originalUrl);
+            }
+            send(key, connection, entry.response);
+        }
+
+        /**
+         * Находит запись кеша по байтам кода; строка создается только при промахе
+         */
+        private CodeEntry lookup(ByteBuffer in, int codeStart, int codeEnd, int hash) {
+            int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+            CodeEntry entry = cache[slot];
+            if (entry != null && entry.hash == hash && codeEquals(entry.code, in, codeStart, codeEnd)) {
+                return entry;
+            }
+
+            byte[] code = new byte[codeEnd - codeStart];
+            for (int i = 0; i < code.length; i++) {
+                code[i] = in.get(codeStart + i);
+            }
+            entry = new CodeEntry(code, hash, ShortUrlGenerator.BASE_URL + new String(code, StandardCharsets.UTF_8));
+            cache[slot] = entry;
+            return entry;
+        }
+
+        private void send(SelectionKey key, Connection connection, ByteBuffer response) throws IOException {
+            connection.pending = response;
+            connection.pendingPosition = 0;
+            if (!writePending(key, connection)) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+
+        /**
+         * Дописывает ответ из общего буфера; позиция хранится в соединении,
+         * потому что буфер ответа разделяют все соединения селектора
+         * @return true, если ответ записан полностью
+         */
+        private boolean writePending(SelectionKey key, Connection connection) throws IOException {
+            ByteBuffer response = connection.pending;
+            response.limit(response.capacity()).position(connection.pendingPosition);
+            ((SocketChannel) key.channel()).write(response);
+            if (response.hasRemaining()) {
+                connection.pendingPosition = response.position();
+                return false;
+            }
+
+            connection.pending = null;
+            if (connection.closeAfterWrite) {
+                close(key);
+            }
+            return true;
+        }
+
+        private ByteBuffer redirectResponse(String originalUrl) {
+            // Переводы строк в URL разорвали бы заголовок ответа
+            String location = originalUrl.replace("\r", "%0D").replace("\n", "%0A");
+            return encode(statusLine + "Location: " + location + "\r\nContent-Length: 0\r\n\r\n");
+        }
+
+        private ByteBuffer staticResponse(String status, String body) {
+            return encode("HTTP/1.1 " + status + "\r\nContent-Type: text/plain\r\nContent-Length: "
+                    + body.length() + "\r\n\r\n" + body);
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // Соединение уже закрыто
+            }
+        }
+    }
+
+    private static ByteBuffer encode(String response) {
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    private static boolean codeEquals(byte[] code, ByteBuffer in, int start, int end) {
+        if (code.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < code.length; i++) {
+            if (code[i] != in.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return позиция сразу после пустой строки, завершающей заголовки, или -1
+     */
+    private static int headersEnd(ByteBuffer in) {
+        for (int i = in.position() + 3; i < in.limit(); i++) {
+            if (in.get(i) == '\n' && in.get(i - 1) == '\r' && in.get(i - 2) == '\n' && in.get(i - 3) == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Проверяет, просит ли клиент закрыть соединение после ответа
+     * (HTTP/1.0 или заголовок Connection: close)
+     */
+    private static boolean isConnectionClose(ByteBuffer in, int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n') {
+                // Конец строки запроса: ...HTTP/1.0
+                if (i >= 3 && in.get(i - 1) == '0' && in.get(i - 2) == '.' && in.get(i - 3) == '1') {
+                    return true;
+                }
+                break;
+            }
+        }
+
+        outer:
+        for (int i = start; i <= end - CONNECTION_CLOSE.length; i++) {
+            for (int j = 0; j < CONNECTION_CLOSE.length; j++) {
+                byte b = in.get(i + j);
+                if (b >= 'A' && b <= 'Z') {
+                    b += 'a' - 'A';
+                }
+                if (b != CONNECTION_CLOSE[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,114 @@
+package server;
+
+/**
+ * Настройки HTTP-сервера переходов.
+ * Значения по умолчанию можно переопределить системными свойствами
+ * (например, -Durlshortener.server.port=8081).
+ */
+public class ServerConfig {
+    private static final String PREFIX = "urlshortener.server.";
+
+    // Режим сервера: http — JDK HttpServer с пулом потоков, nio — селекторы NIO (только переходы)
+    private String mode = "http";
+    // Порт HTTP-сервера
+    private int port = 8080;
+    // Число рабочих потоков обработки запросов
+    private int workers = Runtime.getRuntime().availableProcessors() * 2;
+    // Число потоков-селекторов в режиме nio
+    private int selectorThreads = Runtime.getRuntime().availableProcessors();
+    // Число запросов, ожидающих свободного потока; при переполнении запрос получает 503
+    private int queueCapacity = 1024;
+    // Очередь входящих соединений (backlog сокета)
+    private int backlog = 1024;
+    // Время жизни простаивающего keep-alive соединения, с. Передается JDK системным
+    // свойством sun.net.httpserver.idleInterval, общим для всех HttpServer в JVM
+    private int keepAliveSeconds = 30;
+    // Код ответа перехода: 302 (каждый переход доходит до сервера и учитывается) или 301
+    private int redirectStatus = 302;
+
+    /**
+     * Создает настройки по умолчанию с учетом системных свойств
+     */
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig config = new ServerConfig();
+        config.setMode(System.getProperty(PREFIX + "mode", config.mode));
+        config.port = Integer.getInteger(PREFIX + "port", config.port);
+        config.workers = Integer.getInteger(PREFIX + "workers", config.workers);
+        config.selectorThreads = Integer.getInteger(PREFIX + "selectorThreads", config.selectorThreads);
+        config.queueCapacity = Integer.getInteger(PREFIX + "queueCapacity", config.queueCapacity);
+        config.backlog = Integer.getInteger(PREFIX + "backlog", config.backlog);
+        config.keepAliveSeconds = Integer.getInteger(PREFIX + "keepAliveSeconds", config.keepAliveSeconds);
+        config.setRedirectStatus(Integer.getInteger(PREFIX + "redirectStatus", config.redirectStatus));
+        return config;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        if (!mode.equals("http") && !mode.equals("nio")) {
+            throw new IllegalArgumentException("Режим сервера должен быть http или nio");
+        }
+        this.mode = mode;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public void setSelectorThreads(int selectorThreads) {
+        this.selectorThreads = selectorThreads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public void setKeepAliveSeconds(int keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+    public int getRedirectStatus() {
+        return redirectStatus;
+    }
+
+    public void setRedirectStatus(int redirectStatus) {
+        if (redirectStatus != 301 && redirectStatus != 302) {
+            throw new IllegalArgumentException("Код перехода должен быть 301 или 302");
+        }
+        this.redirectStatus = redirectStatus;
+    }
+}
@@ -0,0 +1,114 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Вероятностный фильтр занятых кодов (считающий фильтр Блума).
+ *
+ * Отрицательный ответ {@link #mightContain} точен: код гарантированно свободен,
+ * и хранилище можно не проверять. Положительный ответ может быть ложным, тогда
+ * занятость проверяется по хранилищу. Каждому коду соответствуют несколько
+ * четырехбитных счетчиков, поэтому коды можно не только добавлять, но и удалять.
+ * Счетчик, дошедший до 15, больше не меняется: это дает лишние ложные
+ * срабатывания, но никогда не ложные отрицания.
+ *
+ * Размер фильтра задается при создании; при заполнении сверх расчетной
+ * вместимости растет только доля ложных срабатываний.
+ */
+public class CodeFilter {
+    // Счетчиков на один код и число хеш-функций: около 2% ложных срабатываний при полной загрузке
+    private static final int COUNTERS_PER_CODE = 8;
+    private static final int HASHES = 5;
+    private static final int COUNTERS_PER_WORD = 16;
+    private static final long MAX_COUNT = 0xF;
+
+    private final AtomicLongArray words;
+    private final int mask;
+
+    /**
+     * @param capacity расчетное число кодов
+     */
+    public CodeFilter(int capacity) {
+        long counters = Math.max(COUNTERS_PER_WORD, (long) Math.max(capacity, 1) * COUNTERS_PER_CODE);
+        int size = (int) Math.min(1L << 30, Long.highestOneBit(counters - 1) << 1);
+        this.words = new AtomicLongArray(size / COUNTERS_PER_WORD);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Отмечает код занятым
+     */
+    public void add(String shortUrl) {
+        addHash(SnapshotFormat.codeHash(shortUrl));
+    }
+
+    /**
+     * Отмечает занятым код по его хешу из индекса снимка ({@link SnapshotFormat#codeHash}):
+     * так фильтр заполняется при запуске без чтения самих записей
+     */
+    void addHash(int codeHash) {
+        long hash = spread(codeHash);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            update(h1 + i * h2, 1);
+        }
+    }
+
+    /**
+     * Снимает отметку с кода; вызывается только для ранее добавленного кода
+     */
+    public void remove(String shortUrl) {
+        long hash = spread(SnapshotFormat.codeHash(shortUrl));
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            update(h1 + i * h2, -1);
+        }
+    }
+
+    /**
+     * @return false, если код точно свободен; true, если код, возможно, занят
+     */
+    public boolean mightContain(String shortUrl) {
+        long hash = spread(SnapshotFormat.codeHash(shortUrl));
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int counter = (h1 + i * h2) & mask;
+            long word = words.get(counter / COUNTERS_PER_WORD);
+            if (((word >>> shift(counter)) & MAX_COUNT) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void update(int position, int delta) {
+        int counter = position & mask;
+        int index = counter / COUNTERS_PER_WORD;
+        int shift = shift(counter);
+        while (true) {
+            long word = words.get(index);
+            long count = (word >>> shift) & MAX_COUNT;
+            // Насыщенный счетчик не меняется: неизвестно, сколько кодов на него приходится
+            if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                return;
+            }
+            long updated = word + ((long) delta << shift);
+            if (words.compareAndSet(index, word, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static int shift(int counter) {
+        return (counter % COUNTERS_PER_WORD) * 4;
+    }
+
+    private static long spread(int codeHash) {
+        // Хеш кода тот же, что в индексе снимка; расширяем до двух независимых половин
+        long h = codeHash * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,605 @@
+package service;
+
+import model.Link;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Компактное хранилище ссылок в массивах примитивов.
+ *
+ * Код вида clck.ru/XXXXXX (до 10 символов base62) хранится как long: длина в
+ * старших четырех битах и значение base62 в остальных. Поля ссылки лежат в
+ * слотах таблицы с открытой адресацией ({@link LinkSlots}), исходные URL — в
+ * области байтов сегмента {@link UrlArena} (одинаковые URL хранятся один раз), UUID
+ * владельцев — в общей таблице, на которую ссылается номер. В куче слот занимает
+ * 41 байт в массивах примитивов; при заполнении таблицы от 3/8 до 3/4 это
+ * 55–110 байт на ссылку без учета байтов URL и таблицы интернирования (12 байт
+ * на слот). Вне кучи слоты, URL и таблица интернирования лежат в прямых буферах
+ * (48 байт на слот), и в куче остаются только сами буферы.
+ *
+ * Место URL удаленных ссылок возвращает {@link #compact}: сегмент, из которого
+ * удаляли ссылки, пересобирает свою область байтов из живых слотов.
+ *
+ * Таблица разбита на сегменты со своей блокировкой. Чтение и учет переходов
+ * идут под блокировкой чтения сегмента (переход — CAS счетчика слота),
+ * изменения — под блокировкой записи. Коды другого вида хранятся объектами
+ * в обычной карте.
+ *
+ * {@link #get} возвращает новую копию ссылки: изменения нужно записать через
+ * {@link #update}, а переходы учитывать через {@link #tryReserveClick}.
+ */
+public class CompactLinkStore implements LinkStore {
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+    private static final int MAX_CODE_LENGTH = 10;
+    private static final int LENGTH_SHIFT = 60;
+    private static final long VALUE_MASK = (1L << LENGTH_SHIFT) - 1;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    // Коды, которые не кодируются в long
+    private final Map<String, Link> overflow = new ConcurrentHashMap<>();
+
+    // Общая таблица UUID владельцев: номер -> UUID
+    private final Map<UUID, Integer> userNumbers = new ConcurrentHashMap<>();
+    private volatile UUID[] userIds = new UUID[16];
+    private int userCount;
+
+    /**
+     * @param offHeap хранить слоты и URL в прямых буферах вне кучи
+     */
+    public CompactLinkStore(boolean offHeap) {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(offHeap);
+        }
+    }
+
+    @Override
+    public Link get(String shortUrl) {
+        long key = encode(shortUrl);
+        if (key == 0) {
+            return overflow.get(shortUrl);
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.readLock();
+        try {
+            int slot = segment.find(key, hash);
+            return slot < 0 ? null : segment.read(shortUrl, slot);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Link putIfAbsent(String shortUrl, Link link) {
+        long key = encode(shortUrl);
+        if (key == 0) {
+            return overflow.putIfAbsent(shortUrl, link);
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        int user = userNumber(link.getUserId());
+        long stamp = segment.lock.writeLock();
+        try {
+            int slot = segment.find(key, hash);
+            if (slot >= 0) {
+                return segment.read(shortUrl, slot);
+            }
+            segment.insert(key, hash, segment.urls.intern(link.getOriginalUrl()), user, link);
+            return null;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void put(String shortUrl, Link link) {
+        long key = encode(shortUrl);
+        if (key == 0) {
+            overflow.put(shortUrl, link);
+            return;
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        int user = userNumber(link.getUserId());
+        long stamp = segment.lock.writeLock();
+        try {
+            int slot = segment.find(key, hash);
+            if (slot >= 0) {
+                segment.delete(slot);
+            }
+            segment.insert(key, hash, segment.urls.intern(link.getOriginalUrl()), user, link);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Link remove(String shortUrl) {
+        long key = encode(shortUrl);
+        if (key == 0) {
+            return overflow.remove(shortUrl);
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            int slot = segment.find(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            Link removed = segment.read(shortUrl, slot);
+            segment.delete(slot);
+            return removed;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void remove(String shortUrl, Link link) {
+        // Копии не сравнимы с хранимыми данными: удаляем по коду
+        if (encode(shortUrl) == 0) {
+            overflow.remove(shortUrl, link);
+        } else {
+            remove(shortUrl);
+        }
+    }
+
+    @Override
+    public boolean containsKey(String shortUrl) {
+        long key = encode(shortUrl);
+        if (key == 0) {
+            return overflow.containsKey(shortUrl);
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.readLock();
+        try {
+            return segment.find(key, hash) >= 0;
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = overflow.size();
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Iterable<Link> snapshot() {
+        return () -> new Iterator<Link>() {
+            private int segmentIndex;
+            private long[] keys = new long[0];
+            private int keyIndex;
+            private Iterator<Link> overflowLinks;
+            private Link next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (keyIndex < keys.length) {
+                        // Ссылку могли удалить после снятия списка кодов
+                        next = get(decode(keys[keyIndex++]));
+                    } else if (segmentIndex < segments.length) {
+                        keys = segments[segmentIndex++].keys();
+                        keyIndex = 0;
+                    } else {
+                        if (overflowLinks == null) {
+                            overflowLinks = overflow.values().iterator();
+                        }
+                        if (!overflowLinks.hasNext()) {
+                            return false;
+                        }
+                        next = overflowLinks.next();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Link next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Link link = next;
+                next = null;
+                return link;
+            }
+        };
+    }
+
+    /**
+     * Отбирает ссылки по номеру владельца в слотах, не создавая копий остальных
+     */
+    @Override
+    public void scanByOwner(UUID ownerId, Consumer<Link> action) {
+        Integer user = userNumbers.get(ownerId);
+        if (user != null) {
+            int number = user;
+            for (Segment segment : segments) {
+                segment.select((slots, slot) -> slots.user(slot) == number).forEach(action);
+            }
+        }
+        for (Link link : overflow.values()) {
+            if (link.getUserId().equals(ownerId)) {
+                action.accept(link);
+            }
+        }
+    }
+
+    /**
+     * Отбирает ссылки по сроку в слотах, не создавая копий остальных
+     */
+    @Override
+    public void scanByExpiry(long expiresAtOrBeforeMillis, Consumer<Link> action) {
+        for (Segment segment : segments) {
+            segment.select((slots, slot) -> slots.expires(slot) <= expiresAtOrBeforeMillis).forEach(action);
+        }
+        for (Link link : overflow.values()) {
+            if (link.getExpiresAtMillis() <= expiresAtOrBeforeMillis) {
+                action.accept(link);
+            }
+        }
+    }
+
+    @Override
+    public int tryReserveClick(Link link) {
+        if (encode(link.getShortUrl()) == 0) {
+            return link.tryReserveClick();
+        }
+        int clicks = tryReserveClick(link.getShortUrl());
+        if (clicks > 0) {
+            // Копия принадлежит вызывающему: отражаем в ней зарезервированное значение
+            link.setCurrentClicks(clicks);
+        }
+        return clicks;
+    }
+
+    @Override
+    public int tryReserveClick(String shortUrl) {
+        long key = encode(shortUrl);
+        if (key == 0) {
+            Link link = overflow.get(shortUrl);
+            return link == null ? 0 : link.tryReserveClick();
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.readLock();
+        try {
+            int slot = segment.find(key, hash);
+            if (slot < 0) {
+                return 0;
+            }
+            LinkSlots slots = segment.slots;
+            while (true) {
+                int clicks = slots.clicks(slot);
+                if (clicks >= slots.limit(slot)) {
+                    return 0;
+                }
+                if (slots.compareAndSetClicks(slot, clicks, clicks + 1)) {
+                    return clicks + 1;
+                }
+            }
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean update(Link link) {
+        long key = encode(link.getShortUrl());
+        if (key == 0) {
+            return overflow.get(link.getShortUrl()) == link;
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            int slot = segment.find(key, hash);
+            if (slot < 0) {
+                return false;
+            }
+            segment.slots.update(slot, link.getExpiresAtMillis(), link.getClickLimit(),
+                    link.getCurrentClicks(), link.isActive());
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean removeIfUnchanged(String shortUrl, Link expected) {
+        long key = encode(shortUrl);
+        if (key == 0) {
+            Link link = overflow.get(shortUrl);
+            return link != null && link.retireIfUnchanged(expected) && overflow.remove(shortUrl, link);
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            int slot = segment.find(key, hash);
+            if (slot < 0 || !segment.matches(slot, expected)) {
+                return false;
+            }
+            segment.delete(slot);
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean storesObjects() {
+        return false;
+    }
+
+    /**
+     * Пересобирает области URL сегментов, из которых удаляли ссылки, оставляя
+     * только URL живых слотов. Каждый сегмент пересобирается под своей
+     * блокировкой записи, остальные сегменты в это время доступны.
+     */
+    @Override
+    public void compact() {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                if (segment.removedSinceCompaction > 0) {
+                    segment.compactUrls();
+                }
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * @return число байтов, занятых исходными URL
+     */
+    long getUrlBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                bytes += segment.urls.getBytesUsed();
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Кодирует короткую ссылку в long
+     * @return код или 0, если ссылка не вида clck.ru/ + 1..10 символов base62
+     */
+    static long encode(String shortUrl) {
+        String base = ShortUrlGenerator.BASE_URL;
+        int length = shortUrl.length() - base.length();
+        if (length < 1 || length > MAX_CODE_LENGTH || !shortUrl.startsWith(base)) {
+            return 0;
+        }
+        long value = 0;
+        for (int i = base.length(); i < shortUrl.length(); i++) {
+            int digit = ShortUrlGenerator.base62Digit(shortUrl.charAt(i));
+            if (digit < 0) {
+                return 0;
+            }
+            value = value * 62 + digit;
+        }
+        return (long) length << LENGTH_SHIFT | value;
+    }
+
+    static String decode(long key) {
+        return ShortUrlGenerator.BASE_URL + ShortUrlGenerator.toBase62(key & VALUE_MASK, (int) (key >>> LENGTH_SHIFT));
+    }
+
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    private int userNumber(UUID userId) {
+        Integer number = userNumbers.get(userId);
+        if (number != null) {
+            return number;
+        }
+        synchronized (userNumbers) {
+            number = userNumbers.get(userId);
+            if (number == null) {
+                UUID[] ids = userIds;
+                if (userCount == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                }
+                ids[userCount] = userId;
+                userIds = ids;
+                number = userCount++;
+                userNumbers.put(userId, number);
+            }
+            return number;
+        }
+    }
+
+    /**
+     * Условие отбора слота по полям, без чтения ссылки целиком
+     */
+    private interface SlotFilter {
+        boolean accepts(LinkSlots slots, int slot);
+    }
+
+    /**
+     * Сегмент таблицы: открытая адресация с линейным пробированием
+     * и удалением сдвигом назад (без пометок удаления)
+     */
+    private final class Segment {
+        final StampedLock lock = new StampedLock();
+        final boolean offHeap;
+        LinkSlots slots;
+        UrlArena urls;
+        int size;
+        // Удалено ссылок с последней пересборки области URL
+        int removedSinceCompaction;
+
+        Segment(boolean offHeap) {
+            this.offHeap = offHeap;
+            slots = LinkSlots.allocate(INITIAL_SEGMENT_CAPACITY, offHeap);
+            urls = new UrlArena(offHeap);
+        }
+
+        int find(long key, long hash) {
+            int mask = slots.capacity() - 1;
+            int slot = (int) hash & mask;
+            long current;
+            while ((current = slots.key(slot)) != 0) {
+                if (current == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        Link read(String shortUrl, int slot) {
+            Link link = new Link(shortUrl, urls.get(slots.urlRef(slot)), userIds[slots.user(slot)],
+                    slots.limit(slot), slots.expires(slot));
+            link.setCurrentClicks(slots.clicks(slot));
+            link.setCreatedAt(SnapshotFormat.fromMillis(slots.createdSeconds(slot) * 1000L));
+            link.setActive(slots.active(slot));
+            return link;
+        }
+
+        boolean matches(int slot, Link link) {
+            return slots.clicks(slot) == link.getCurrentClicks() && slots.limit(slot) == link.getClickLimit()
+                    && slots.expires(slot) == link.getExpiresAtMillis() && slots.active(slot) == link.isActive()
+                    && userIds[slots.user(slot)].equals(link.getUserId())
+                    && urls.get(slots.urlRef(slot)).equals(link.getOriginalUrl());
+        }
+
+        void insert(long key, long hash, long urlRef, int user, Link link) {
+            if ((size + 1) * 4 > slots.capacity() * 3) {
+                resize();
+            }
+            int mask = slots.capacity() - 1;
+            int slot = (int) hash & mask;
+            while (slots.key(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots.set(slot, key, urlRef, user, SnapshotFormat.toMillis(link.getCreatedAt()) / 1000,
+                    link.getExpiresAtMillis(), link.getClickLimit(), link.getCurrentClicks(), link.isActive());
+            size++;
+        }
+
+        void delete(int slot) {
+            int mask = slots.capacity() - 1;
+            int hole = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                long key = slots.key(next);
+                if (key == 0) {
+                    break;
+                }
+                int home = (int) hash(key) & mask;
+                // Запись остается на месте, если её исходный слот лежит между дыркой и ней
+                boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+                if (!stays) {
+                    slots.copy(next, slots, hole);
+                    hole = next;
+                }
+            }
+            slots.clear(hole);
+            size--;
+            removedSinceCompaction++;
+        }
+
+        void compactUrls() {
+            UrlArena compacted = new UrlArena(offHeap);
+            for (int slot = 0; slot < slots.capacity(); slot++) {
+                if (slots.key(slot) != 0) {
+                    slots.setUrlRef(slot, compacted.copyOf(urls, slots.urlRef(slot)));
+                }
+            }
+            urls = compacted;
+            removedSinceCompaction = 0;
+        }
+
+        /**
+         * Копии ссылок из подходящих слотов; обработчик вызывается уже без блокировки,
+         * поэтому может обращаться к хранилищу
+         */
+        List<Link> select(SlotFilter filter) {
+            long stamp = lock.readLock();
+            try {
+                List<Link> result = new ArrayList<>();
+                for (int slot = 0; slot < slots.capacity(); slot++) {
+                    long key = slots.key(slot);
+                    if (key != 0 && filter.accepts(slots, slot)) {
+                        result.add(read(decode(key), slot));
+                    }
+                }
+                return result;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long[] keys() {
+            long stamp = lock.readLock();
+            try {
+                long[] result = new long[size];
+                int count = 0;
+                for (int slot = 0; slot < slots.capacity(); slot++) {
+                    long key = slots.key(slot);
+                    if (key != 0) {
+                        result[count++] = key;
+                    }
+                }
+                return result;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void resize() {
+            LinkSlots old = slots;
+            LinkSlots resized = old.allocate(old.capacity() * 2);
+            int mask = resized.capacity() - 1;
+            for (int i = 0; i < old.capacity(); i++) {
+                long key = old.key(i);
+                if (key == 0) {
+                    continue;
+                }
+                int slot = (int) hash(key) & mask;
+                while (resized.key(slot) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                old.copy(i, resized, slot);
+            }
+            slots = resized;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Индекс ссылок, упорядоченный по времени истечения.
+ *
+ * Время истечения округляется вверх до заданной точности, и коды с одинаковым
+ * округленным временем хранятся в одной корзине. Очистка забирает только корзины,
+ * время которых уже наступило, поэтому её стоимость пропорциональна числу
+ * истекающих ссылок, а не числу всех ссылок.
+ */
+public class ExpirationIndex {
+    private final long precisionMillis;
+    private final ConcurrentSkipListMap<Long, Set<String>> buckets = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param precisionMillis точность истечения: ссылка удаляется не позже чем через это время после срока
+     */
+    public ExpirationIndex(long precisionMillis) {
+        if (precisionMillis <= 0) {
+            throw new IllegalArgumentException("Точность истечения должна быть положительной");
+        }
+        this.precisionMillis = precisionMillis;
+    }
+
+    public long getPrecisionMillis() {
+        return precisionMillis;
+    }
+
+    /**
+     * Добавляет код в корзину его времени истечения
+     */
+    public void add(String shortUrl, long expiresAtMillis) {
+        Long key = bucketOf(expiresAtMillis);
+        while (true) {
+            Set<String> bucket = buckets.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+            bucket.add(shortUrl);
+            // Корзину могли забрать параллельно; тогда код кладется в новую
+            if (buckets.get(key) == bucket) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Убирает код из индекса (при удалении ссылки или изменении срока)
+     */
+    public void remove(String shortUrl, long expiresAtMillis) {
+        Set<String> bucket = buckets.get(bucketOf(expiresAtMillis));
+        if (bucket != null) {
+            bucket.remove(shortUrl);
+        }
+    }
+
+    /**
+     * Забирает из индекса коды, срок которых истек к указанному моменту
+     * @param nowMillis текущее время в epoch millis
+     * @return коды-кандидаты; перед удалением срок ссылки нужно проверить ещё раз
+     */
+    public List<String> pollExpired(long nowMillis) {
+        List<String> expired = new ArrayList<>();
+        ConcurrentNavigableMap<Long, Set<String>> due = buckets.headMap(nowMillis, true);
+        for (Map.Entry<Long, Set<String>> entry : due.entrySet()) {
+            if (buckets.remove(entry.getKey(), entry.getValue())) {
+                expired.addAll(entry.getValue());
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * @return число кодов в индексе
+     */
+    public int size() {
+        int size = 0;
+        for (Set<String> bucket : buckets.values()) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    private long bucketOf(long expiresAtMillis) {
+        // Округляем вверх: корзина забирается, когда истекли все её ссылки
+        return Math.floorDiv(expiresAtMillis + precisionMillis - 1, precisionMillis) * precisionMillis;
+    }
+}
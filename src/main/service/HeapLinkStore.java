@@ -0,0 +1,80 @@
+package service;
+
+import model.Link;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище ссылок из объектов {@link Link} в ConcurrentHashMap (по умолчанию)
+ */
+public class HeapLinkStore implements LinkStore {
+    private final Map<String, Link> links = new ConcurrentHashMap<>();
+
+    @Override
+    public Link get(String shortUrl) {
+        return links.get(shortUrl);
+    }
+
+    @Override
+    public Link putIfAbsent(String shortUrl, Link link) {
+        return links.putIfAbsent(shortUrl, link);
+    }
+
+    @Override
+    public void put(String shortUrl, Link link) {
+        links.put(shortUrl, link);
+    }
+
+    @Override
+    public Link remove(String shortUrl) {
+        return links.remove(shortUrl);
+    }
+
+    @Override
+    public void remove(String shortUrl, Link link) {
+        links.remove(shortUrl, link);
+    }
+
+    @Override
+    public boolean containsKey(String shortUrl) {
+        return links.containsKey(shortUrl);
+    }
+
+    @Override
+    public int size() {
+        return links.size();
+    }
+
+    @Override
+    public Iterable<Link> snapshot() {
+        return links.values();
+    }
+
+    @Override
+    public int tryReserveClick(Link link) {
+        return link.tryReserveClick();
+    }
+
+    @Override
+    public boolean update(Link link) {
+        // Хранится сам объект: изменения уже видны
+        return links.get(link.getShortUrl()) == link;
+    }
+
+    @Override
+    public boolean removeIfUnchanged(String shortUrl, Link expected) {
+        Link link = links.get(shortUrl);
+        // Помеченный объект больше не принимает переходов, поэтому удаление ничего не теряет
+        if (link == null || !link.retireIfUnchanged(expected)) {
+            return false;
+        }
+        links.remove(shortUrl, link);
+        return true;
+    }
+
+    @Override
+    public boolean storesObjects() {
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package service;
+
+import model.User;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище пользователей в ConcurrentHashMap (по умолчанию)
+ */
+public class HeapUserStore implements UserStore {
+    private final Map<UUID, User> users = new ConcurrentHashMap<>();
+
+    @Override
+    public User get(UUID userId) {
+        return users.get(userId);
+    }
+
+    @Override
+    public User getOrCreate(UUID userId) {
+        return users.computeIfAbsent(userId, User::new);
+    }
+
+    @Override
+    public void put(User user) {
+        users.put(user.getId(), user);
+    }
+
+    @Override
+    public User putIfAbsent(User user) {
+        return users.putIfAbsent(user.getId(), user);
+    }
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public Collection<User> snapshot() {
+        return users.values();
+    }
+}
@@ -0,0 +1,309 @@
+package service;
+
+import model.Link;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченный кеш популярных ссылок перед хранилищем, которое возвращает копии
+ * (компактное, вне кучи или своё, в том числе на диске).
+ *
+ * В кеше лежат только неизменяемые данные перехода ({@link Target}: URL, лимит,
+ * срок, активность), общие для всех потоков. Счетчик переходов в кеш не
+ * попадает: его резервирует хранилище, и результат перехода строится по
+ * значению, которое оно вернуло.
+ *
+ * Вытеснение — сегментированный LRU: новая ссылка попадает в испытательный
+ * сегмент (20% емкости) и переходит в защищенный только при повторном обращении,
+ * поэтому однократный проход по множеству кодов не вытесняет популярные ссылки.
+ * Емкость задается числом ссылок и/или оценкой занятых байтов.
+ *
+ * Поиск идет по {@link ConcurrentHashMap} без блокировок. Порядок LRU ведется в
+ * полосах под отдельными блокировками; если блокировка полосы занята, чтение не
+ * ждет её и просто не обновляет порядок. Чтобы ссылка, прочитанная до изменения,
+ * не попала в кеш после {@link #invalidate}, запись в кеш сверяет номер
+ * инвалидации полосы, полученный через {@link #stamp} до чтения из хранилища.
+ */
+public final class HotLinkCache {
+    private static final int STRIPES = 16;
+    // Доля емкости полосы под защищенный сегмент, %
+    private static final int PROTECTED_PERCENT = 80;
+    // Оценка байтов на запись без строк: узел, элемент таблицы, данные перехода
+    private static final int ENTRY_OVERHEAD = 120;
+
+    private final ConcurrentHashMap<String, Node> entries = new ConcurrentHashMap<>();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries наибольшее число ссылок (0 — без ограничения по числу)
+     * @param maxBytes наибольший оценочный объем в байтах (0 — без ограничения по объему)
+     */
+    public HotLinkCache(long maxEntries, long maxBytes) {
+        if (maxEntries <= 0 && maxBytes <= 0) {
+            throw new IllegalArgumentException("Для кеша ссылок нужно задать число ссылок или объем");
+        }
+        long entriesPerStripe = maxEntries <= 0 ? Long.MAX_VALUE : Math.max(1, maxEntries / STRIPES);
+        long bytesPerStripe = maxBytes <= 0 ? Long.MAX_VALUE : Math.max(1, maxBytes / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(entriesPerStripe, bytesPerStripe);
+        }
+    }
+
+    /**
+     * @return данные перехода из кеша или null
+     */
+    public Target get(String shortUrl) {
+        Node node = entries.get(shortUrl);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        Stripe stripe = stripeFor(shortUrl);
+        if (stripe.lock.tryLock()) {
+            try {
+                stripe.touch(node);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return node.target;
+    }
+
+    /**
+     * @return номер инвалидации полосы кода; берется до чтения ссылки из хранилища
+     */
+    public long stamp(String shortUrl) {
+        return stripeFor(shortUrl).invalidations;
+    }
+
+    /**
+     * Добавляет данные перехода по ссылке, если с момента {@code stamp} ссылки
+     * полосы не инвалидировались
+     */
+    public void put(String shortUrl, Link link, long stamp) {
+        Stripe stripe = stripeFor(shortUrl);
+        stripe.lock.lock();
+        try {
+            if (stripe.invalidations != stamp || entries.containsKey(shortUrl)) {
+                return;
+            }
+            Target target = new Target(link);
+            Node node = new Node(shortUrl, target, weigh(shortUrl, target));
+            entries.put(shortUrl, node);
+            stripe.add(node);
+            stripe.evict();
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Убирает ссылку из кеша (изменение, удаление, истечение срока)
+     */
+    public void invalidate(String shortUrl) {
+        Stripe stripe = stripeFor(shortUrl);
+        stripe.lock.lock();
+        try {
+            stripe.invalidations++;
+            Node node = entries.remove(shortUrl);
+            if (node != null) {
+                stripe.unlink(node);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private Stripe stripeFor(String shortUrl) {
+        int hash = shortUrl.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static long weigh(String shortUrl, Target target) {
+        return ENTRY_OVERHEAD + 2L * (shortUrl.length() + target.getOriginalUrl().length());
+    }
+
+    /**
+     * Неизменяемые данные перехода по ссылке на момент добавления в кеш
+     */
+    public static final class Target {
+        private final String originalUrl;
+        private final int clickLimit;
+        private final long expiresAtMillis;
+        private final boolean active;
+
+        Target(Link link) {
+            this.originalUrl = link.getOriginalUrl();
+            this.clickLimit = link.getClickLimit();
+            this.expiresAtMillis = link.getExpiresAtMillis();
+            this.active = link.isActive();
+        }
+
+        public String getOriginalUrl() {
+            return originalUrl;
+        }
+
+        public int getClickLimit() {
+            return clickLimit;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public boolean isExpired(long nowMillis) {
+            return nowMillis > expiresAtMillis;
+        }
+    }
+
+    private static final class Node {
+        final String shortUrl;
+        final Target target;
+        final long weight;
+        boolean protectedSegment;
+        Node prev;
+        Node next;
+
+        Node(String shortUrl, Target target, long weight) {
+            this.shortUrl = shortUrl;
+            this.target = target;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Двусвязный список: голова — последнее обращение, хвост — кандидат на вытеснение
+     */
+    private static final class Queue {
+        Node head;
+        Node tail;
+        long count;
+        long weight;
+
+        void addFirst(Node node) {
+            node.prev = null;
+            node.next = head;
+            if (head == null) {
+                tail = node;
+            } else {
+                head.prev = node;
+            }
+            head = node;
+            count++;
+            weight += node.weight;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            count--;
+            weight -= node.weight;
+        }
+    }
+
+    /**
+     * Полоса кеша: испытательный и защищенный сегменты под одной блокировкой
+     */
+    private final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Queue probation = new Queue();
+        final Queue protectedQueue = new Queue();
+        final long maxEntries;
+        final long maxBytes;
+        final long maxProtectedEntries;
+        final long maxProtectedBytes;
+        volatile long invalidations;
+
+        Stripe(long maxEntries, long maxBytes) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            this.maxProtectedEntries = maxEntries == Long.MAX_VALUE ? maxEntries : maxEntries * PROTECTED_PERCENT / 100;
+            this.maxProtectedBytes = maxBytes == Long.MAX_VALUE ? maxBytes : maxBytes * PROTECTED_PERCENT / 100;
+        }
+
+        void add(Node node) {
+            probation.addFirst(node);
+        }
+
+        /**
+         * Повторное обращение: ссылка переходит в защищенный сегмент, а вытесненная
+         * оттуда возвращается в испытательный
+         */
+        void touch(Node node) {
+            if (entries.get(node.shortUrl) != node) {
+                // Узел уже вытеснен или инвалидирован
+                return;
+            }
+            if (node.protectedSegment) {
+                protectedQueue.remove(node);
+                protectedQueue.addFirst(node);
+                return;
+            }
+            probation.remove(node);
+            node.protectedSegment = true;
+            protectedQueue.addFirst(node);
+            while (protectedQueue.count > Math.max(1, maxProtectedEntries) || protectedQueue.weight > maxProtectedBytes) {
+                Node demoted = protectedQueue.tail;
+                if (demoted == node) {
+                    break;
+                }
+                protectedQueue.remove(demoted);
+                demoted.protectedSegment = false;
+                probation.addFirst(demoted);
+            }
+        }
+
+        void unlink(Node node) {
+            (node.protectedSegment ? protectedQueue : probation).remove(node);
+        }
+
+        /**
+         * Вытесняет ссылки, пока полоса не уложится в емкость: сначала из испытательного сегмента
+         */
+        void evict() {
+            while (probation.count + protectedQueue.count > maxEntries
+                    || probation.weight + protectedQueue.weight > maxBytes) {
+                Node victim = probation.tail != null ? probation.tail : protectedQueue.tail;
+                unlink(victim);
+                entries.remove(victim.shortUrl, victim);
+                evictions.increment();
+            }
+        }
+    }
+}
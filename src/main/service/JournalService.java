@@ -0,0 +1,420 @@
+package service;
+
+import model.Link;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений (write-ahead log) поверх последнего снимка данных.
+ *
+ * Каждое изменение ссылки записывается маленькой записью в конец файла,
+ * вместо полной пересериализации всех ссылок. Записи хранят абсолютные
+ * значения (например, итоговое число переходов), поэтому повторное
+ * применение записи к снимку, который её уже содержит, ничего не меняет.
+ *
+ * Записи копятся в памяти и сбрасываются на диск пачкой (group commit)
+ * при вызове {@link #sync()} из потока сохранения ({@link PersistenceWriter}).
+ */
+public class JournalService {
+    // Создание с URL в modified UTF-8 (writeUTF, не больше 64 КБ): только чтение старых журналов
+    private static final byte RECORD_CREATE_UTF = 1;
+    private static final byte RECORD_CLICK = 2;
+    private static final byte RECORD_UPDATE = 3;
+    private static final byte RECORD_DELETE = 4;
+    private static final byte RECORD_EXPIRE = 5;
+    // Создание с URL в UTF-8 с префиксом длины int, как в снимке
+    private static final byte RECORD_CREATE = 6;
+
+    /**
+     * Наибольший размер записи; записи длиннее при чтении считаются поврежденным хвостом
+     */
+    static final int MAX_RECORD_SIZE = 1 << 20;
+
+    /**
+     * Получатель записей журнала при восстановлении
+     */
+    public interface Handler {
+        void onCreate(Link link);
+
+        void onClick(String shortUrl, int currentClicks);
+
+        void onUpdate(String shortUrl, int clickLimit, long expiresAtMillis, int currentClicks);
+
+        void onRemove(String shortUrl);
+    }
+
+    private final Path journalFile;
+    private final Path rotatedFile;
+
+    // Буфер записей, ещё не сброшенных на диск, и запасной буфер, в который
+    // пишутся записи, пока предыдущая пачка уходит на диск
+    private RecordBuffer pending = new RecordBuffer();
+    private RecordBuffer spare = new RecordBuffer();
+    // Буфер для сборки одной записи
+    private final RecordBuffer recordBytes = new RecordBuffer();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    // Канал и ротация файла защищены writeLock, буфер записей — монитором this
+    private final Object writeLock = new Object();
+    // Пишется только под writeLock
+    private volatile long bytesWritten;
+    private FileChannel channel;
+    private long recordsSinceSnapshot;
+
+    public JournalService(String journalFile) {
+        this.journalFile = Paths.get(journalFile);
+        this.rotatedFile = Paths.get(journalFile + ".old");
+    }
+
+    /**
+     * Проигрывает журнал (сначала незавершённую ротацию, затем текущий файл)
+     * @param handler получатель записей
+     * @return количество применённых записей
+     */
+    public long replay(Handler handler) {
+        long applied = replayFile(rotatedFile, handler);
+        applied += replayFile(journalFile, handler);
+        return applied;
+    }
+
+    /**
+     * Открывает журнал на дозапись
+     */
+    public void open() {
+        try {
+            StorageService.createDataDirectory();
+            synchronized (writeLock) {
+                channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка при открытии журнала: " + e.getMessage());
+        }
+    }
+
+    public void logCreate(Link link) {
+        synchronized (this) {
+            try {
+                DataOutputStream out = begin(RECORD_CREATE, link.getShortUrl());
+                byte[] originalUrl = link.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(originalUrl.length);
+                out.write(originalUrl);
+                out.writeLong(link.getUserId().getMostSignificantBits());
+                out.writeLong(link.getUserId().getLeastSignificantBits());
+                out.writeInt(link.getClickLimit());
+                out.writeInt(link.getCurrentClicks());
+                out.writeLong(SnapshotFormat.toMillis(link.getCreatedAt()));
+                out.writeLong(link.getExpiresAtMillis());
+                end();
+            } catch (IOException e) {
+                System.err.println("Ошибка записи в журнал: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Записывает значение счетчика переходов, зарезервированное переходом.
+     * Параллельные переходы могут попасть в журнал не в порядке значений,
+     * поэтому при восстановлении счетчик берется как наибольшее из записанных.
+     */
+    public void logClick(String shortUrl, int currentClicks) {
+        synchronized (this) {
+            try {
+                begin(RECORD_CLICK, shortUrl).writeInt(currentClicks);
+                end();
+            } catch (IOException e) {
+                System.err.println("Ошибка записи в журнал: " + e.getMessage());
+            }
+        }
+    }
+
+    public void logUpdate(Link link) {
+        synchronized (this) {
+            try {
+                DataOutputStream out = begin(RECORD_UPDATE, link.getShortUrl());
+                out.writeInt(link.getClickLimit());
+                out.writeLong(link.getExpiresAtMillis());
+                out.writeInt(link.getCurrentClicks());
+                end();
+            } catch (IOException e) {
+                System.err.println("Ошибка записи в журнал: " + e.getMessage());
+            }
+        }
+    }
+
+    public void logDelete(String shortUrl) {
+        logRemove(RECORD_DELETE, shortUrl);
+    }
+
+    public void logExpire(String shortUrl) {
+        logRemove(RECORD_EXPIRE, shortUrl);
+    }
+
+    private void logRemove(byte type, String shortUrl) {
+        synchronized (this) {
+            try {
+                begin(type, shortUrl);
+                end();
+            } catch (IOException e) {
+                System.err.println("Ошибка записи в журнал: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return количество записей с момента последнего снимка
+     */
+    public synchronized long getRecordsSinceSnapshot() {
+        return recordsSinceSnapshot;
+    }
+
+    /**
+     * @return число байт, записанных в журнал с момента создания
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Сбрасывает накопленные записи на диск и дожидается fsync.
+     * Добавление новых записей на время fsync не блокируется.
+     */
+    public void sync() {
+        synchronized (writeLock) {
+            writePending();
+        }
+    }
+
+    /**
+     * Начинает компактизацию: текущий файл журнала откладывается в сторону,
+     * новые записи идут в пустой файл. После записи снимка нужно вызвать
+     * {@link #finishCompaction()}.
+     */
+    public void beginCompaction() {
+        synchronized (writeLock) {
+            writePending();
+            if (channel == null) {
+                return;
+            }
+
+            try {
+                channel.close();
+                if (Files.exists(rotatedFile)) {
+                    // Предыдущая компактизация не завершилась — её записи ещё не в снимке
+                    Files.write(rotatedFile, Files.readAllBytes(journalFile), StandardOpenOption.APPEND);
+                    Files.delete(journalFile);
+                } else {
+                    Files.move(journalFile, rotatedFile);
+                }
+                channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Ошибка при ротации журнала: " + e.getMessage());
+            }
+
+            synchronized (this) {
+                recordsSinceSnapshot = 0;
+            }
+        }
+    }
+
+    /**
+     * Завершает компактизацию: снимок записан, отложенный журнал больше не нужен
+     */
+    public void finishCompaction() {
+        try {
+            Files.deleteIfExists(rotatedFile);
+        } catch (IOException e) {
+            System.err.println("Ошибка при удалении старого журнала: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Сбрасывает остаток записей и закрывает журнал
+     */
+    public void close() {
+        synchronized (writeLock) {
+            writePending();
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Ошибка при закрытии журнала: " + e.getMessage());
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Забирает накопленную пачку записей и пишет её одним вызовом (вызывается под writeLock)
+     */
+    private void writePending() {
+        RecordBuffer batch;
+        synchronized (this) {
+            if (pending.size() == 0) {
+                return;
+            }
+            batch = pending;
+            pending = spare;
+        }
+
+        try {
+            if (channel == null) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(batch.array(), 0, batch.size());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            bytesWritten += batch.size();
+        } catch (IOException e) {
+            System.err.println("Ошибка при сбросе журнала: " + e.getMessage());
+        } finally {
+            // Записанный буфер становится запасным: массивы переиспользуются, а не растут заново
+            batch.reset();
+            synchronized (this) {
+                spare = batch;
+            }
+        }
+    }
+
+    private DataOutputStream begin(byte type, String shortUrl) throws IOException {
+        recordBytes.reset();
+        record.writeByte(type);
+        record.writeUTF(shortUrl);
+        return record;
+    }
+
+    /**
+     * Завершает запись: кадр вида [длина][CRC32][данные] добавляется в буфер.
+     * Данные копируются из буфера записи напрямую, без промежуточных массивов.
+     */
+    private void end() throws IOException {
+        record.flush();
+        int length = recordBytes.size();
+
+        crc.reset();
+        crc.update(recordBytes.array(), 0, length);
+
+        pending.writeInt(length);
+        pending.writeInt((int) crc.getValue());
+        pending.write(recordBytes.array(), 0, length);
+        recordsSinceSnapshot++;
+    }
+
+    private long replayFile(Path file, Handler handler) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        long applied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    // Оборванная при сбое запись в хвосте — дальше читать нечего
+                    break;
+                }
+
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), handler);
+                applied++;
+            }
+        } catch (EOFException e) {
+            // Хвост журнала записан не полностью
+        } catch (IOException e) {
+            System.err.println("Ошибка при чтении журнала: " + e.getMessage());
+        }
+        return applied;
+    }
+
+    private void apply(DataInputStream in, Handler handler) throws IOException {
+        byte type = in.readByte();
+        String shortUrl = in.readUTF();
+
+        switch (type) {
+            case RECORD_CREATE:
+            case RECORD_CREATE_UTF:
+                String originalUrl = type == RECORD_CREATE ? readString(in) : in.readUTF();
+                UUID userId = new UUID(in.readLong(), in.readLong());
+                int clickLimit = in.readInt();
+                int currentClicks = in.readInt();
+                LocalDateTime createdAt = SnapshotFormat.fromMillis(in.readLong());
+                long expiresAt = in.readLong();
+
+                Link link = new Link(shortUrl, originalUrl, userId, clickLimit, expiresAt);
+                link.setCurrentClicks(currentClicks);
+                link.setCreatedAt(createdAt);
+                handler.onCreate(link);
+                break;
+            case RECORD_CLICK:
+                handler.onClick(shortUrl, in.readInt());
+                break;
+            case RECORD_UPDATE:
+                handler.onUpdate(shortUrl, in.readInt(), in.readLong(), in.readInt());
+                break;
+            case RECORD_DELETE:
+            case RECORD_EXPIRE:
+                handler.onRemove(shortUrl);
+                break;
+            default:
+                throw new IOException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_SIZE) {
+            throw new IOException("Неверная длина строки в записи журнала: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Буфер с доступом к внутреннему массиву: записи и пачки передаются дальше без копирования
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(4096);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+    }
+}
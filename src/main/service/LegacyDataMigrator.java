@@ -0,0 +1,68 @@
+package service;
+
+import model.Link;
+import model.User;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Однократная миграция файлов данных из Java-сериализации в двоичный формат {@link SnapshotFormat}.
+ * Исходные файлы сохраняются рядом с расширением .legacy.
+ */
+public class LegacyDataMigrator {
+    private static final String BACKUP_SUFFIX = ".legacy";
+
+    /**
+     * Переводит links.dat и users.dat в новый формат, если они ещё в старом
+     * @param linksFile путь к файлу ссылок
+     * @param usersFile путь к файлу пользователей
+     */
+    public static synchronized void migrateIfNeeded(String linksFile, String usersFile) {
+        Path linksPath = Paths.get(linksFile);
+        Path usersPath = Paths.get(usersFile);
+
+        try {
+            if (isLegacy(linksPath, SnapshotFormat.LINKS_MAGIC)) {
+                Map<String, Link> links = readLegacy(linksPath);
+                backup(linksPath);
+                SnapshotFormat.writeLinks(linksPath, links.values());
+                System.out.println("💾 Файл " + linksFile + " переведен в двоичный формат: " + links.size() + " ссылок");
+            }
+
+            if (isLegacy(usersPath, SnapshotFormat.USERS_MAGIC)) {
+                Map<UUID, User> users = readLegacy(usersPath);
+                backup(usersPath);
+                SnapshotFormat.writeUsers(usersPath, users.values());
+                System.out.println("💾 Файл " + usersFile + " переведен в двоичный формат: " + users.size() + " пользователей");
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Ошибка при миграции данных из старого формата: " + e.getMessage());
+        }
+    }
+
+    private static boolean isLegacy(Path file, int magic) throws IOException {
+        return Files.exists(file) && Files.size(file) > 0 && !SnapshotFormat.hasMagic(file, magic);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V> readLegacy(Path file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            Object obj = ois.readObject();
+            if (!(obj instanceof Map)) {
+                throw new IOException("Неожиданное содержимое файла " + file);
+            }
+            return (Map<K, V>) obj;
+        }
+    }
+
+    private static void backup(Path file) throws IOException {
+        Files.copy(file, Paths.get(file + BACKUP_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -1,53 +1,560 @@
 package service;
 
 import model.Link;
+import model.LinkPage;
+import model.ResolveResult;
 import model.User;
+import model.UserLinkIndex;
+import util.CoarseClock;
 
-import java.time.LocalDateTime;
+import java.time.Clock;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Сервис для управления ссылками
  */
 public class LinkService {
     private static final int DEFAULT_EXPIRATION_HOURS = 24; // Сутки по умолчанию
+    // Число кодов, читаемых из индекса пользователя за одну блокировку
+    private static final int USER_LINKS_PAGE_SIZE = 256;
+    // Доля лимита, при остатке не больше которой ссылка считается близкой к лимиту
+    private static final int NEAR_LIMIT_PERCENT = 10;
+    // Сколько кодов на одну ссылку страницы просматривается за вызов при отборе
+    private static final int MAX_SCANNED_PER_PAGE_LINK = 4;
+    // Исходы неучтенного перехода (учтенный переход — значение счетчика, больше 0)
+    private static final int CLICK_LIMIT_REACHED = 0;
+    private static final int CLICK_EXPIRED = -1;
+    private static final int CLICK_INACTIVE = -2;
+    // Сколько записей отображенного снимка просматривается за один проход очистки
+    private static final int SNAPSHOT_SWEEP_BATCH = 10_000;
+    // Наибольшая длина исходного URL в символах: запись журнала о создании должна уместиться
+    // в JournalService.MAX_RECORD_SIZE даже при трех байтах UTF-8 на символ
+    static final int MAX_URL_LENGTH = 64 * 1024;
     
-    // Хранилище ссылок: shortUrl -> Link
-    private final Map<String, Link> links = new ConcurrentHashMap<>();
+    // Хранилище ссылок: shortUrl -> Link (загруженные и измененные с момента снимка)
+    private final LinkStore links;
     
-    // Хранилище пользователей: userId -> User
-    private final Map<UUID, User> users = new ConcurrentHashMap<>();
+    // Последний снимок, отображенный в память; ссылки из него подгружаются в links по запросу
+    private volatile MappedLinkStore mappedLinks;
     
-    // Поток для очистки просроченных ссылок
-    private Timer expirationTimer;
+    // Число ссылок и пользователей в последнем снимке: от него зависит, когда сворачивать журнал
+    private volatile long snapshotRecords;
+    
+    // Коды из mappedLinks, удаленные после снимка: их нельзя снова подгружать из него
+    private final Set<String> removedFromSnapshot = ConcurrentHashMap.newKeySet();
+    
+    // Коды, удаленные во время записи снимка (null вне saveData): снимок мог успеть их записать
+    private volatile Set<String> removedWhileSaving;
+    
+    // Хранилище пользователей: userId -> User (загруженные и созданные с момента снимка)
+    private final UserStore users;
+    
+    // Последний снимок пользователей, отображенный в память; пользователи подгружаются в users по запросу
+    private volatile MappedUserStore mappedUsers;
+    
+    private final LinkServiceConfig config;
+    
+    // Часы для проверки сроков действия (по умолчанию кешированные, без системного вызова на каждую проверку)
+    private final Clock clock;
+    private final CoarseClock ownClock;
+    
+    // Журнал изменений поверх последнего снимка
+    private final JournalService journal = new JournalService(StorageService.JOURNAL_FILE);
+    
+    // Фоновая запись журнала и снимков на диск
+    private final PersistenceWriter persistenceWriter;
+    
+    // Генератор последовательных кодов или null в режиме случайных кодов
+    private final SequentialCodeGenerator sequentialCodes;
+    
+    // Фильтр занятых кодов: отсекает проверку хранилища для заведомо свободных кодов
+    private CodeFilter codeFilter;
+    // Фильтр заполняется кодами снимка в фоне; пока он не готов, коды проверяются по хранилищу и снимку
+    private volatile boolean codeFilterReady;
+    
+    // Ссылки в памяти, упорядоченные по времени истечения
+    private final ExpirationIndex expirationIndex;
+    
+    // Кеш популярных ссылок для переходов или null, если хранилище отдает сами объекты
+    private final HotLinkCache linkCache;
+    
+    // Счетчики и длительности операций
+    private final ServiceMetrics metrics;
+    
+    // Ссылки с распределенным счетчиком переходов -> число переходов в последней записи журнала
+    private final Map<Link, Integer> hotLinks = new ConcurrentHashMap<>();
+    private final Consumer<Link> registerHotLink = link -> hotLinks.putIfAbsent(link, -1);
+    
+    // Учитывать ли переходы в распределенных счетчиках
+    private final boolean stripedClicks;
+    
+    // Блокировки изменения и удаления, выбираемые по коду ссылки
+    private final Object[] updateLocks = new Object[64];
+    
+    // Поток для очистки просроченных ссылок и сверки счетчиков
+    private Timer maintenanceTimer;
+    
+    // Позиция обхода отображенного снимка при очистке (меняются только потоком очистки)
+    private MappedLinkStore sweptSnapshot;
+    private long sweepPosition;
 
     public LinkService() {
+        this(LinkServiceConfig.fromSystemProperties());
+    }
+
+    public LinkService(LinkServiceConfig config) {
+        this.config = config;
+        for (int i = 0; i < updateLocks.length; i++) {
+            updateLocks[i] = new Object();
+        }
+        if (config.getLinkStore() != null) {
+            this.links = config.getLinkStore();
+        } else if (config.getStorageEngine().equals("heap")) {
+            this.links = new HeapLinkStore();
+        } else {
+            this.links = new CompactLinkStore(config.getStorageEngine().equals("offheap"));
+        }
+        this.users = config.getUserStore() != null ? config.getUserStore() : new HeapUserStore();
+        // Распределенные счетчики живут в объектах Link, компактное хранилище считает переходы в массиве
+        this.stripedClicks = config.isStripedClicks() && links.storesObjects();
+        // Хранилище объектов само отдает ссылки без копирования, кеш перед ним ничего не дает
+        this.linkCache = !links.storesObjects() && (config.getHotCacheMaxEntries() > 0 || config.getHotCacheMaxBytes() > 0)
+                ? new HotLinkCache(config.getHotCacheMaxEntries(), config.getHotCacheMaxBytes())
+                : null;
+        if (config.getClock() != null) {
+            this.clock = config.getClock();
+            this.ownClock = null;
+        } else {
+            this.ownClock = new CoarseClock(config.getClockResolutionMillis());
+            this.ownClock.start();
+            this.clock = ownClock;
+        }
+        this.expirationIndex = new ExpirationIndex(config.getExpirationPrecisionMillis());
+        this.sequentialCodes = config.getCodeGenerator().equals("sequential")
+                ? new SequentialCodeGenerator(config.getIdBlockSize(), config.isCodeUserPrefix())
+                : null;
+        this.persistenceWriter = new PersistenceWriter(this::persistChanges,
+                config.getFlushIntervalMillis(), config.getFlushDirtyThreshold());
+        this.metrics = new ServiceMetrics(() -> links.size(), () -> users.size(), expirationIndex::size,
+                persistenceWriter::getQueueDepth, journal::getBytesWritten, linkCache);
+        
         // Загружаем данные с диска при создании сервиса
         loadData();
+        journal.open();
+        persistenceWriter.start();
         startExpirationCleanup();
+        if (stripedClicks) {
+            startClickReconciliation();
+        }
     }
 
     /**
-     * Загружает данные с диска
+     * Загружает последний снимок с диска и применяет к нему журнал изменений
      */
     private void loadData() {
-        Map<String, Link> loadedLinks = StorageService.loadLinks();
-        Map<UUID, User> loadedUsers = StorageService.loadUsers();
+        // Снимок с индексом только отображается в память, ссылки читаются по запросу
+        mappedLinks = StorageService.openMappedLinks();
+        if (mappedLinks == null) {
+            StorageService.loadLinks().forEach(links::put);
+        }
+        // Пользователи со списками кодов тоже читаются из снимка по запросу
+        mappedUsers = StorageService.openMappedUsers();
+        if (mappedUsers == null) {
+            StorageService.loadUsers().values().forEach(users::put);
+        }
+        rebuildCodeFilter();
+        
+        long replayed = journal.replay(new JournalService.Handler() {
+            @Override
+            public void onCreate(Link link) {
+                boolean existed = containsLink(link.getShortUrl());
+                links.put(link.getShortUrl(), link);
+                removedFromSnapshot.remove(link.getShortUrl());
+                if (!existed) {
+                    codeFilter.add(link.getShortUrl());
+                    findOrCreateUser(link.getUserId()).addShortUrl(link.getShortUrl());
+                }
+            }
+
+            @Override
+            public void onClick(String shortUrl, int currentClicks) {
+                Link link = findLink(shortUrl);
+                // Записи параллельных переходов могут идти не по порядку значений:
+                // меньшее значение не должно откатить счетчик назад
+                if (link != null && currentClicks > link.getCurrentClicks()) {
+                    link.setCurrentClicks(currentClicks);
+                    links.update(link);
+                }
+            }
+
+            @Override
+            public void onUpdate(String shortUrl, int clickLimit, long expiresAtMillis, int currentClicks) {
+                Link link = findLink(shortUrl);
+                if (link != null) {
+                    link.setClickLimit(clickLimit);
+                    link.setExpiresAtMillis(expiresAtMillis);
+                    link.setCurrentClicks(currentClicks);
+                    links.update(link);
+                }
+            }
+
+            @Override
+            public void onRemove(String shortUrl) {
+                removeLink(shortUrl);
+            }
+        });
+
+        for (Link link : links.snapshot()) {
+            scheduleExpiration(link);
+        }
+
+        int snapshotSize = mappedLinks != null ? mappedLinks.size() : links.size();
+        int userCount = mappedUsers != null ? mappedUsers.size() : users.size();
+        snapshotRecords = snapshotSize + userCount;
+        if (snapshotSize > 0 || userCount > 0) {
+            System.out.println("💾 Загружено данных: " + snapshotSize + " ссылок, " + userCount + " пользователей"
+                    + (mappedLinks != null ? " (снимок отображен в память)" : "")
+                    + (replayed > 0 ? " (из журнала: " + replayed + " записей)" : ""));
+        }
+    }
+
+    /**
+     * Заполняет фильтр кодами из снимка и памяти; размер фильтра берется
+     * с запасом относительно загруженного числа ссылок.
+     *
+     * Коды снимка добавляются в фоне, чтобы запуск не зависел от числа ссылок.
+     * Пока фильтр не готов, он не используется. Изменения фильтра
+     * (добавления и удаления кодов) при этом применяются сразу: счетчики складываются
+     * в любом порядке, а удаление раньше добавления может дать только лишнее ложное
+     * срабатывание, но не ложное отрицание.
+     */
+    private void rebuildCodeFilter() {
+        MappedLinkStore snapshot = mappedLinks;
+        long loaded = (snapshot != null ? snapshot.size() : 0L) + links.size();
+        codeFilter = new CodeFilter((int) Math.min(Integer.MAX_VALUE,
+                Math.max((long) config.getCodeFilterCapacity(), loaded * 2)));
+        // Свое хранилище может прийти уже заполненным: по фильтру отвечают на поиск
+        // несуществующих кодов, поэтому в нем должны быть все коды (повтор дает
+        // только лишнее ложное срабатывание)
+        for (Link link : links.snapshot()) {
+            codeFilter.add(link.getShortUrl());
+        }
+        if (snapshot == null) {
+            codeFilterReady = true;
+            return;
+        }
+
+        CodeFilter filter = codeFilter;
+        Thread loader = new Thread(() -> {
+            // Только хеши из индекса снимка, без чтения и разбора записей
+            snapshot.forEachCodeHash(filter::addHash);
+            codeFilterReady = true;
+        }, "code-filter-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * @return false, если код гарантированно не занят
+     */
+    private boolean mightContainCode(String shortUrl) {
+        return !codeFilterReady || codeFilter.mightContain(shortUrl);
+    }
+
+    /**
+     * Сохраняет полный снимок данных на диск и сокращает журнал (компактизация)
+     */
+    public synchronized void saveData() {
+        long start = System.nanoTime();
+        journal.beginCompaction();
+        Set<String> removedWhileWriting = ConcurrentHashMap.newKeySet();
+        removedWhileSaving = removedWhileWriting;
+        boolean saved;
+        try {
+            saved = StorageService.saveAll(snapshotLinks(), snapshotUsers());
+        } finally {
+            removedWhileSaving = null;
+        }
+        if (!saved) {
+            // Снимок не записан: отложенный журнал остается и будет проигран при запуске
+            return;
+        }
+        metrics.recordSnapshot(System.nanoTime() - start);
         
-        if (!loadedLinks.isEmpty() || !loadedUsers.isEmpty()) {
-            links.putAll(loadedLinks);
-            users.putAll(loadedUsers);
-            System.out.println("💾 Загружено данных: " + loadedLinks.size() + " ссылок, " + loadedUsers.size() + " пользователей");
+        // Новое поколение отображается и тогда, когда процесс запускался без снимка
+        MappedLinkStore snapshot = StorageService.openMappedLinks();
+        mappedLinks = snapshot;
+        if (snapshot != null) {
+            // Пометка нужна, только если код остался в новом снимке (удален после записи)
+            removedFromSnapshot.removeIf(code -> !snapshot.contains(code));
+            for (String code : removedWhileWriting) {
+                if (snapshot.contains(code) && !links.containsKey(code)) {
+                    removedFromSnapshot.add(code);
+                }
+            }
+            evictUnchangedLinks(snapshot);
+        } else {
+            removedFromSnapshot.clear();
+        }
+        MappedUserStore usersSnapshot = StorageService.openMappedUsers();
+        mappedUsers = usersSnapshot;
+        snapshotRecords = (snapshot != null ? snapshot.size() : links.size())
+                + (usersSnapshot != null ? usersSnapshot.size() : users.size());
+        // Место удаленных и вытесненных ссылок освобождается вместе с сокращением журнала
+        links.compact();
+        journal.finishCompaction();
+    }
+
+    /**
+     * Вытесняет из памяти ссылки, не изменившиеся с записи снимка: дальше они
+     * читаются из снимка по запросу, и в памяти остаются только измененные
+     */
+    private void evictUnchangedLinks(MappedLinkStore snapshot) {
+        for (Link link : links.snapshot()) {
+            String shortUrl = link.getShortUrl();
+            // Код, созданный заново после удаления, снимок не отдаст
+            if (removedFromSnapshot.contains(shortUrl)) {
+                continue;
+            }
+            Link written = snapshot.get(shortUrl);
+            if (written == null || !links.removeIfUnchanged(shortUrl, written)) {
+                continue;
+            }
+            if (linkCache != null) {
+                linkCache.invalidate(shortUrl);
+            }
+            unscheduleExpiration(link);
+            // Ссылку могли уже подгрузить снова, тогда её срок должен остаться в индексе
+            if (links.containsKey(shortUrl)) {
+                scheduleExpiration(link);
+            }
         }
     }
 
     /**
-     * Сохраняет данные на диск
+     * Все актуальные ссылки для нового снимка: загруженные в память и
+     * оставшиеся только в отображенном снимке. Просроченные ссылки из снимка
+     * при этом удаляются, не попадая в память.
      */
-    public void saveData() {
-        StorageService.saveAll(links, users);
+    private Iterable<Link> snapshotLinks() {
+        MappedLinkStore snapshot = mappedLinks;
+        if (snapshot == null) {
+            return links.snapshot();
+        }
+
+        Set<String> written = new HashSet<>();
+        long now = clock.millis();
+        Stream<Link> loaded = StreamSupport.stream(links.snapshot().spliterator(), false)
+                .peek(link -> written.add(link.getShortUrl()));
+        Stream<Link> notLoaded = StreamSupport.stream(snapshot.spliterator(), false)
+                .filter(link -> !written.contains(link.getShortUrl()))
+                .filter(link -> !removedFromSnapshot.contains(link.getShortUrl()))
+                .filter(link -> {
+                    if (link.isExpired(now)) {
+                        expireLink(link.getShortUrl());
+                        return false;
+                    }
+                    return true;
+                });
+        return Stream.concat(loaded, notLoaded)::iterator;
+    }
+
+    /**
+     * Все пользователи для нового снимка: загруженные в память и оставшиеся
+     * только в отображенном снимке
+     */
+    private Iterable<User> snapshotUsers() {
+        MappedUserStore snapshot = mappedUsers;
+        if (snapshot == null) {
+            return users.snapshot();
+        }
+
+        Set<UUID> written = new HashSet<>();
+        Stream<User> loaded = users.snapshot().stream()
+                .peek(user -> written.add(user.getId()));
+        // Пользователя могли подгрузить и изменить после обхода памяти: тогда пишется он, а не копия из снимка
+        Stream<User> notLoaded = StreamSupport.stream(snapshot.spliterator(), false)
+                .filter(user -> !written.contains(user.getId()))
+                .map(user -> {
+                    User current = users.get(user.getId());
+                    return current != null ? current : user;
+                });
+        return Stream.concat(loaded, notLoaded)::iterator;
+    }
+
+    /**
+     * Ищет пользователя в памяти, а если его там нет — в отображенном снимке
+     * (прочитанный пользователь остается в памяти)
+     * @return пользователь или null
+     */
+    private User findUser(UUID userId) {
+        User user = users.get(userId);
+        MappedUserStore snapshot = mappedUsers;
+        if (user != null || snapshot == null) {
+            return user;
+        }
+        User loaded = snapshot.get(userId);
+        if (loaded == null) {
+            return null;
+        }
+        User existing = users.putIfAbsent(loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private User findOrCreateUser(UUID userId) {
+        User user = findUser(userId);
+        return user != null ? user : users.getOrCreate(userId);
+    }
+
+    /**
+     * Ищет ссылку в памяти, а если её там нет — в отображенном снимке.
+     * Код, которого нет в фильтре занятых кодов, гарантированно не существует:
+     * поиск несуществующих и недавно удаленных кодов не доходит до хранилища и снимка.
+     * Хранилище объектов в памяти отвечает быстрее фильтра, поэтому для него фильтр
+     * проверяется только при промахе.
+     * @return ссылка или null
+     */
+    private Link findLink(String shortUrl) {
+        boolean inMemory = links.storesObjects();
+        Link link = inMemory ? links.get(shortUrl) : null;
+        if (link == null) {
+            if (!mightContainCode(shortUrl)) {
+                metrics.recordFilteredLookup();
+                return null;
+            }
+            if (!inMemory) {
+                link = links.get(shortUrl);
+            }
+        }
+        MappedLinkStore snapshot = mappedLinks;
+        if (link != null || snapshot == null || removedFromSnapshot.contains(shortUrl)) {
+            return link;
+        }
+
+        Link loaded = snapshot.get(shortUrl);
+        if (loaded == null) {
+            return null;
+        }
+        Link existing = links.putIfAbsent(shortUrl, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        // Ссылку могли удалить, пока она читалась из снимка
+        if (removedFromSnapshot.contains(shortUrl)) {
+            links.remove(shortUrl, loaded);
+            return null;
+        }
+        scheduleExpiration(loaded);
+        return loaded;
+    }
+
+    /**
+     * Ищет ссылку для перехода в хранилище и добавляет данные перехода в кеш
+     * популярных ссылок
+     * @return ссылка или null
+     */
+    private Link findLinkForClick(String shortUrl) {
+        HotLinkCache cache = linkCache;
+        if (cache == null) {
+            return findLink(shortUrl);
+        }
+        long stamp = cache.stamp(shortUrl);
+        Link link = findLink(shortUrl);
+        if (link != null) {
+            cache.put(shortUrl, link, stamp);
+        }
+        return link;
+    }
+
+    /**
+     * Данные перехода из кеша популярных ссылок. Переход по ним резервируется в
+     * хранилище по коду, а счетчик в результате — значение, которое вернуло хранилище.
+     * @return данные перехода или null, если ссылки нет в кеше или исход перехода
+     * (срок, активность) нужно определить по самой ссылке
+     */
+    private HotLinkCache.Target findCachedTarget(String shortUrl) {
+        HotLinkCache cache = linkCache;
+        if (cache == null) {
+            return null;
+        }
+        HotLinkCache.Target target = cache.get(shortUrl);
+        if (target == null || !target.isActive() || target.isExpired(clock.millis())) {
+            return null;
+        }
+        return target;
+    }
+
+    /**
+     * Проверяет существование ссылки, не загружая её из снимка
+     */
+    private boolean containsLink(String shortUrl) {
+        if (!mightContainCode(shortUrl)) {
+            return false;
+        }
+        if (links.containsKey(shortUrl)) {
+            return true;
+        }
+        MappedLinkStore snapshot = mappedLinks;
+        return snapshot != null && !removedFromSnapshot.contains(shortUrl) && snapshot.contains(shortUrl);
+    }
+
+    /**
+     * Сбрасывает накопленные записи журнала на диск и при необходимости
+     * сворачивает журнал в снимок (выполняется в потоке сохранения)
+     */
+    private void persistChanges() {
+        long start = System.nanoTime();
+        journal.sync();
+        metrics.recordFlush(System.nanoTime() - start);
+        if (journal.getRecordsSinceSnapshot() >= compactionThreshold()) {
+            saveData();
+        }
+    }
+
+    /**
+     * Число записей журнала, после которого он сворачивается в снимок: не меньше
+     * заданного порога и растет вместе со снимком, поэтому полная перезапись
+     * снимка приходится на долю изменений, а не на каждые N изменений
+     */
+    private long compactionThreshold() {
+        return Math.max(config.getCompactionThreshold(),
+                snapshotRecords * config.getCompactionSnapshotPercent() / 100);
+    }
+
+    /**
+     * Дожидается записи на диск всех изменений, сделанных до вызова
+     */
+    public void flush() {
+        persistenceWriter.flush();
+    }
+
+    /**
+     * @return строка со статистикой фоновой записи на диск
+     */
+    public String getPersistenceStatistics() {
+        return persistenceWriter.getStatistics();
+    }
+
+    /**
+     * @return метрики сервиса (JMX и текстовый формат)
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Создает короткую ссылку для пользователя со временем жизни по умолчанию
+     * @param originalUrl исходный URL
+     * @param userId UUID пользователя (если null, создается новый пользователь)
+     * @param clickLimit лимит переходов
+     * @return короткая ссылка
+     */
+    public String createShortLink(String originalUrl, UUID userId, int clickLimit) {
+        return createShortLink(originalUrl, userId, clickLimit, DEFAULT_EXPIRATION_HOURS);
     }
 
     /**
@@ -63,72 +570,194 @@ public class LinkService {
         if (originalUrl == null || originalUrl.trim().isEmpty()) {
             throw new IllegalArgumentException("URL не может быть пустым");
         }
+        if (originalUrl.length() > MAX_URL_LENGTH) {
+            throw new IllegalArgumentException("URL не может быть длиннее " + MAX_URL_LENGTH + " символов");
+        }
         
         if (!originalUrl.startsWith("http://") && !originalUrl.startsWith("https://")) {
             originalUrl = "https://" + originalUrl;
         }
 
+        long start = System.nanoTime();
         // Создаем или получаем пользователя
-        User user;
-        if (userId == null) {
-            user = new User();
-            users.put(user.getId(), user);
-        } else {
-            user = users.get(userId);
-            if (user == null) {
-                user = new User(userId);
-                users.put(user.getId(), user);
-            }
-        }
-
-        // Генерируем уникальную короткую ссылку
-        String shortUrl = ShortUrlGenerator.generateUniqueShortUrl(user.getId(), originalUrl);
-        
-        // Проверяем уникальность (на случай коллизии)
-        int attempts = 0;
-        while (links.containsKey(shortUrl) && attempts < 10) {
-            shortUrl = ShortUrlGenerator.generateUniqueShortUrl(user.getId(), originalUrl + System.currentTimeMillis());
-            attempts++;
-        }
+        User user = findOrCreateUser(userId != null ? userId : UUID.randomUUID());
 
         // Создаем ссылку с заданным временем жизни
-        LocalDateTime expiresAt = LocalDateTime.now().plusHours(expirationHours);
-        Link link = new Link(shortUrl, originalUrl, user.getId(), clickLimit, expiresAt);
+        long expiresAt = clock.millis() + expirationHours * 3_600_000L;
+        Link link = new Link(null, originalUrl, user.getId(), clickLimit, expiresAt);
 
-        // Сохраняем ссылку
-        links.put(shortUrl, link);
+        // Генерируем уникальную короткую ссылку и сохраняем её
+        String shortUrl;
+        if (sequentialCodes != null) {
+            // Последовательные коды уникальны по построению
+            shortUrl = sequentialCodes.next(user.getId());
+            link.setShortUrl(shortUrl);
+            if (links.putIfAbsent(shortUrl, link) != null) {
+                throw new IllegalStateException("Код " + shortUrl + " уже занят");
+            }
+            codeFilter.add(shortUrl);
+        } else {
+            shortUrl = ShortUrlGenerator.generateShortUrl(user.getId());
+            int attempts = 0;
+            while (true) {
+                link.setShortUrl(shortUrl);
+                // Проверяем уникальность (на случай коллизии): containsLink проверяет хранилище,
+                // только если фильтр считает код занятым; putIfAbsent не дает перезаписать
+                // ссылку, созданную параллельно с тем же кодом
+                if (!containsLink(shortUrl) && links.putIfAbsent(shortUrl, link) == null) {
+                    codeFilter.add(shortUrl);
+                    break;
+                }
+                metrics.recordCreateCollision();
+                if (++attempts >= 10) {
+                    throw new IllegalStateException("Не удалось подобрать свободный код для ссылки");
+                }
+                shortUrl = ShortUrlGenerator.generateShortUrl(user.getId());
+            }
+        }
+        // Код мог быть удален после снимка: теперь по нему хранится новая ссылка
+        removedFromSnapshot.remove(shortUrl);
         user.addShortUrl(shortUrl);
+        scheduleExpiration(link);
 
-        // Сохраняем данные на диск
-        saveData();
+        // Записываем изменение в журнал
+        journal.logCreate(link);
+        persistenceWriter.markDirty();
+        metrics.recordCreate(System.nanoTime() - start);
 
         return shortUrl;
     }
 
     /**
-     * Получает оригинальный URL по короткой ссылке
+     * Получает оригинальный URL по короткой ссылке и учитывает переход.
+     * В отличие от {@link #resolve} не создает объект результата.
      * @param shortUrl короткая ссылка
      * @return оригинальный URL или null, если ссылка недоступна
      */
     public String getOriginalUrl(String shortUrl) {
-        Link link = links.get(shortUrl);
-        
+        HotLinkCache.Target target = findCachedTarget(shortUrl);
+        if (target != null && reserveClick(shortUrl) > 0) {
+            metrics.recordResolve(ResolveResult.Status.OK);
+            return target.getOriginalUrl();
+        }
+        Link link = findLinkForClick(shortUrl);
         if (link == null) {
+            metrics.recordResolve(ResolveResult.Status.NOT_FOUND);
             return null;
         }
 
-        // Проверяем доступность ссылки
-        if (!link.canBeAccessed()) {
-            return null;
+        int outcome = tryClick(shortUrl, link);
+        metrics.recordResolve(clickStatus(outcome));
+        return outcome > 0 ? link.getOriginalUrl() : null;
+    }
+
+    /**
+     * Переходит по короткой ссылке за один поиск: проверяет срок действия и
+     * состояние ссылки, учитывает переход и возвращает результат.
+     * @param shortUrl короткая ссылка
+     * @return оригинальный URL с остатком переходов или причина недоступности
+     */
+    public ResolveResult resolve(String shortUrl) {
+        HotLinkCache.Target target = findCachedTarget(shortUrl);
+        if (target != null) {
+            int clicks = reserveClick(shortUrl);
+            if (clicks > 0) {
+                metrics.recordResolve(ResolveResult.Status.OK);
+                return ResolveResult.success(shortUrl, target.getOriginalUrl(), target.getClickLimit(),
+                        clicks, target.getExpiresAtMillis());
+            }
+        }
+        Link link = findLinkForClick(shortUrl);
+        if (link == null) {
+            metrics.recordResolve(ResolveResult.Status.NOT_FOUND);
+            return ResolveResult.NOT_FOUND;
         }
 
-        // Увеличиваем счетчик переходов
-        link.incrementClicks();
-        
-        // Сохраняем изменения (счетчик переходов)
-        saveData();
-        
-        return link.getOriginalUrl();
+        // Остаток считается по значению, зарезервированному этим переходом:
+        // счетчик в ссылке к этому времени мог уже изменить переход из другого потока
+        int outcome = tryClick(shortUrl, link);
+        ResolveResult.Status status = clickStatus(outcome);
+        metrics.recordResolve(status);
+        return outcome > 0 ? ResolveResult.success(link, outcome) : ResolveResult.unavailable(status, link);
+    }
+
+    /**
+     * Проверяет доступность найденной ссылки и учитывает переход, не создавая объектов
+     * @return значение счетчика после перехода (больше 0) или причина, по которой
+     * переход не учтен: {@link #CLICK_LIMIT_REACHED}, {@link #CLICK_EXPIRED}, {@link #CLICK_INACTIVE}
+     */
+    private int tryClick(String shortUrl, Link link) {
+        // Просроченную ссылку удаляем сразу, не дожидаясь очистки
+        if (link.isExpired(clock.millis())) {
+            expireLink(shortUrl);
+            return CLICK_EXPIRED;
+        }
+
+        if (!link.isActive()) {
+            return CLICK_INACTIVE;
+        }
+
+        // Вдали от лимита переход учитывается в распределенном счетчике
+        // и попадает в журнал при очередной сверке
+        if (stripedClicks) {
+            int clicks = link.tryRecordStripedClick(config.getStripedClickMargin(), registerHotLink);
+            if (clicks > 0) {
+                return clicks;
+            }
+        }
+
+        // Атомарно резервируем переход: лимит соблюдается точно при любой конкуренции
+        int clicks = links.tryReserveClick(link);
+        if (clicks == 0) {
+            // Вытесняется только ссылка, не менявшаяся со снимка, поэтому
+            // результат по-прежнему строится по исходной копии
+            Link reloaded = reloadIfEvicted(shortUrl, link);
+            return reloaded != null ? tryClick(shortUrl, reloaded) : CLICK_LIMIT_REACHED;
+        }
+        logClick(shortUrl, clicks);
+        return clicks;
+    }
+
+    /**
+     * Резервирует переход по коду в хранилище и записывает его в журнал
+     * @return значение счетчика после перехода или 0, если переход не учтен
+     */
+    private int reserveClick(String shortUrl) {
+        int clicks = links.tryReserveClick(shortUrl);
+        if (clicks > 0) {
+            logClick(shortUrl, clicks);
+        }
+        return clicks;
+    }
+
+    private void logClick(String shortUrl, int clicks) {
+        journal.logClick(shortUrl, clicks);
+        persistenceWriter.markDirty();
+    }
+
+    private static ResolveResult.Status clickStatus(int outcome) {
+        if (outcome > 0) {
+            return ResolveResult.Status.OK;
+        }
+        if (outcome == CLICK_EXPIRED) {
+            return ResolveResult.Status.EXPIRED;
+        }
+        return outcome == CLICK_INACTIVE ? ResolveResult.Status.INACTIVE : ResolveResult.Status.CLICK_LIMIT_REACHED;
+    }
+
+    /**
+     * Заново читает ссылку, если её вытеснили из памяти после снимка, пока по ней шел переход
+     * @return ссылка для повторной попытки или null, если ссылка не вытеснялась
+     */
+    private Link reloadIfEvicted(String shortUrl, Link link) {
+        if (links.storesObjects() ? !link.isRetired() : links.containsKey(shortUrl)) {
+            return null;
+        }
+        if (linkCache != null) {
+            linkCache.invalidate(shortUrl);
+        }
+        Link reloaded = findLink(shortUrl);
+        return reloaded != link ? reloaded : null;
     }
 
     /**
@@ -137,7 +766,7 @@ public class LinkService {
      * @return объект Link или null
      */
     public Link getLinkInfo(String shortUrl) {
-        return links.get(shortUrl);
+        return findLink(shortUrl);
     }
 
     /**
@@ -146,15 +775,148 @@ public class LinkService {
      * @return список ссылок пользователя
      */
     public List<Link> getUserLinks(UUID userId) {
-        User user = users.get(userId);
+        User user = findUser(userId);
         if (user == null) {
             return new ArrayList<>();
         }
         
-        return user.getShortUrls().stream()
-                .map(links::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        List<Link> result = new ArrayList<>(user.getShortUrlCount());
+        Iterator<String> shortUrls = user.getShortUrlIndex().iterator(USER_LINKS_PAGE_SIZE);
+        while (shortUrls.hasNext()) {
+            Link link = findLink(shortUrls.next());
+            if (link != null) {
+                result.add(link);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return число ссылок пользователя
+     */
+    public int getUserLinkCount(UUID userId) {
+        User user = findUser(userId);
+        return user == null ? 0 : user.getShortUrlCount();
+    }
+
+    /**
+     * Получает страницу ссылок пользователя в порядке создания
+     * @param userId UUID пользователя
+     * @param cursor курсор из предыдущей страницы или null для первой страницы
+     * @param pageSize наибольшее число ссылок на странице
+     * @param filter отбор ссылок
+     * @return страница ссылок; в памяти не держится больше одной страницы
+     */
+    public LinkPage getUserLinks(UUID userId, String cursor, int pageSize, LinkPage.Filter filter) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть больше 0");
+        }
+        UserLinkIndex.Cursor position = parseCursor(cursor);
+        User user = findUser(userId);
+        if (user == null) {
+            return new LinkPage(new ArrayList<>(), null);
+        }
+
+        UserLinkIndex index = user.getShortUrlIndex();
+        List<Link> result = new ArrayList<>(Math.min(pageSize, USER_LINKS_PAGE_SIZE));
+        List<String> shortUrls = new ArrayList<>();
+        long now = clock.millis();
+        // Редкий отбор не должен обходить весь индекс за один вызов:
+        // после лимита просмотра возвращается неполная страница с курсором
+        long scanLimit = (long) pageSize * MAX_SCANNED_PER_PAGE_LINK;
+        long scanned = 0;
+        while (result.size() < pageSize && scanned < scanLimit) {
+            // Читаем не больше кодов, чем осталось места на странице, чтобы курсор не перескочил ссылки
+            int wanted = (int) Math.min(Math.min(pageSize - result.size(), USER_LINKS_PAGE_SIZE), scanLimit - scanned);
+            shortUrls.clear();
+            UserLinkIndex.Cursor next = index.page(position, wanted, shortUrls);
+            if (next == null) {
+                return new LinkPage(result, null);
+            }
+            for (String shortUrl : shortUrls) {
+                Link link = findLink(shortUrl);
+                if (link != null && matches(link, filter, now)) {
+                    result.add(link);
+                }
+            }
+            position = next;
+            scanned += shortUrls.size();
+            if (shortUrls.size() < wanted) {
+                return new LinkPage(result, null);
+            }
+        }
+        return new LinkPage(result, formatCursor(position));
+    }
+
+    /**
+     * Обходит ссылки пользователя, читая их страницами заданного размера
+     * @param userId UUID пользователя
+     * @param filter отбор ссылок
+     * @param pageSize число ссылок, читаемых за раз
+     */
+    public Iterator<Link> iterateUserLinks(UUID userId, LinkPage.Filter filter, int pageSize) {
+        return new Iterator<Link>() {
+            private LinkPage page = getUserLinks(userId, null, pageSize, filter);
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (position == page.getLinks().size()) {
+                    if (!page.hasMore()) {
+                        return false;
+                    }
+                    page = getUserLinks(userId, page.getNextCursor(), pageSize, filter);
+                    position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public Link next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.getLinks().get(position++);
+            }
+        };
+    }
+
+    private static boolean matches(Link link, LinkPage.Filter filter, long now) {
+        switch (filter) {
+            case ACTIVE:
+                return link.canBeAccessed(now);
+            case EXPIRED:
+                return link.isExpired(now);
+            case NEAR_LIMIT:
+                int remaining = link.getClickLimit() - link.getCurrentClicks();
+                return link.canBeAccessed(now)
+                        && remaining <= Math.max(1, link.getClickLimit() * NEAR_LIMIT_PERCENT / 100);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Курсор: номер добавления в индексе пользователя (base36) и код последней ссылки
+     */
+    private static String formatCursor(UserLinkIndex.Cursor cursor) {
+        return Long.toString(cursor.getSequence(), 36) + ":" + cursor.getShortUrl();
+    }
+
+    private static UserLinkIndex.Cursor parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        int separator = cursor.indexOf(':');
+        try {
+            if (separator > 0) {
+                return new UserLinkIndex.Cursor(Long.parseLong(cursor.substring(0, separator), 36),
+                        cursor.substring(separator + 1));
+            }
+        } catch (NumberFormatException e) {
+            // ниже
+        }
+        throw new IllegalArgumentException("Неверный курсор страницы: " + cursor);
     }
 
     /**
@@ -167,51 +929,78 @@ public class LinkService {
      * @return true, если ссылка обновлена
      */
     public boolean updateLink(String shortUrl, UUID userId, Integer newClickLimit, Integer newExpirationHours) {
-        Link link = links.get(shortUrl);
-        
-        if (link == null) {
-            return false;
-        }
+        while (true) {
+            // Хранилища копий отдают новый объект на каждое чтение: изменения одного кода
+            // упорядочивает блокировка по коду, тогда и записи журнала идут в том же порядке
+            synchronized (updateLock(shortUrl)) {
+                Link link = findLink(shortUrl);
+            
+                if (link == null) {
+                    return false;
+                }
 
-        if (!link.getUserId().equals(userId)) {
-            return false;
-        }
+                if (!link.getUserId().equals(userId)) {
+                    return false;
+                }
 
-        boolean clickLimitChanged = false;
-        boolean expirationChanged = false;
-        
-        // Обновляем лимит переходов только если значение действительно изменилось
-        if (newClickLimit != null && !newClickLimit.equals(link.getClickLimit())) {
-            link.setClickLimit(newClickLimit);
-            clickLimitChanged = true;
-        }
-        
-        // Обновляем время жизни только если значение действительно изменилось
-        if (newExpirationHours != null) {
-            LocalDateTime now = LocalDateTime.now();
-            LocalDateTime newExpiresAt = now.plusHours(newExpirationHours);
-            LocalDateTime currentExpiresAt = link.getExpiresAt();
-            
-            // Вычисляем оставшееся время до текущего истечения
-            long currentHoursRemaining = java.time.Duration.between(now, currentExpiresAt).toHours();
-            
-            // Если оставшееся время отличается от нового времени жизни более чем на 1 час, считаем что время изменилось
-            if (Math.abs(currentHoursRemaining - newExpirationHours) > 1) {
-                link.setExpiresAt(newExpiresAt);
-                expirationChanged = true;
+                // Под монитором ссылки изменение не пересекается с её вытеснением из памяти
+                synchronized (link) {
+                    if (link.isRetired()) {
+                        continue;
+                    }
+
+                    boolean clickLimitChanged = false;
+                    boolean expirationChanged = false;
+                
+                    // Обновляем лимит переходов только если значение действительно изменилось
+                    if (newClickLimit != null && !newClickLimit.equals(link.getClickLimit())) {
+                        link.setClickLimit(newClickLimit);
+                        clickLimitChanged = true;
+                    }
+                
+                    // Обновляем время жизни только если значение действительно изменилось
+                    if (newExpirationHours != null) {
+                        long now = clock.millis();
+                        long newExpiresAt = now + newExpirationHours * 3_600_000L;
+                    
+                        // Вычисляем оставшееся время до текущего истечения
+                        long currentHoursRemaining = (link.getExpiresAtMillis() - now) / 3_600_000L;
+                    
+                        // Если оставшееся время отличается от нового времени жизни более чем на 1 час, считаем что время изменилось
+                        if (Math.abs(currentHoursRemaining - newExpirationHours) > 1) {
+                            unscheduleExpiration(link);
+                            link.setExpiresAtMillis(newExpiresAt);
+                            scheduleExpiration(link);
+                            expirationChanged = true;
+                        }
+                    }
+                
+                    // Если ничего не изменилось, возвращаем false
+                    if (!clickLimitChanged && !expirationChanged) {
+                        return false;
+                    }
+
+                    // Сбрасываем счетчик переходов только если действительно изменился лимит или время жизни
+                    link.setCurrentClicks(0);
+                    if (!links.update(link)) {
+                        // Копию вытеснили из хранилища после снимка: повторяем на заново прочитанной
+                        continue;
+                    }
+                    if (linkCache != null) {
+                        linkCache.invalidate(shortUrl);
+                    }
+                    // Записываем изменения в журнал
+                    journal.logUpdate(link);
+                    persistenceWriter.markDirty();
+                    metrics.recordUpdate();
+                    return true;
+                }
             }
         }
-        
-        // Сбрасываем счетчик переходов только если действительно изменился лимит или время жизни
-        if (clickLimitChanged || expirationChanged) {
-            link.setCurrentClicks(0);
-            // Сохраняем изменения
-            saveData();
-            return true;
-        }
-        
-        // Если ничего не изменилось, возвращаем false
-        return false;
+    }
+
+    private Object updateLock(String shortUrl) {
+        return updateLocks[(shortUrl.hashCode() & Integer.MAX_VALUE) % updateLocks.length];
     }
 
     /**
@@ -221,24 +1010,24 @@ public class LinkService {
      * @return true, если ссылка удалена
      */
     public boolean deleteLink(String shortUrl, UUID userId) {
-        Link link = links.get(shortUrl);
-        
-        if (link == null) {
-            return false;
-        }
+        synchronized (updateLock(shortUrl)) {
+            Link link = findLink(shortUrl);
 
-        if (!link.getUserId().equals(userId)) {
-            return false;
-        }
+            if (link == null) {
+                return false;
+            }
 
-        links.remove(shortUrl);
-        User user = users.get(userId);
-        if (user != null) {
-            user.removeShortUrl(shortUrl);
+            if (!link.getUserId().equals(userId)) {
+                return false;
+            }
+
+            removeLink(shortUrl);
+
+            // Записываем удаление в журнал под той же блокировкой, что и изменения
+            journal.logDelete(shortUrl);
         }
-        
-        // Сохраняем изменения
-        saveData();
+        persistenceWriter.markDirty();
+        metrics.recordDelete();
         
         return true;
     }
@@ -249,13 +1038,13 @@ public class LinkService {
      * @return сообщение о статусе или null, если ссылка доступна
      */
     public String checkLinkStatus(String shortUrl) {
-        Link link = links.get(shortUrl);
+        Link link = findLink(shortUrl);
         
         if (link == null) {
             return "Ссылка не найдена";
         }
 
-        if (link.isExpired()) {
+        if (link.isExpired(clock.millis())) {
             return "Срок действия ссылки истек";
         }
 
@@ -274,49 +1063,156 @@ public class LinkService {
      * Запускает периодическую очистку просроченных ссылок
      */
     private void startExpirationCleanup() {
-        expirationTimer = new Timer(true); // daemon thread
-        expirationTimer.scheduleAtFixedRate(new TimerTask() {
+        long precision = expirationIndex.getPrecisionMillis();
+        maintenanceTimer = new Timer(true); // daemon thread
+        maintenanceTimer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
                 cleanupExpiredLinks();
             }
-        }, 0, 60000); // Проверка каждую минуту
+        }, precision, precision); // Проверка с заданной точностью истечения
+    }
+
+    /**
+     * Запускает периодический перенос распределенных счетчиков переходов в ссылки
+     */
+    private void startClickReconciliation() {
+        long interval = config.getClickReconcileIntervalMillis();
+        maintenanceTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                reconcileClicks();
+            }
+        }, interval, interval);
+    }
+
+    /**
+     * Сводит распределенные счетчики ссылок и записывает новые переходы в журнал
+     */
+    private void reconcileClicks() {
+        for (Map.Entry<Link, Integer> entry : hotLinks.entrySet()) {
+            Link link = entry.getKey();
+            link.reconcileClicks();
+            int clicks = link.getCurrentClicks();
+            if (clicks != entry.getValue()) {
+                journal.logClick(link.getShortUrl(), clicks);
+                persistenceWriter.markDirty();
+                entry.setValue(clicks);
+            }
+        }
     }
 
     /**
      * Удаляет просроченные ссылки
      */
     private void cleanupExpiredLinks() {
-        List<String> expiredUrls = links.entrySet().stream()
-                .filter(entry -> entry.getValue().isExpired())
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        long now = clock.millis();
+        for (String shortUrl : expirationIndex.pollExpired(now)) {
+            Link link = links.get(shortUrl);
+            if (link == null) {
+                continue;
+            }
+            if (link.isExpired(now)) {
+                expireLink(shortUrl);
+            } else {
+                // Срок продлили после постановки в индекс
+                scheduleExpiration(link);
+            }
+        }
+        sweepSnapshot(now);
+        metrics.recordSweep(System.nanoTime() - start);
+    }
 
-        for (String shortUrl : expiredUrls) {
-            Link link = links.remove(shortUrl);
-            if (link != null) {
-                User user = users.get(link.getUserId());
-                if (user != null) {
-                    user.removeShortUrl(shortUrl);
-                }
+    /**
+     * Удаляет просроченные ссылки, оставшиеся только в отображенном снимке. Их нет в
+     * индексе сроков, поэтому снимок обходится по частям, не больше
+     * SNAPSHOT_SWEEP_BATCH записей за проход; после конца снимка обход начинается сначала
+     */
+    private void sweepSnapshot(long now) {
+        MappedLinkStore snapshot = mappedLinks;
+        if (snapshot == null) {
+            return;
+        }
+        if (snapshot != sweptSnapshot) {
+            sweptSnapshot = snapshot;
+            sweepPosition = 0;
+        }
+        sweepPosition = snapshot.sweepExpired(sweepPosition, SNAPSHOT_SWEEP_BATCH, now, shortUrl -> {
+            // Загруженные ссылки удаляются по индексу сроков: их срок могли продлить
+            if (!links.containsKey(shortUrl) && !removedFromSnapshot.contains(shortUrl)) {
+                expireLink(shortUrl);
             }
+        });
+    }
+
+    private void scheduleExpiration(Link link) {
+        expirationIndex.add(link.getShortUrl(), link.getExpiresAtMillis());
+    }
+
+    private void unscheduleExpiration(Link link) {
+        expirationIndex.remove(link.getShortUrl(), link.getExpiresAtMillis());
+    }
+
+    /**
+     * Удаляет просроченную ссылку и записывает это в журнал
+     */
+    private void expireLink(String shortUrl) {
+        if (removeLink(shortUrl) != null) {
+            journal.logExpire(shortUrl);
+            persistenceWriter.markDirty();
+            metrics.recordEviction();
         }
-        
-        // Сохраняем изменения после очистки
-        if (!expiredUrls.isEmpty()) {
-            saveData();
+    }
+
+    /**
+     * Удаляет ссылку из хранилища и из списка ссылок её владельца
+     * @return удаленная ссылка или null
+     */
+    private Link removeLink(String shortUrl) {
+        // Сначала помечаем код удаленным, чтобы параллельный findLink не подгрузил его снова
+        MappedLinkStore snapshot = mappedLinks;
+        boolean firstRemoval = snapshot != null && snapshot.contains(shortUrl) && removedFromSnapshot.add(shortUrl);
+        Link link = links.remove(shortUrl);
+        // Ссылка могла попасть в записываемый сейчас снимок: пометку добавит saveData
+        Set<String> removedWhileWriting = removedWhileSaving;
+        if (removedWhileWriting != null) {
+            removedWhileWriting.add(shortUrl);
+        }
+        if (linkCache != null) {
+            linkCache.invalidate(shortUrl);
+        }
+        if (link == null && firstRemoval) {
+            link = snapshot.get(shortUrl);
         }
+        if (link != null) {
+            codeFilter.remove(shortUrl);
+            hotLinks.remove(link);
+            unscheduleExpiration(link);
+            User user = findUser(link.getUserId());
+            if (user != null) {
+                user.removeShortUrl(shortUrl);
+            }
+        }
+        return link;
     }
 
     /**
      * Останавливает сервис и очищает ресурсы
      */
     public void shutdown() {
-        // Сохраняем данные перед закрытием
-        saveData();
+        metrics.unregister();
+        if (maintenanceTimer != null) {
+            maintenanceTimer.cancel();
+        }
+        reconcileClicks();
         
-        if (expirationTimer != null) {
-            expirationTimer.cancel();
+        // Дожидаемся фоновой записи и сохраняем снимок данных перед закрытием
+        persistenceWriter.close();
+        saveData();
+        journal.close();
+        if (ownClock != null) {
+            ownClock.stop();
         }
     }
 
@@ -326,7 +1222,7 @@ public class LinkService {
      * @return строка со статистикой
      */
     public String getLinkStatistics(String shortUrl) {
-        Link link = links.get(shortUrl);
+        Link link = findLink(shortUrl);
         if (link == null) {
             return "Ссылка не найдена";
         }
@@ -346,7 +1242,7 @@ public class LinkService {
             link.getClickLimit(),
             link.getCreatedAt().format(formatter),
             link.getExpiresAt().format(formatter),
-            link.canBeAccessed() ? "Активна" : "Недоступна"
+            link.canBeAccessed(clock.millis()) ? "Активна" : "Недоступна"
         );
     }
 }
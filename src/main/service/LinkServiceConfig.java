@@ -0,0 +1,279 @@
+package service;
+
+import java.time.Clock;
+
+/**
+ * Настройки сервиса ссылок.
+ * Значения по умолчанию можно переопределить системными свойствами
+ * (например, -Durlshortener.flush.intervalMs=50).
+ */
+public class LinkServiceConfig {
+    private static final String PREFIX = "urlshortener.";
+
+    // Максимальная задержка сброса изменений на диск, мс
+    private long flushIntervalMillis = 20;
+    // Число изменений, после которого сброс начинается досрочно
+    private int flushDirtyThreshold = 1000;
+    // Наименьшее число записей журнала между полными снимками
+    private long compactionThreshold = 10000;
+    // Доля записей последнего снимка (ссылок и пользователей), %, после которой журнал
+    // сворачивается: при большом снимке перезапись обходится O(1) на изменение
+    private int compactionSnapshotPercent = 50;
+    // Точность удаления просроченных ссылок, мс
+    private long expirationPrecisionMillis = 1000;
+    // Интервал обновления кешированных часов, мс
+    private long clockResolutionMillis = 10;
+    // Часы для проверки сроков действия; если не заданы, сервис запускает кешированные часы
+    private Clock clock;
+    // Генератор кодов: random — случайный код с проверкой коллизий, sequential — последовательные идентификаторы
+    private String codeGenerator = "random";
+    // Добавлять ли к последовательному коду два символа из UUID пользователя;
+    // не меняйте для существующих данных, иначе коды разных режимов могут совпасть
+    private boolean codeUserPrefix = true;
+    // Число идентификаторов, которые поток берет за раз в последовательном режиме
+    private int idBlockSize = 1000;
+    // Хранилище ссылок в памяти: heap — объекты Link, compact — массивы примитивов (меньше памяти на ссылку),
+    // offheap — компактные записи в прямых буферах вне кучи (не нагружают сборщик мусора)
+    private String storageEngine = "heap";
+    // Свои реализации хранилищ; если заданы, storageEngine не используется
+    private LinkStore linkStore;
+    private UserStore userStore;
+    // Расчетное число кодов для фильтра занятых кодов (при загрузке берется не меньше удвоенного числа ссылок)
+    private int codeFilterCapacity = 1 << 20;
+    // Учет переходов по популярным ссылкам в распределенных счетчиках
+    private boolean stripedClicks = false;
+    // Остаток до лимита, начиная с которого переходы считаются точно
+    private int stripedClickMargin = 1024;
+    // Период переноса распределенных счетчиков в ссылки и журнал, мс
+    private long clickReconcileIntervalMillis = 1000;
+    // Емкость кеша популярных ссылок перед хранилищем копий: число ссылок и оценка байтов (0 — без ограничения);
+    // при обоих значениях 0 кеш выключен. Для хранилища объектов (heap) кеш не нужен и не создается
+    private long hotCacheMaxEntries = 100_000;
+    private long hotCacheMaxBytes = 0;
+
+    /**
+     * Создает настройки по умолчанию с учетом системных свойств
+     */
+    public static LinkServiceConfig fromSystemProperties() {
+        LinkServiceConfig config = new LinkServiceConfig();
+        config.setFlushIntervalMillis(Long.getLong(PREFIX + "flush.intervalMs", config.flushIntervalMillis));
+        config.setFlushDirtyThreshold(Integer.getInteger(PREFIX + "flush.dirtyThreshold", config.flushDirtyThreshold));
+        config.setCompactionThreshold(Long.getLong(PREFIX + "compaction.threshold", config.compactionThreshold));
+        config.setCompactionSnapshotPercent(Integer.getInteger(PREFIX + "compaction.snapshotPercent",
+                config.compactionSnapshotPercent));
+        config.setExpirationPrecisionMillis(Long.getLong(PREFIX + "expiration.precisionMs",
+                config.expirationPrecisionMillis));
+        config.setClockResolutionMillis(Long.getLong(PREFIX + "clock.resolutionMs", config.clockResolutionMillis));
+        config.setCodeGenerator(System.getProperty(PREFIX + "codes.generator", config.codeGenerator));
+        config.setCodeUserPrefix(Boolean.parseBoolean(
+                System.getProperty(PREFIX + "codes.userPrefix", String.valueOf(config.codeUserPrefix))));
+        config.setIdBlockSize(Integer.getInteger(PREFIX + "codes.idBlockSize", config.idBlockSize));
+        config.setStorageEngine(System.getProperty(PREFIX + "storage.engine", config.storageEngine));
+        config.setCodeFilterCapacity(Integer.getInteger(PREFIX + "codes.filterCapacity", config.codeFilterCapacity));
+        config.setStripedClicks(Boolean.parseBoolean(
+                System.getProperty(PREFIX + "clicks.striped", String.valueOf(config.stripedClicks))));
+        config.setStripedClickMargin(Integer.getInteger(PREFIX + "clicks.stripedMargin", config.stripedClickMargin));
+        config.setClickReconcileIntervalMillis(Long.getLong(PREFIX + "clicks.reconcileIntervalMs",
+                config.clickReconcileIntervalMillis));
+        config.setHotCacheMaxEntries(Long.getLong(PREFIX + "cache.maxEntries", config.hotCacheMaxEntries));
+        config.setHotCacheMaxBytes(Long.getLong(PREFIX + "cache.maxBytes", config.hotCacheMaxBytes));
+        return config;
+    }
+
+    /**
+     * Проверяет, что значение больше 0; в сообщении указывается системное свойство настройки
+     */
+    private static void requirePositive(long value, String property) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Настройка " + PREFIX + property + " должна быть больше 0: " + value);
+        }
+    }
+
+    /**
+     * Проверяет, что значение не отрицательно
+     */
+    private static void requireNonNegative(long value, String property) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Настройка " + PREFIX + property + " не может быть отрицательной: " + value);
+        }
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        requirePositive(flushIntervalMillis, "flush.intervalMs");
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public int getFlushDirtyThreshold() {
+        return flushDirtyThreshold;
+    }
+
+    public void setFlushDirtyThreshold(int flushDirtyThreshold) {
+        requirePositive(flushDirtyThreshold, "flush.dirtyThreshold");
+        this.flushDirtyThreshold = flushDirtyThreshold;
+    }
+
+    public long getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(long compactionThreshold) {
+        requireNonNegative(compactionThreshold, "compaction.threshold");
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    public int getCompactionSnapshotPercent() {
+        return compactionSnapshotPercent;
+    }
+
+    public void setCompactionSnapshotPercent(int compactionSnapshotPercent) {
+        requireNonNegative(compactionSnapshotPercent, "compaction.snapshotPercent");
+        this.compactionSnapshotPercent = compactionSnapshotPercent;
+    }
+
+    public long getExpirationPrecisionMillis() {
+        return expirationPrecisionMillis;
+    }
+
+    public void setExpirationPrecisionMillis(long expirationPrecisionMillis) {
+        requirePositive(expirationPrecisionMillis, "expiration.precisionMs");
+        this.expirationPrecisionMillis = expirationPrecisionMillis;
+    }
+
+    public long getClockResolutionMillis() {
+        return clockResolutionMillis;
+    }
+
+    public void setClockResolutionMillis(long clockResolutionMillis) {
+        requirePositive(clockResolutionMillis, "clock.resolutionMs");
+        this.clockResolutionMillis = clockResolutionMillis;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Задает часы сервиса (например, управляемые часы в тестах)
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public String getCodeGenerator() {
+        return codeGenerator;
+    }
+
+    public void setCodeGenerator(String codeGenerator) {
+        if (!codeGenerator.equals("random") && !codeGenerator.equals("sequential")) {
+            throw new IllegalArgumentException("Генератор кодов должен быть random или sequential");
+        }
+        this.codeGenerator = codeGenerator;
+    }
+
+    public boolean isCodeUserPrefix() {
+        return codeUserPrefix;
+    }
+
+    public void setCodeUserPrefix(boolean codeUserPrefix) {
+        this.codeUserPrefix = codeUserPrefix;
+    }
+
+    public int getIdBlockSize() {
+        return idBlockSize;
+    }
+
+    public void setIdBlockSize(int idBlockSize) {
+        requirePositive(idBlockSize, "codes.idBlockSize");
+        this.idBlockSize = idBlockSize;
+    }
+
+    public String getStorageEngine() {
+        return storageEngine;
+    }
+
+    public void setStorageEngine(String storageEngine) {
+        if (!storageEngine.equals("heap") && !storageEngine.equals("compact") && !storageEngine.equals("offheap")) {
+            throw new IllegalArgumentException("Хранилище ссылок должно быть heap, compact или offheap");
+        }
+        this.storageEngine = storageEngine;
+    }
+
+    public LinkStore getLinkStore() {
+        return linkStore;
+    }
+
+    /**
+     * Задает хранилище ссылок вместо встроенного (например, для сравнения реализаций)
+     */
+    public void setLinkStore(LinkStore linkStore) {
+        this.linkStore = linkStore;
+    }
+
+    public UserStore getUserStore() {
+        return userStore;
+    }
+
+    /**
+     * Задает хранилище пользователей вместо встроенного
+     */
+    public void setUserStore(UserStore userStore) {
+        this.userStore = userStore;
+    }
+
+    public int getCodeFilterCapacity() {
+        return codeFilterCapacity;
+    }
+
+    public void setCodeFilterCapacity(int codeFilterCapacity) {
+        requirePositive(codeFilterCapacity, "codes.filterCapacity");
+        this.codeFilterCapacity = codeFilterCapacity;
+    }
+
+    public boolean isStripedClicks() {
+        return stripedClicks;
+    }
+
+    public void setStripedClicks(boolean stripedClicks) {
+        this.stripedClicks = stripedClicks;
+    }
+
+    public int getStripedClickMargin() {
+        return stripedClickMargin;
+    }
+
+    public void setStripedClickMargin(int stripedClickMargin) {
+        requireNonNegative(stripedClickMargin, "clicks.stripedMargin");
+        this.stripedClickMargin = stripedClickMargin;
+    }
+
+    public long getClickReconcileIntervalMillis() {
+        return clickReconcileIntervalMillis;
+    }
+
+    public void setClickReconcileIntervalMillis(long clickReconcileIntervalMillis) {
+        requirePositive(clickReconcileIntervalMillis, "clicks.reconcileIntervalMs");
+        this.clickReconcileIntervalMillis = clickReconcileIntervalMillis;
+    }
+
+    public long getHotCacheMaxEntries() {
+        return hotCacheMaxEntries;
+    }
+
+    public void setHotCacheMaxEntries(long hotCacheMaxEntries) {
+        requireNonNegative(hotCacheMaxEntries, "cache.maxEntries");
+        this.hotCacheMaxEntries = hotCacheMaxEntries;
+    }
+
+    public long getHotCacheMaxBytes() {
+        return hotCacheMaxBytes;
+    }
+
+    public void setHotCacheMaxBytes(long hotCacheMaxBytes) {
+        requireNonNegative(hotCacheMaxBytes, "cache.maxBytes");
+        this.hotCacheMaxBytes = hotCacheMaxBytes;
+    }
+}
@@ -0,0 +1,316 @@
+package service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Слоты сегмента {@link CompactLinkStore}: поля ссылок по номеру слота.
+ *
+ * {@link OnHeap} хранит поля в параллельных массивах примитивов, {@link OffHeap} —
+ * записями по 48 байт в прямом ByteBuffer вне кучи, так что сборщик мусора
+ * видит только сам буфер, а не миллионы объектов и массивов. Пустой слот
+ * имеет ключ 0.
+ */
+abstract class LinkSlots {
+
+    /**
+     * Выделяет слоты в куче или вне её
+     */
+    static LinkSlots allocate(int capacity, boolean offHeap) {
+        return offHeap ? new OffHeap(capacity) : new OnHeap(capacity);
+    }
+
+    abstract int capacity();
+
+    /**
+     * @return пустые слоты того же вида заданной емкости
+     */
+    abstract LinkSlots allocate(int capacity);
+
+    abstract long key(int slot);
+
+    abstract long urlRef(int slot);
+
+    abstract int user(int slot);
+
+    /**
+     * Время создания в секундах эпохи хранится в 4 байтах без знака: до 2106 года
+     */
+    abstract long createdSeconds(int slot);
+
+    abstract long expires(int slot);
+
+    abstract int limit(int slot);
+
+    abstract int clicks(int slot);
+
+    abstract boolean active(int slot);
+
+    /**
+     * Атомарно меняет счетчик переходов
+     */
+    abstract boolean compareAndSetClicks(int slot, int expected, int clicks);
+
+    abstract void set(int slot, long key, long urlRef, int user, long createdSeconds,
+                      long expires, int limit, int clicks, boolean active);
+
+    abstract void update(int slot, long expires, int limit, int clicks, boolean active);
+
+    abstract void setUrlRef(int slot, long urlRef);
+
+    abstract void clear(int slot);
+
+    /**
+     * Копирует слот {@code from} в слот {@code to} другого (или того же) набора того же вида
+     */
+    abstract void copy(int from, LinkSlots target, int to);
+
+    /**
+     * Поля в параллельных массивах в куче
+     */
+    static final class OnHeap extends LinkSlots {
+        private static final VarHandle CLICKS = MethodHandles.arrayElementVarHandle(int[].class);
+
+        private final long[] keys;
+        private final long[] urlRefs;
+        private final int[] users;
+        private final int[] createdSeconds;
+        private final long[] expires;
+        private final int[] limits;
+        private final int[] clicks;
+        private final byte[] active;
+
+        OnHeap(int capacity) {
+            keys = new long[capacity];
+            urlRefs = new long[capacity];
+            users = new int[capacity];
+            createdSeconds = new int[capacity];
+            expires = new long[capacity];
+            limits = new int[capacity];
+            clicks = new int[capacity];
+            active = new byte[capacity];
+        }
+
+        @Override
+        int capacity() {
+            return keys.length;
+        }
+
+        @Override
+        LinkSlots allocate(int capacity) {
+            return new OnHeap(capacity);
+        }
+
+        @Override
+        long key(int slot) {
+            return keys[slot];
+        }
+
+        @Override
+        long urlRef(int slot) {
+            return urlRefs[slot];
+        }
+
+        @Override
+        int user(int slot) {
+            return users[slot];
+        }
+
+        @Override
+        long createdSeconds(int slot) {
+            return Integer.toUnsignedLong(createdSeconds[slot]);
+        }
+
+        @Override
+        long expires(int slot) {
+            return expires[slot];
+        }
+
+        @Override
+        int limit(int slot) {
+            return limits[slot];
+        }
+
+        @Override
+        int clicks(int slot) {
+            return (int) CLICKS.getVolatile(clicks, slot);
+        }
+
+        @Override
+        boolean active(int slot) {
+            return active[slot] != 0;
+        }
+
+        @Override
+        boolean compareAndSetClicks(int slot, int expected, int value) {
+            return CLICKS.compareAndSet(clicks, slot, expected, value);
+        }
+
+        @Override
+        void set(int slot, long key, long urlRef, int user, long created,
+                 long expiresAt, int limit, int clickCount, boolean isActive) {
+            keys[slot] = key;
+            urlRefs[slot] = urlRef;
+            users[slot] = user;
+            createdSeconds[slot] = (int) created;
+            update(slot, expiresAt, limit, clickCount, isActive);
+        }
+
+        @Override
+        void update(int slot, long expiresAt, int limit, int clickCount, boolean isActive) {
+            expires[slot] = expiresAt;
+            limits[slot] = limit;
+            clicks[slot] = clickCount;
+            active[slot] = (byte) (isActive ? 1 : 0);
+        }
+
+        @Override
+        void setUrlRef(int slot, long urlRef) {
+            urlRefs[slot] = urlRef;
+        }
+
+        @Override
+        void clear(int slot) {
+            keys[slot] = 0;
+        }
+
+        @Override
+        void copy(int from, LinkSlots target, int to) {
+            OnHeap other = (OnHeap) target;
+            other.keys[to] = keys[from];
+            other.urlRefs[to] = urlRefs[from];
+            other.users[to] = users[from];
+            other.createdSeconds[to] = createdSeconds[from];
+            other.expires[to] = expires[from];
+            other.limits[to] = limits[from];
+            other.clicks[to] = clicks[from];
+            other.active[to] = active[from];
+        }
+    }
+
+    /**
+     * Записи фиксированной длины в прямом буфере вне кучи.
+     * Поля выровнены по своему размеру, что нужно для атомарного доступа к счетчику.
+     */
+    static final class OffHeap extends LinkSlots {
+        private static final int RECORD_SIZE = 48;
+        private static final int KEY = 0;
+        private static final int URL_REF = 8;
+        private static final int EXPIRES = 16;
+        private static final int USER = 24;
+        private static final int CREATED = 28;
+        private static final int LIMIT = 32;
+        private static final int CLICKS_OFFSET = 36;
+        private static final int ACTIVE = 40;
+        private static final VarHandle CLICKS =
+                MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+        private final ByteBuffer records;
+        private final int capacity;
+
+        OffHeap(int capacity) {
+            if ((long) capacity * RECORD_SIZE > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Слишком много ссылок в сегменте: " + capacity);
+            }
+            // Прямой буфер заполнен нулями: все слоты пусты
+            this.records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+            this.capacity = capacity;
+        }
+
+        @Override
+        int capacity() {
+            return capacity;
+        }
+
+        @Override
+        LinkSlots allocate(int newCapacity) {
+            return new OffHeap(newCapacity);
+        }
+
+        @Override
+        long key(int slot) {
+            return records.getLong(slot * RECORD_SIZE + KEY);
+        }
+
+        @Override
+        long urlRef(int slot) {
+            return records.getLong(slot * RECORD_SIZE + URL_REF);
+        }
+
+        @Override
+        int user(int slot) {
+            return records.getInt(slot * RECORD_SIZE + USER);
+        }
+
+        @Override
+        long createdSeconds(int slot) {
+            return Integer.toUnsignedLong(records.getInt(slot * RECORD_SIZE + CREATED));
+        }
+
+        @Override
+        long expires(int slot) {
+            return records.getLong(slot * RECORD_SIZE + EXPIRES);
+        }
+
+        @Override
+        int limit(int slot) {
+            return records.getInt(slot * RECORD_SIZE + LIMIT);
+        }
+
+        @Override
+        int clicks(int slot) {
+            return (int) CLICKS.getVolatile(records, slot * RECORD_SIZE + CLICKS_OFFSET);
+        }
+
+        @Override
+        boolean active(int slot) {
+            return records.get(slot * RECORD_SIZE + ACTIVE) != 0;
+        }
+
+        @Override
+        boolean compareAndSetClicks(int slot, int expected, int value) {
+            return CLICKS.compareAndSet(records, slot * RECORD_SIZE + CLICKS_OFFSET, expected, value);
+        }
+
+        @Override
+        void set(int slot, long key, long urlRef, int user, long created,
+                 long expiresAt, int limit, int clickCount, boolean isActive) {
+            int offset = slot * RECORD_SIZE;
+            records.putLong(offset + KEY, key);
+            records.putLong(offset + URL_REF, urlRef);
+            records.putInt(offset + USER, user);
+            records.putInt(offset + CREATED, (int) created);
+            update(slot, expiresAt, limit, clickCount, isActive);
+        }
+
+        @Override
+        void update(int slot, long expiresAt, int limit, int clickCount, boolean isActive) {
+            int offset = slot * RECORD_SIZE;
+            records.putLong(offset + EXPIRES, expiresAt);
+            records.putInt(offset + LIMIT, limit);
+            records.putInt(offset + CLICKS_OFFSET, clickCount);
+            records.put(offset + ACTIVE, (byte) (isActive ? 1 : 0));
+        }
+
+        @Override
+        void setUrlRef(int slot, long urlRef) {
+            records.putLong(slot * RECORD_SIZE + URL_REF, urlRef);
+        }
+
+        @Override
+        void clear(int slot) {
+            records.putLong(slot * RECORD_SIZE + KEY, 0);
+        }
+
+        @Override
+        void copy(int from, LinkSlots target, int to) {
+            ByteBuffer source = records.duplicate();
+            source.limit(from * RECORD_SIZE + RECORD_SIZE).position(from * RECORD_SIZE);
+            ByteBuffer destination = ((OffHeap) target).records.duplicate();
+            destination.position(to * RECORD_SIZE);
+            destination.put(source);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package service;
+
+import model.Link;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище ссылок сервиса в памяти: shortUrl -> Link.
+ *
+ * Реализация может хранить ссылки как объекты ({@link HeapLinkStore}) или в
+ * компактном виде ({@link CompactLinkStore}); во втором случае {@link #get}
+ * возвращает копию, и изменения полей ссылки нужно записать обратно через
+ * {@link #update}, а переходы учитывать через {@link #tryReserveClick}.
+ *
+ * Новое хранилище подключается через {@link LinkServiceConfig#setLinkStore}
+ * и должно проходить общий набор тестов хранилищ (LinkStoreConformanceTest).
+ * Все методы могут вызываться из нескольких потоков одновременно.
+ */
+public interface LinkStore {
+
+    /**
+     * @return ссылка или null
+     */
+    Link get(String shortUrl);
+
+    /**
+     * Сохраняет ссылку, если код свободен
+     * @return уже сохраненная ссылка с этим кодом или null, если ссылка добавлена
+     */
+    Link putIfAbsent(String shortUrl, Link link);
+
+    /**
+     * Сохраняет ссылку, заменяя существующую с тем же кодом
+     */
+    void put(String shortUrl, Link link);
+
+    /**
+     * Удаляет ссылку по коду
+     * @return удаленная ссылка или null
+     */
+    Link remove(String shortUrl);
+
+    /**
+     * Удаляет ссылку, только если по коду хранится именно она
+     * (хранилища копий удаляют по коду)
+     */
+    void remove(String shortUrl, Link link);
+
+    boolean containsKey(String shortUrl);
+
+    int size();
+
+    /**
+     * Обход всех ссылок (для снимка на диск). Обход не блокирует изменения:
+     * параллельно добавленные или удаленные ссылки могут не попасть в него,
+     * но каждая ссылка встречается не больше одного раза.
+     */
+    Iterable<Link> snapshot();
+
+    /**
+     * Атомарно резервирует один переход по ссылке, полученной из {@link #get}:
+     * успешных резервирований никогда не больше лимита ссылки
+     * @return новое значение счетчика или 0, если лимит исчерпан или ссылки уже нет
+     */
+    int tryReserveClick(Link link);
+
+    /**
+     * Резервирует один переход по коду, не читая ссылку целиком (переход по
+     * данным из кеша популярных ссылок). По умолчанию читает ссылку через {@link #get}.
+     * @return новое значение счетчика или 0, если лимит исчерпан или ссылки нет
+     */
+    default int tryReserveClick(String shortUrl) {
+        Link link = get(shortUrl);
+        return link == null ? 0 : tryReserveClick(link);
+    }
+
+    /**
+     * Записывает измененные лимит, срок, счетчик и активность ссылки
+     * @return false, если ссылки уже нет в хранилище (удалена или вытеснена)
+     */
+    boolean update(Link link);
+
+    /**
+     * Вытесняет ссылку, если её состояние совпадает с копией из снимка, атомарно
+     * относительно {@link #tryReserveClick} и {@link #update}: после вытеснения
+     * они для прежней ссылки возвращают 0 и false. Вызывается после записи снимка,
+     * чтобы в памяти оставались только ссылки, измененные после него.
+     * По умолчанию ничего не вытесняет.
+     * @return true, если ссылка вытеснена
+     */
+    default boolean removeIfUnchanged(String shortUrl, Link expected) {
+        return false;
+    }
+
+    /**
+     * @return true, если {@link #get} возвращает сами хранимые объекты
+     * (тогда доступны распределенные счетчики переходов {@link Link})
+     */
+    boolean storesObjects();
+
+    /**
+     * Освобождает место, оставшееся от удаленных ссылок. Вызывается после
+     * записи снимка; по умолчанию ничего не делает.
+     */
+    default void compact() {
+    }
+
+    /**
+     * Передает все ссылки владельца, которые есть в хранилище.
+     *
+     * Сервис этот метод не вызывает: ссылки пользователя он берет из своего
+     * индекса ({@link model.UserLinkIndex}), который учитывает и ссылки, оставшиеся
+     * только в отображенном снимке. Метод нужен для сравнения хранилищ и внешних
+     * инструментов. Реализация по умолчанию — полный обход {@link #snapshot};
+     * хранилищам со своей раскладкой следует переопределить его и отбирать
+     * ссылки до создания объектов, как {@link CompactLinkStore}.
+     */
+    default void scanByOwner(UUID ownerId, Consumer<Link> action) {
+        for (Link link : snapshot()) {
+            if (link.getUserId().equals(ownerId)) {
+                action.accept(link);
+            }
+        }
+    }
+
+    /**
+     * Передает ссылки, срок которых истекает не позже заданного момента.
+     *
+     * Сервис удаляет просроченные ссылки по своему индексу сроков
+     * ({@link ExpirationIndex}) и этот метод не вызывает. Реализация по
+     * умолчанию — полный обход {@link #snapshot}; хранилищам со своей раскладкой
+     * следует её переопределить.
+     */
+    default void scanByExpiry(long expiresAtOrBeforeMillis, Consumer<Link> action) {
+        for (Link link : snapshot()) {
+            if (link.getExpiresAtMillis() <= expiresAtOrBeforeMillis) {
+                action.accept(link);
+            }
+        }
+    }
+}
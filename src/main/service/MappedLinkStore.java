@@ -0,0 +1,153 @@
+package service;
+
+import model.Link;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Снимок ссылок, отображенный в память (read-only).
+ *
+ * Файл не загружается при открытии: поиск по коду идет через хеш-индекс снимка
+ * ({@link SnapshotFormat}), и операционная система подгружает только страницы
+ * запрошенных записей.
+ */
+public class MappedLinkStore implements Iterable<Link> {
+    private final Path file;
+    private final MappedSnapshot snapshot;
+
+    private MappedLinkStore(Path file, MappedSnapshot snapshot) {
+        this.file = file;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Отображает файл снимка в память
+     * @param file файл ссылок
+     * @return хранилище или null, если снимок записан без индекса (версия 1)
+     */
+    public static MappedLinkStore open(Path file) throws IOException {
+        MappedSnapshot snapshot = MappedSnapshot.open(file, SnapshotFormat.LINKS_MAGIC, SnapshotFormat.LINKS_VERSION);
+        return snapshot == null ? null : new MappedLinkStore(file, snapshot);
+    }
+
+    /**
+     * @return число ссылок в снимке
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Читает ссылку по коду
+     * @return новый объект Link или null, если кода нет в снимке
+     */
+    public Link get(String shortUrl) {
+        long offset = find(shortUrl);
+        return offset == 0 ? null : SnapshotFormat.readLink(snapshot.at(offset));
+    }
+
+    /**
+     * Проверяет наличие кода в снимке без чтения всей записи
+     */
+    public boolean contains(String shortUrl) {
+        return find(shortUrl) != 0;
+    }
+
+    /**
+     * Передает хеши всех кодов снимка ({@link SnapshotFormat#codeHash}), читая только
+     * слоты индекса: записи не декодируются, страницы с ними не подгружаются
+     */
+    public void forEachCodeHash(IntConsumer action) {
+        snapshot.forEachHash(action);
+    }
+
+    /**
+     * Просматривает не больше {@code limit} записей подряд и передает коды ссылок, срок
+     * которых истек не позже {@code now}. Из записи читается только срок; код
+     * декодируется лишь у просроченных ссылок.
+     * @param position смещение первой записи из предыдущего вызова или 0 для начала снимка
+     * @return смещение следующей записи или 0, если снимок пройден до конца
+     */
+    public long sweepExpired(long position, int limit, long now, Consumer<String> action) {
+        long offset = position == 0 ? SnapshotFormat.INDEXED_HEADER_SIZE : position;
+        long end = snapshot.recordsEnd();
+        for (int i = 0; i < limit && offset < end; i++) {
+            ByteBuffer record = snapshot.at(offset);
+            int start = record.position();
+            int codeLength = Short.toUnsignedInt(record.getShort());
+            int urlLength = record.getInt(start + 2 + codeLength);
+            // Срок лежит после URL, UUID владельца, лимита, счетчика и времени создания
+            int expiresPosition = start + 2 + codeLength + 4 + urlLength + 16 + 4 + 4 + 8;
+            if (record.getLong(expiresPosition) <= now) {
+                byte[] code = new byte[codeLength];
+                record.get(code);
+                action.accept(new String(code, StandardCharsets.UTF_8));
+            }
+            // За сроком — флаг активности
+            offset += expiresPosition + 8 + 1 - start;
+        }
+        return offset < end ? offset : 0;
+    }
+
+    /**
+     * Последовательно читает все ссылки снимка (для компактизации)
+     */
+    @Override
+    public Iterator<Link> iterator() {
+        return new Iterator<Link>() {
+            private long offset = SnapshotFormat.INDEXED_HEADER_SIZE;
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                return read < snapshot.size();
+            }
+
+            @Override
+            public Link next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ByteBuffer buffer = snapshot.at(offset);
+                int start = buffer.position();
+                Link link = SnapshotFormat.readLink(buffer);
+                offset += buffer.position() - start;
+                read++;
+                return link;
+            }
+        };
+    }
+
+    /**
+     * Ищет смещение записи по коду через хеш-индекс
+     * @return смещение записи или 0, если код не найден
+     */
+    private long find(String shortUrl) {
+        byte[] key = shortUrl.getBytes(StandardCharsets.UTF_8);
+        return snapshot.find(SnapshotFormat.codeHash(shortUrl), record -> keyEquals(record, key));
+    }
+
+    private static boolean keyEquals(ByteBuffer record, byte[] key) {
+        int length = Short.toUnsignedInt(record.getShort());
+        if (length != key.length) {
+            return false;
+        }
+        for (byte b : key) {
+            if (record.get() != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
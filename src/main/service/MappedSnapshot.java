@@ -0,0 +1,146 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+/**
+ * Файл снимка с хеш-индексом ({@link SnapshotFormat}, версия 2), отображенный в память.
+ *
+ * Файл отображается сегментами по 1 ГБ с перекрытием, поэтому запись (не длиннее
+ * перекрытия) всегда целиком лежит в одном сегменте. Общая часть
+ * {@link MappedLinkStore} и {@link MappedUserStore}.
+ */
+final class MappedSnapshot {
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int SEGMENT_OVERLAP = 1 << 20;
+
+    /**
+     * Проверка, что запись по смещению относится к искомому ключу
+     */
+    interface RecordMatcher {
+        boolean matches(ByteBuffer record);
+    }
+
+    private final MappedByteBuffer[] segments;
+    private final int count;
+    private final int slotCount;
+    private final long indexOffset;
+
+    private MappedSnapshot(MappedByteBuffer[] segments, int count, int slotCount, long indexOffset) {
+        this.segments = segments;
+        this.count = count;
+        this.slotCount = slotCount;
+        this.indexOffset = indexOffset;
+    }
+
+    /**
+     * Отображает файл снимка в память
+     * @return снимок или null, если файл записан без индекса (версия 1)
+     */
+    static MappedSnapshot open(Path file, int magic, short supportedVersion) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(SnapshotFormat.INDEXED_HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // дочитываем заголовок
+            }
+            header.flip();
+
+            int count = SnapshotFormat.readHeader(header, magic, supportedVersion, file);
+            if (header.getShort(4) < 2) {
+                return null;
+            }
+            int slotCount = header.getInt();
+            long indexOffset = header.getLong();
+            // Индекс записывается последним и заканчивается вместе с файлом: обрезанный
+            // или дописанный файл отклоняется при открытии, а не читается наполовину
+            if (indexOffset < SnapshotFormat.INDEXED_HEADER_SIZE
+                    || indexOffset + (long) slotCount * SnapshotFormat.SLOT_SIZE != size) {
+                throw new IOException("Снимок " + file + " поврежден: индекс не совпадает с размером файла");
+            }
+            if (Integer.bitCount(slotCount) != 1 || count < 0 || count > slotCount / 2) {
+                throw new IOException("Снимок " + file + " поврежден: неверный заголовок индекса");
+            }
+
+            int segmentCount = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[Math.max(segmentCount, 1)];
+            for (int i = 0; i < segmentCount; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                long length = Math.min(SEGMENT_MASK + 1 + SEGMENT_OVERLAP, size - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            // Отображение остается действительным после закрытия канала
+            return new MappedSnapshot(segments, count, slotCount, indexOffset);
+        }
+    }
+
+    /**
+     * @return число записей в снимке
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return смещение конца записей: индекс записан сразу после них
+     */
+    long recordsEnd() {
+        return indexOffset;
+    }
+
+    /**
+     * Ищет смещение записи через хеш-индекс
+     * @return смещение записи или 0, если ключ не найден
+     */
+    long find(int hash, RecordMatcher matcher) {
+        if (count == 0) {
+            return 0;
+        }
+
+        int mask = slotCount - 1;
+        int slot = hash & mask;
+        while (true) {
+            ByteBuffer entry = at(indexOffset + (long) slot * SnapshotFormat.SLOT_SIZE);
+            int slotHash = entry.getInt();
+            long offset = entry.getLong();
+            if (offset == 0) {
+                return 0;
+            }
+            if (slotHash == hash && matcher.matches(at(offset))) {
+                return offset;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Передает хеши всех ключей снимка, читая только слоты индекса:
+     * записи не декодируются, страницы с ними не подгружаются
+     */
+    void forEachHash(IntConsumer action) {
+        long end = indexOffset + (long) slotCount * SnapshotFormat.SLOT_SIZE;
+        for (long offset = indexOffset; offset < end; offset += SnapshotFormat.SLOT_SIZE) {
+            // Слот не длиннее перекрытия и целиком лежит в своем сегменте
+            MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+            int position = (int) (offset & SEGMENT_MASK);
+            if (segment.getLong(position + 4) != 0) {
+                action.accept(segment.getInt(position));
+            }
+        }
+    }
+
+    /**
+     * Возвращает независимый буфер, позиционированный на смещение в файле
+     */
+    ByteBuffer at(long offset) {
+        ByteBuffer buffer = segments[(int) (offset >>> SEGMENT_SHIFT)].duplicate();
+        buffer.position((int) (offset & SEGMENT_MASK));
+        return buffer;
+    }
+}
@@ -0,0 +1,117 @@
+package service;
+
+import model.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Снимок пользователей, отображенный в память (read-only).
+ *
+ * Как и {@link MappedLinkStore}, файл не загружается при открытии: пользователь
+ * со списком кодов его ссылок читается по UUID через хеш-индекс при первом обращении.
+ */
+public class MappedUserStore implements Iterable<User> {
+    private final MappedSnapshot snapshot;
+
+    private MappedUserStore(MappedSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Отображает файл снимка в память
+     * @param file файл пользователей
+     * @return хранилище или null, если снимок записан без индекса (версия 1)
+     */
+    public static MappedUserStore open(Path file) throws IOException {
+        MappedSnapshot snapshot = MappedSnapshot.open(file, SnapshotFormat.USERS_MAGIC, SnapshotFormat.USERS_VERSION);
+        return snapshot == null ? null : new MappedUserStore(snapshot);
+    }
+
+    /**
+     * @return число пользователей в снимке
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Читает пользователя по UUID
+     * @return новый объект User или null, если пользователя нет в снимке
+     */
+    public User get(UUID userId) {
+        long offset = snapshot.find(SnapshotFormat.userHash(userId), record ->
+                record.getLong() == userId.getMostSignificantBits()
+                        && record.getLong() == userId.getLeastSignificantBits());
+        return offset == 0 ? null : new Reader(offset).next();
+    }
+
+    /**
+     * Последовательно читает всех пользователей снимка (для компактизации)
+     */
+    @Override
+    public Iterator<User> iterator() {
+        return new Iterator<User>() {
+            private final Reader reader = new Reader(SnapshotFormat.INDEXED_HEADER_SIZE);
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                return read < snapshot.size();
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                read++;
+                return reader.next();
+            }
+        };
+    }
+
+    /**
+     * Чтение записей пользователей подряд с заданного смещения. Запись пользователя
+     * со множеством ссылок может быть длиннее перекрытия сегментов, поэтому буфер
+     * берется заново, когда до конца сегмента остается меньше самого длинного кода.
+     */
+    private final class Reader {
+        private static final int MAX_CODE_RECORD = 2 + 0xFFFF;
+
+        private long offset;
+        private ByteBuffer buffer;
+
+        Reader(long offset) {
+            this.offset = offset;
+        }
+
+        User next() {
+            ByteBuffer record = buffer(20);
+            User user = new User(new UUID(record.getLong(), record.getLong()));
+            int size = record.getInt();
+            offset += 20;
+            for (int i = 0; i < size; i++) {
+                ByteBuffer code = buffer(MAX_CODE_RECORD);
+                int length = Short.toUnsignedInt(code.getShort());
+                byte[] bytes = new byte[length];
+                code.get(bytes);
+                user.addShortUrl(new String(bytes, StandardCharsets.UTF_8));
+                offset += 2 + length;
+            }
+            return user;
+        }
+
+        private ByteBuffer buffer(int needed) {
+            if (buffer == null || buffer.remaining() < needed) {
+                buffer = snapshot.at(offset);
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновый поток сохранения данных.
+ *
+ * Изменяющие операции только отмечают, что данные изменились ({@link #markDirty()}),
+ * а запись на диск выполняется в отдельном потоке: серия изменений объединяется
+ * в один сброс, который происходит раз в заданный интервал или раньше,
+ * если накопилось заданное число изменений.
+ */
+public class PersistenceWriter {
+    private final Runnable flushAction;
+    private final long intervalMillis;
+    private final int dirtyThreshold;
+
+    // Число изменений, ещё не сброшенных на диск (глубина очереди)
+    private final AtomicLong dirty = new AtomicLong();
+
+    private final Object lock = new Object();
+    private long requestedGeneration;
+    private long completedGeneration;
+    private volatile boolean running;
+    private Thread thread;
+
+    // Статистика сбросов (пишет только поток сохранения)
+    private volatile long flushCount;
+    private volatile long totalFlushNanos;
+    private volatile long maxFlushNanos;
+    private volatile long lastFlushNanos;
+
+    /**
+     * @param flushAction действие сброса на диск
+     * @param intervalMillis максимальная задержка между изменением и сбросом
+     * @param dirtyThreshold число изменений, после которого сброс начинается досрочно
+     */
+    public PersistenceWriter(Runnable flushAction, long intervalMillis, int dirtyThreshold) {
+        this.flushAction = flushAction;
+        this.intervalMillis = intervalMillis;
+        this.dirtyThreshold = dirtyThreshold;
+    }
+
+    /**
+     * Запускает поток сохранения
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "persistence-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Отмечает изменение данных; блокировка берется только при достижении порога
+     */
+    public void markDirty() {
+        if (dirty.incrementAndGet() == dirtyThreshold) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Барьер: дожидается сброса, начатого после вызова
+     */
+    public void flush() {
+        if (!running) {
+            flushOnce();
+            return;
+        }
+
+        synchronized (lock) {
+            long target = ++requestedGeneration;
+            lock.notifyAll();
+            while (running && completedGeneration < target) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает оставшиеся изменения и останавливает поток
+     */
+    public void close() {
+        flush();
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return число изменений, ожидающих сброса
+     */
+    public long getQueueDepth() {
+        return dirty.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushCount;
+        return count == 0 ? 0 : totalFlushNanos / 1e6 / count;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos / 1e6;
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos / 1e6;
+    }
+
+    /**
+     * @return строка со статистикой сохранения
+     */
+    public String getStatistics() {
+        return String.format(
+            "В очереди изменений: %d\n" +
+            "Сбросов на диск: %d\n" +
+            "Время сброса: последний %.2f мс, средний %.2f мс, максимальный %.2f мс",
+            getQueueDepth(),
+            getFlushCount(),
+            getLastFlushMillis(),
+            getAverageFlushMillis(),
+            getMaxFlushMillis()
+        );
+    }
+
+    private void run() {
+        while (running) {
+            long generation;
+            boolean requested;
+            synchronized (lock) {
+                long deadline = System.currentTimeMillis() + intervalMillis;
+                while (running && completedGeneration == requestedGeneration && dirty.get() < dirtyThreshold) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    try {
+                        lock.wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                generation = requestedGeneration;
+                requested = generation != completedGeneration;
+            }
+
+            if (requested || dirty.get() > 0) {
+                flushOnce();
+            }
+
+            synchronized (lock) {
+                completedGeneration = generation;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void flushOnce() {
+        dirty.set(0);
+        long start = System.nanoTime();
+        try {
+            flushAction.run();
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка при сохранении данных: " + e.getMessage());
+        }
+
+        long elapsed = System.nanoTime() - start;
+        lastFlushNanos = elapsed;
+        totalFlushNanos += elapsed;
+        maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+        flushCount++;
+    }
+}
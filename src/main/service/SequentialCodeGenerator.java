@@ -0,0 +1,76 @@
+package service;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Генератор коротких ссылок из последовательных идентификаторов.
+ *
+ * Каждый поток берет блок идентификаторов и выдает их без синхронизации;
+ * идентификатор кодируется в base62. Разные идентификаторы дают разные коды,
+ * поэтому генератору не нужны ни повторные попытки, ни проверка хранилища.
+ * Блоки нарезаются из диапазона (аренды), граница которого сохраняется на диск
+ * до выдачи первого идентификатора из него, поэтому после перезапуска или сбоя
+ * выдача продолжается за границей, пропуская неиспользованный остаток.
+ *
+ * Код дополняется до {@link ShortUrlGenerator#SEQUENTIAL_MIN_LENGTH} символов и
+ * поэтому не пересекается с шестисимвольными случайными кодами.
+ */
+public class SequentialCodeGenerator {
+    // Число блоков в одной аренде, сохраняемой на диск
+    private static final int BLOCKS_PER_LEASE = 64;
+
+    private final int blockSize;
+    private final boolean userPrefix;
+    // Блок текущего потока: {следующий идентификатор, конец блока}
+    private final ThreadLocal<long[]> threadBlock = ThreadLocal.withInitial(() -> new long[2]);
+    // Неразданный остаток аренды (под блокировкой this)
+    private long leaseNext;
+    private long leaseEnd;
+
+    /**
+     * @param blockSize число идентификаторов, которые поток берет за раз
+     * @param userPrefix добавлять ли в код два символа из UUID пользователя
+     */
+    public SequentialCodeGenerator(int blockSize, boolean userPrefix) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Размер блока идентификаторов должен быть положительным");
+        }
+        this.blockSize = blockSize;
+        this.userPrefix = userPrefix;
+    }
+
+    /**
+     * Генерирует короткую ссылку для пользователя
+     * @return короткая ссылка вида clck.ru/XXXXXXX
+     */
+    public String next(UUID userId) {
+        return ShortUrlGenerator.sequentialShortUrl(nextId(), userPrefix ? userId : null);
+    }
+
+    /**
+     * Выдает следующий идентификатор из блока текущего потока
+     */
+    public long nextId() {
+        long[] block = threadBlock.get();
+        if (block[0] == block[1]) {
+            allocateBlock(block);
+        }
+        return block[0]++;
+    }
+
+    private synchronized void allocateBlock(long[] block) {
+        if (leaseNext == leaseEnd) {
+            long leaseSize = (long) blockSize * BLOCKS_PER_LEASE;
+            try {
+                leaseNext = StorageService.reserveIds(leaseSize);
+            } catch (IOException e) {
+                throw new IllegalStateException("Не удалось сохранить границу идентификаторов: " + e.getMessage(), e);
+            }
+            leaseEnd = leaseNext + leaseSize;
+        }
+        block[0] = leaseNext;
+        block[1] = leaseNext + blockSize;
+        leaseNext += blockSize;
+    }
+}
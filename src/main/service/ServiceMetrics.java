@@ -0,0 +1,346 @@
+package service;
+
+import model.ResolveResult;
+import util.ConcurrentHistogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Метрики сервиса ссылок.
+ *
+ * Счетчики горячего пути — {@link LongAdder} (распределенные по ячейкам, без
+ * общей точки конкуренции), длительности — гистограммы без блокировок. Время
+ * переходов не замеряется: на переход приходится один инкремент счетчика.
+ * Размеры хранилищ и очередей читаются при запросе метрик.
+ *
+ * Метрики доступны через JMX ({@link #register()}) и в текстовом формате
+ * Prometheus ({@link #getText()}), который отдает HTTP-сервер по /api/metrics.
+ */
+public class ServiceMetrics implements ServiceMetricsMBean {
+    static final String OBJECT_NAME = "urlshortener:type=LinkService";
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final LongAdder[] resolves = new LongAdder[ResolveResult.Status.values().length];
+    private final LongAdder createCollisions = new LongAdder();
+    private final LongAdder linksUpdated = new LongAdder();
+    private final LongAdder linksDeleted = new LongAdder();
+    private final LongAdder expiredEvictions = new LongAdder();
+    private final LongAdder filteredLookups = new LongAdder();
+    private final ConcurrentHistogram createNanos = new ConcurrentHistogram();
+    private final ConcurrentHistogram sweepNanos = new ConcurrentHistogram();
+    private final ConcurrentHistogram flushNanos = new ConcurrentHistogram();
+    private final ConcurrentHistogram snapshotNanos = new ConcurrentHistogram();
+
+    private final LongSupplier linkCount;
+    private final LongSupplier userCount;
+    private final LongSupplier pendingExpirations;
+    private final LongSupplier pendingChanges;
+    private final LongSupplier journalBytes;
+    // Кеш популярных ссылок или null, если он выключен
+    private final HotLinkCache linkCache;
+    private volatile ObjectName registeredName;
+
+    ServiceMetrics(LongSupplier linkCount, LongSupplier userCount, LongSupplier pendingExpirations,
+                   LongSupplier pendingChanges, LongSupplier journalBytes, HotLinkCache linkCache) {
+        for (int i = 0; i < resolves.length; i++) {
+            resolves[i] = new LongAdder();
+        }
+        this.linkCount = linkCount;
+        this.userCount = userCount;
+        this.pendingExpirations = pendingExpirations;
+        this.pendingChanges = pendingChanges;
+        this.journalBytes = journalBytes;
+        this.linkCache = linkCache;
+    }
+
+    void recordResolve(ResolveResult.Status status) {
+        resolves[status.ordinal()].increment();
+    }
+
+    void recordCreate(long nanos) {
+        createNanos.record(nanos);
+    }
+
+    void recordCreateCollision() {
+        createCollisions.increment();
+    }
+
+    void recordUpdate() {
+        linksUpdated.increment();
+    }
+
+    void recordDelete() {
+        linksDeleted.increment();
+    }
+
+    void recordEviction() {
+        expiredEvictions.increment();
+    }
+
+    void recordFilteredLookup() {
+        filteredLookups.increment();
+    }
+
+    void recordSweep(long nanos) {
+        sweepNanos.record(nanos);
+    }
+
+    void recordFlush(long nanos) {
+        flushNanos.record(nanos);
+    }
+
+    void recordSnapshot(long nanos) {
+        snapshotNanos.record(nanos);
+    }
+
+    /**
+     * Регистрирует метрики в JMX-сервере платформы; ошибка регистрации
+     * (например, второй сервис в процессе) только выводится в лог
+     */
+    public void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            System.err.println("Не удалось зарегистрировать метрики в JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Снимает регистрацию в JMX, если она была
+     */
+    public void unregister() {
+        ObjectName name = registeredName;
+        if (name == null) {
+            return;
+        }
+        registeredName = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            System.err.println("Не удалось снять метрики с регистрации в JMX: " + e.getMessage());
+        }
+    }
+
+    public long getResolves(ResolveResult.Status status) {
+        return resolves[status.ordinal()].sum();
+    }
+
+    @Override
+    public long getResolveOk() {
+        return getResolves(ResolveResult.Status.OK);
+    }
+
+    @Override
+    public long getResolveNotFound() {
+        return getResolves(ResolveResult.Status.NOT_FOUND);
+    }
+
+    @Override
+    public long getResolveExpired() {
+        return getResolves(ResolveResult.Status.EXPIRED);
+    }
+
+    @Override
+    public long getResolveClickLimitReached() {
+        return getResolves(ResolveResult.Status.CLICK_LIMIT_REACHED);
+    }
+
+    @Override
+    public long getResolveInactive() {
+        return getResolves(ResolveResult.Status.INACTIVE);
+    }
+
+    @Override
+    public long getLinksCreated() {
+        return createNanos.getTotalCount();
+    }
+
+    @Override
+    public long getCreateCollisions() {
+        return createCollisions.sum();
+    }
+
+    @Override
+    public double getCreateP99Millis() {
+        return createNanos.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getLinksUpdated() {
+        return linksUpdated.sum();
+    }
+
+    @Override
+    public long getLinksDeleted() {
+        return linksDeleted.sum();
+    }
+
+    @Override
+    public long getExpiredEvictions() {
+        return expiredEvictions.sum();
+    }
+
+    @Override
+    public long getFilteredLookups() {
+        return filteredLookups.sum();
+    }
+
+    @Override
+    public long getExpirationSweeps() {
+        return sweepNanos.getTotalCount();
+    }
+
+    @Override
+    public double getExpirationSweepP99Millis() {
+        return sweepNanos.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getExpirationSweepMaxMillis() {
+        return sweepNanos.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getFlushes() {
+        return flushNanos.getTotalCount();
+    }
+
+    @Override
+    public double getFlushP99Millis() {
+        return flushNanos.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getFlushMaxMillis() {
+        return flushNanos.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getJournalBytesWritten() {
+        return journalBytes.getAsLong();
+    }
+
+    @Override
+    public long getSnapshots() {
+        return snapshotNanos.getTotalCount();
+    }
+
+    @Override
+    public double getSnapshotMaxMillis() {
+        return snapshotNanos.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getLinkCount() {
+        return linkCount.getAsLong();
+    }
+
+    @Override
+    public long getUserCount() {
+        return userCount.getAsLong();
+    }
+
+    @Override
+    public long getPendingExpirations() {
+        return pendingExpirations.getAsLong();
+    }
+
+    @Override
+    public long getPendingChanges() {
+        return pendingChanges.getAsLong();
+    }
+
+    @Override
+    public long getLinkCacheHits() {
+        return linkCache == null ? 0 : linkCache.getHits();
+    }
+
+    @Override
+    public long getLinkCacheMisses() {
+        return linkCache == null ? 0 : linkCache.getMisses();
+    }
+
+    @Override
+    public double getLinkCacheHitRate() {
+        long hits = getLinkCacheHits();
+        long total = hits + getLinkCacheMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getLinkCacheEvictions() {
+        return linkCache == null ? 0 : linkCache.getEvictions();
+    }
+
+    @Override
+    public long getLinkCacheSize() {
+        return linkCache == null ? 0 : linkCache.size();
+    }
+
+    @Override
+    public String getText() {
+        StringBuilder text = new StringBuilder(2048);
+        text.append("# HELP urlshortener_resolve_total Переходы по результату\n");
+        text.append("# TYPE urlshortener_resolve_total counter\n");
+        for (ResolveResult.Status status : ResolveResult.Status.values()) {
+            text.append("urlshortener_resolve_total{result=\"").append(status.name().toLowerCase())
+                    .append("\"} ").append(getResolves(status)).append('\n');
+        }
+        counter(text, "urlshortener_create_collisions_total", "Повторные попытки подбора кода", getCreateCollisions());
+        counter(text, "urlshortener_update_total", "Измененные ссылки", getLinksUpdated());
+        counter(text, "urlshortener_delete_total", "Удаленные владельцами ссылки", getLinksDeleted());
+        counter(text, "urlshortener_expired_evictions_total", "Удаленные просроченные ссылки", getExpiredEvictions());
+        counter(text, "urlshortener_lookup_filtered_total", "Поиски кодов, отсеченные фильтром без обращения к хранилищу",
+                getFilteredLookups());
+        counter(text, "urlshortener_journal_written_bytes_total", "Байты, записанные в журнал", getJournalBytesWritten());
+        summary(text, "urlshortener_create_seconds", "Создание ссылки", createNanos);
+        summary(text, "urlshortener_expiration_sweep_seconds", "Проход очистки просроченных ссылок", sweepNanos);
+        summary(text, "urlshortener_journal_flush_seconds", "Сброс журнала на диск", flushNanos);
+        summary(text, "urlshortener_snapshot_seconds", "Запись полного снимка", snapshotNanos);
+        gauge(text, "urlshortener_links", "Ссылки в памяти", getLinkCount());
+        gauge(text, "urlshortener_users", "Пользователи", getUserCount());
+        gauge(text, "urlshortener_expiration_pending", "Ссылки в индексе истечения", getPendingExpirations());
+        gauge(text, "urlshortener_persistence_pending", "Изменения, ожидающие сброса", getPendingChanges());
+        if (linkCache != null) {
+            counter(text, "urlshortener_link_cache_hits_total", "Переходы, найденные в кеше ссылок", getLinkCacheHits());
+            counter(text, "urlshortener_link_cache_misses_total", "Переходы мимо кеша ссылок", getLinkCacheMisses());
+            counter(text, "urlshortener_link_cache_evictions_total", "Вытеснения из кеша ссылок", getLinkCacheEvictions());
+            gauge(text, "urlshortener_link_cache_size", "Ссылки в кеше", getLinkCacheSize());
+        }
+        return text.toString();
+    }
+
+    private static void counter(StringBuilder text, String name, String help, long value) {
+        header(text, name, help, "counter");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder text, String name, String help, long value) {
+        header(text, name, help, "gauge");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder text, String name, String help, ConcurrentHistogram histogram) {
+        header(text, name, help, "summary");
+        for (String quantile : new String[] {"0.5", "0.99", "0.999"}) {
+            text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.getValueAtPercentile(Double.parseDouble(quantile) * 100) / 1e9).append('\n');
+        }
+        text.append(name).append("_max ").append(histogram.getMax() / 1e9).append('\n');
+        text.append(name).append("_sum ").append(histogram.getSum() / 1e9).append('\n');
+        text.append(name).append("_count ").append(histogram.getTotalCount()).append('\n');
+    }
+
+    private static void header(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+}
@@ -0,0 +1,79 @@
+package service;
+
+/**
+ * Метрики сервиса ссылок в JMX (объект urlshortener:type=LinkService).
+ * Счетчики растут с момента запуска; длительности — в миллисекундах.
+ */
+public interface ServiceMetricsMBean {
+
+    long getResolveOk();
+
+    long getResolveNotFound();
+
+    long getResolveExpired();
+
+    long getResolveClickLimitReached();
+
+    long getResolveInactive();
+
+    long getLinksCreated();
+
+    long getCreateCollisions();
+
+    double getCreateP99Millis();
+
+    long getLinksUpdated();
+
+    long getLinksDeleted();
+
+    long getExpiredEvictions();
+
+    /**
+     * @return поиски несуществующих кодов, на которые ответил фильтр занятых кодов
+     */
+    long getFilteredLookups();
+
+    long getExpirationSweeps();
+
+    double getExpirationSweepP99Millis();
+
+    double getExpirationSweepMaxMillis();
+
+    long getFlushes();
+
+    double getFlushP99Millis();
+
+    double getFlushMaxMillis();
+
+    long getJournalBytesWritten();
+
+    long getSnapshots();
+
+    double getSnapshotMaxMillis();
+
+    long getLinkCount();
+
+    long getUserCount();
+
+    long getPendingExpirations();
+
+    long getPendingChanges();
+
+    long getLinkCacheHits();
+
+    long getLinkCacheMisses();
+
+    /**
+     * @return доля переходов, найденных в кеше популярных ссылок (0, если кеш выключен)
+     */
+    double getLinkCacheHitRate();
+
+    long getLinkCacheEvictions();
+
+    long getLinkCacheSize();
+
+    /**
+     * @return все метрики в текстовом формате Prometheus
+     */
+    String getText();
+}
@@ -1,35 +1,58 @@
 package service;
 
 import java.security.SecureRandom;
+import java.util.SplittableRandom;
 import java.util.UUID;
 
 /**
  * Генератор коротких ссылок
  */
 public class ShortUrlGenerator {
-    private static final String BASE_URL = "clck.ru/";
+    public static final String BASE_URL = "clck.ru/";
     private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
     private static final int SHORT_URL_LENGTH = 6;
+    // Минимальная длина последовательного кода: длиннее случайных, чтобы они не пересекались
+    public static final int SEQUENTIAL_MIN_LENGTH = 7;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // Число различных случайных частей кода: 62^4
+    private static final int RANDOM_PART_SPACE = 62 * 62 * 62 * 62;
     private static final SecureRandom random = new SecureRandom();
+    // Состояние генератора у каждого потока свое: потоки не конкурируют за общий ГСЧ
+    private static final ThreadLocal<CodeBuffer> codeBuffer = ThreadLocal.withInitial(CodeBuffer::new);
 
     /**
-     * Генерирует уникальную короткую ссылку для пользователя
+     * Генерирует уникальную короткую ссылку для пользователя.
+     * Код собирается в заранее выделенном буфере потока; единственная
+     * аллокация — итоговая строка.
      * @param userId UUID пользователя для обеспечения уникальности
      * @return короткая ссылка вида clck.ru/XXXXXX
      */
     public static String generateShortUrl(UUID userId) {
-        StringBuilder shortCode = new StringBuilder();
-        
+        CodeBuffer buffer = codeBuffer.get();
+        char[] chars = buffer.chars;
+        int pos = BASE_URL.length();
+
         // Добавляем часть UUID для уникальности
-        String userIdHash = userId.toString().replace("-", "").substring(0, 2);
-        
-        // Генерируем случайный код
-        for (int i = 0; i < SHORT_URL_LENGTH - 2; i++) {
-            shortCode.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+        writeUserPrefix(userId, chars, pos);
+        pos += 2;
+
+        // Одно случайное число на весь код, раскладываем его по цифрам base62
+        int value = buffer.random.nextInt(RANDOM_PART_SPACE);
+        for (int i = chars.length - 1; i >= pos; i--) {
+            chars[i] = CHARACTERS.charAt(value % 62);
+            value /= 62;
         }
-        
-        // Комбинируем для обеспечения уникальности для каждого пользователя
-        return BASE_URL + userIdHash + shortCode.toString();
+        return new String(chars);
+    }
+
+    /**
+     * Записывает двухсимвольный префикс пользователя — первые две шестнадцатеричные
+     * цифры UUID (те же, что в начале {@code userId.toString()}), без промежуточных строк
+     */
+    static void writeUserPrefix(UUID userId, char[] dst, int pos) {
+        int high = (int) (userId.getMostSignificantBits() >>> 56);
+        dst[pos] = HEX_DIGITS[high >>> 4];
+        dst[pos + 1] = HEX_DIGITS[high & 0xF];
     }
 
     /**
@@ -41,7 +64,8 @@ public class ShortUrlGenerator {
         int hash = combined.hashCode();
         
         StringBuilder shortCode = new StringBuilder();
-        String userIdHash = userId.toString().replace("-", "").substring(0, 2);
+        char[] userIdHash = new char[2];
+        writeUserPrefix(userId, userIdHash, 0);
         
         // Используем хеш для генерации кода
         int hashValue = Math.abs(hash);
@@ -53,6 +77,85 @@ public class ShortUrlGenerator {
         // Добавляем случайный элемент для уникальности
         shortCode.setCharAt(0, CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
         
-        return BASE_URL + userIdHash + shortCode.toString();
+        return BASE_URL + new String(userIdHash) + shortCode.toString();
+    }
+
+    /**
+     * Кодирует последовательный идентификатор в короткую ссылку
+     * @param id неотрицательный идентификатор
+     * @param userId UUID пользователя для двухсимвольного префикса или null без префикса
+     * @return короткая ссылка вида clck.ru/XXXXXXX (не короче {@link #SEQUENTIAL_MIN_LENGTH} символов кода)
+     */
+    public static String sequentialShortUrl(long id, UUID userId) {
+        if (userId == null) {
+            return BASE_URL + toBase62(id, SEQUENTIAL_MIN_LENGTH);
+        }
+        char[] userIdHash = new char[2];
+        writeUserPrefix(userId, userIdHash, 0);
+        return BASE_URL + new String(userIdHash) + toBase62(id, SEQUENTIAL_MIN_LENGTH - 2);
+    }
+
+    /**
+     * Записывает число в base62, дополняя старшими нулями (символ 'A') до заданной длины.
+     * Для каждой длины отображение взаимно однозначно: разные числа дают разные строки.
+     */
+    public static String toBase62(long value, int minLength) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Число должно быть неотрицательным: " + value);
+        }
+        char[] digits = new char[Math.max(11, minLength)]; // 62^11 > 2^63
+        int pos = digits.length;
+        do {
+            digits[--pos] = CHARACTERS.charAt((int) (value % CHARACTERS.length()));
+            value /= CHARACTERS.length();
+        } while (value > 0);
+        while (digits.length - pos < minLength) {
+            digits[--pos] = CHARACTERS.charAt(0);
+        }
+        return new String(digits, pos, digits.length - pos);
+    }
+
+    /**
+     * Восстанавливает число из записи base62 (обратное к {@link #toBase62})
+     */
+    public static long fromBase62(CharSequence code) {
+        long value = 0;
+        for (int i = 0; i < code.length(); i++) {
+            int digit = base62Digit(code.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Недопустимый символ base62: " + code.charAt(i));
+            }
+            value = Math.multiplyExact(value, CHARACTERS.length()) + digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return значение цифры base62 или -1, если символ не из алфавита
+     */
+    static int base62Digit(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 26;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 52;
+        }
+        return -1;
+    }
+
+    /**
+     * Буфер и генератор случайных чисел одного потока
+     */
+    private static final class CodeBuffer {
+        // Начальное значение берется из SecureRandom, дальше поток работает без блокировок
+        final SplittableRandom random = new SplittableRandom(ShortUrlGenerator.random.nextLong());
+        final char[] chars = new char[BASE_URL.length() + SHORT_URL_LENGTH];
+
+        CodeBuffer() {
+            BASE_URL.getChars(0, BASE_URL.length(), chars, 0);
+        }
     }
 }
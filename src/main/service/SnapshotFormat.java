@@ -0,0 +1,350 @@
+package service;
+
+import model.Link;
+import model.User;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Двоичный формат снимков links.dat / users.dat.
+ *
+ * Заголовок: magic (4 байта), версия схемы (2), резерв (2), число записей (4).
+ * Ссылка: код и URL как UTF-8 с префиксом длины, UUID владельца двумя long,
+ * лимит и счетчик переходов, время создания и истечения в epoch millis, флаг активности.
+ * Пользователь: UUID двумя long, число ссылок и их коды.
+ *
+ * Версия 2 дополняет заголовок числом слотов (4) и смещением (8) хеш-индекса,
+ * записанного после записей: таблица с открытой адресацией и линейным
+ * пробированием, слот — хеш ключа (4) и смещение записи (8), 0 — пустой слот.
+ * Ключ ссылки — код, ключ пользователя — UUID. Индекс позволяет читать отдельные
+ * записи без загрузки файла ({@link MappedLinkStore}, {@link MappedUserStore}).
+ */
+public class SnapshotFormat {
+    public static final int LINKS_MAGIC = 0x4C4E4B53; // "LNKS"
+    public static final int USERS_MAGIC = 0x55535253; // "USRS"
+    public static final short LINKS_VERSION = 2;
+    public static final short USERS_VERSION = 2;
+
+    static final int HEADER_SIZE = 12;
+    static final int INDEXED_HEADER_SIZE = 24;
+    static final int SLOT_SIZE = 12;
+    private static final int COUNT_OFFSET = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Записывает ссылки в файл вместе с хеш-индексом по коду
+     */
+    public static void writeLinks(Path file, Iterable<Link> links) throws IOException {
+        try (Writer writer = new Writer(file, LINKS_MAGIC, LINKS_VERSION, INDEXED_HEADER_SIZE)) {
+            for (Link link : links) {
+                writer.indexRecord(codeHash(link.getShortUrl()));
+                byte[] shortUrl = link.getShortUrl().getBytes(StandardCharsets.UTF_8);
+                byte[] originalUrl = link.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+
+                ByteBuffer buffer = writer.reserve(2 + shortUrl.length + 4 + originalUrl.length + 16 + 8 + 16 + 1);
+                buffer.putShort((short) shortUrl.length).put(shortUrl);
+                buffer.putInt(originalUrl.length).put(originalUrl);
+                buffer.putLong(link.getUserId().getMostSignificantBits());
+                buffer.putLong(link.getUserId().getLeastSignificantBits());
+                buffer.putInt(link.getClickLimit());
+                buffer.putInt(link.getCurrentClicks());
+                buffer.putLong(toMillis(link.getCreatedAt()));
+                buffer.putLong(link.getExpiresAtMillis());
+                buffer.put((byte) (link.isActive() ? 1 : 0));
+                writer.recordWritten();
+            }
+        }
+    }
+
+    /**
+     * Читает ссылки из файла
+     */
+    public static Map<String, Link> readLinks(Path file) throws IOException {
+        ByteBuffer buffer = readAll(file);
+        int count = readHeader(buffer, LINKS_MAGIC, LINKS_VERSION, file);
+        buffer.position(buffer.getShort(4) >= 2 ? INDEXED_HEADER_SIZE : HEADER_SIZE);
+
+        Map<String, Link> links = new HashMap<>(count * 4 / 3 + 1);
+        try {
+            for (int i = 0; i < count; i++) {
+                Link link = readLink(buffer);
+                links.put(link.getShortUrl(), link);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Файл " + file + " обрезан: прочитано " + links.size() + " из " + count + " ссылок");
+        }
+        return links;
+    }
+
+    /**
+     * Записывает пользователей в файл
+     */
+    public static void writeUsers(Path file, Iterable<User> users) throws IOException {
+        try (Writer writer = new Writer(file, USERS_MAGIC, USERS_VERSION, INDEXED_HEADER_SIZE)) {
+            for (User user : users) {
+                writer.indexRecord(userHash(user.getId()));
+                List<String> shortUrls = new ArrayList<>(user.getShortUrls());
+
+                ByteBuffer buffer = writer.reserve(16 + 4);
+                buffer.putLong(user.getId().getMostSignificantBits());
+                buffer.putLong(user.getId().getLeastSignificantBits());
+                buffer.putInt(shortUrls.size());
+                for (String shortUrl : shortUrls) {
+                    byte[] bytes = shortUrl.getBytes(StandardCharsets.UTF_8);
+                    writer.reserve(2 + bytes.length).putShort((short) bytes.length).put(bytes);
+                }
+                writer.recordWritten();
+            }
+        }
+    }
+
+    /**
+     * Читает пользователей из файла
+     */
+    public static Map<UUID, User> readUsers(Path file) throws IOException {
+        ByteBuffer buffer = readAll(file);
+        int count = readHeader(buffer, USERS_MAGIC, USERS_VERSION, file);
+        buffer.position(buffer.getShort(4) >= 2 ? INDEXED_HEADER_SIZE : HEADER_SIZE);
+
+        Map<UUID, User> users = new HashMap<>(count * 4 / 3 + 1);
+        try {
+            for (int i = 0; i < count; i++) {
+                User user = new User(new UUID(buffer.getLong(), buffer.getLong()));
+                int size = buffer.getInt();
+                List<String> shortUrls = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    shortUrls.add(readString(buffer, Short.toUnsignedInt(buffer.getShort())));
+                }
+                user.setShortUrls(shortUrls);
+                users.put(user.getId(), user);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Файл " + file + " обрезан: прочитано " + users.size() + " из " + count + " пользователей");
+        }
+        return users;
+    }
+
+    /**
+     * Проверяет, записан ли файл в двоичном формате с указанной сигнатурой
+     */
+    public static boolean hasMagic(Path file, int magic) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // дочитываем сигнатуру
+            }
+            return !buffer.hasRemaining() && buffer.getInt(0) == magic;
+        }
+    }
+
+    static Link readLink(ByteBuffer buffer) {
+        String shortUrl = readString(buffer, Short.toUnsignedInt(buffer.getShort()));
+        String originalUrl = readString(buffer, buffer.getInt());
+        UUID userId = new UUID(buffer.getLong(), buffer.getLong());
+        int clickLimit = buffer.getInt();
+        int currentClicks = buffer.getInt();
+        LocalDateTime createdAt = fromMillis(buffer.getLong());
+        long expiresAt = buffer.getLong();
+        boolean active = buffer.get() != 0;
+
+        Link link = new Link(shortUrl, originalUrl, userId, clickLimit, expiresAt);
+        link.setCurrentClicks(currentClicks);
+        link.setCreatedAt(createdAt);
+        link.setActive(active);
+        return link;
+    }
+
+    /**
+     * Хеш кода для индекса (перемешанный String.hashCode)
+     */
+    static int codeHash(String shortUrl) {
+        return mix(shortUrl.hashCode());
+    }
+
+    /**
+     * Хеш UUID пользователя для индекса
+     */
+    static int userHash(UUID userId) {
+        return mix(userId.hashCode());
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Число слотов индекса: степень двойки, заполнение не больше половины
+     */
+    static int slotCount(int count) {
+        int slots = Integer.highestOneBit(Math.max(count, 8) * 2 - 1) << 1;
+        if (slots <= 0 || (long) slots * SLOT_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Слишком много записей для индекса снимка: " + count);
+        }
+        return slots;
+    }
+
+    static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer readAll(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Файл " + file + " слишком велик: " + size + " байт");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // читаем файл целиком
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    static int readHeader(ByteBuffer buffer, int magic, short supportedVersion, Path file) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != magic) {
+            throw new IOException("Файл " + file + " не является снимком ожидаемого формата");
+        }
+
+        short version = buffer.getShort();
+        if (version > supportedVersion) {
+            throw new IOException("Неподдерживаемая версия формата " + version + " в файле " + file);
+        }
+        buffer.getShort(); // резерв
+        return buffer.getInt();
+    }
+
+    /**
+     * Последовательная запись файла снимка через direct-буфер.
+     * Число записей в заголовке проставляется при закрытии, так как коллекция
+     * может изменяться во время записи.
+     */
+    private static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final short version;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long flushed;
+        private int count;
+
+        // Хеши и смещения записей для индекса (версия 2)
+        private int[] hashes;
+        private long[] offsets;
+
+        Writer(Path file, int magic, short version, int headerSize) throws IOException {
+            this.version = version;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(magic).putShort(version).putShort((short) 0).putInt(0);
+            while (buffer.position() < headerSize) {
+                buffer.put((byte) 0);
+            }
+        }
+
+        /**
+         * Запоминает смещение следующей записи для индекса
+         */
+        void indexRecord(int hash) {
+            if (hashes == null) {
+                hashes = new int[1024];
+                offsets = new long[1024];
+            } else if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            hashes[count] = hash;
+            offsets[count] = flushed + buffer.position();
+        }
+
+        /**
+         * Гарантирует, что в буфере есть место под {@code bytes} байт
+         */
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                }
+            }
+            return buffer;
+        }
+
+        void recordWritten() {
+            count++;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Записывает хеш-индекс после записей; слоты раскладываются через отображение файла
+         */
+        private void writeIndex(ByteBuffer header) throws IOException {
+            int slots = slotCount(count);
+            long indexOffset = flushed;
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_WRITE, indexOffset, (long) slots * SLOT_SIZE);
+            int mask = slots - 1;
+            for (int i = 0; i < count; i++) {
+                int slot = hashes[i] & mask;
+                while (index.getLong(slot * SLOT_SIZE + 4) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                index.putInt(slot * SLOT_SIZE, hashes[i]);
+                index.putLong(slot * SLOT_SIZE + 4, offsets[i]);
+            }
+            header.putInt(slots).putLong(indexOffset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+                ByteBuffer header = ByteBuffer.allocate(version >= 2 ? 16 : 4);
+                header.putInt(count);
+                if (version >= 2) {
+                    if (hashes == null) {
+                        hashes = new int[0];
+                        offsets = new long[0];
+                    }
+                    writeIndex(header);
+                }
+                header.flip();
+                channel.write(header, COUNT_OFFSET);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
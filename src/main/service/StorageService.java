@@ -3,108 +3,112 @@ package service;
 import model.Link;
 import model.User;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 /**
- * Сервис для сохранения и загрузки данных на диск
+ * Сервис для сохранения и загрузки данных на диск.
+ *
+ * Снимок состоит из пары файлов links-N.dat / users-N.dat одного поколения N.
+ * Файлы пишутся во временные, сбрасываются на диск (fsync) и переименовываются;
+ * затем так же атомарно записывается файл snapshot.gen с номером поколения.
+ * Пока snapshot.gen не переключен, действующим остается предыдущее поколение,
+ * поэтому сбой во время записи не повреждает и не рассинхронизирует данные.
  */
 public class StorageService {
     private static final String DATA_DIR = "data";
+    // Файлы без номера поколения — раскладка до появления snapshot.gen
     private static final String LINKS_FILE = DATA_DIR + File.separator + "links.dat";
     private static final String USERS_FILE = DATA_DIR + File.separator + "users.dat";
+    private static final String GENERATION_FILE = DATA_DIR + File.separator + "snapshot.gen";
+    private static final int GENERATION_MAGIC = 0x47454E31; // "GEN1"
+    static final String JOURNAL_FILE = DATA_DIR + File.separator + "journal.log";
+    private static final String ID_FILE = DATA_DIR + File.separator + "ids.dat";
+    private static final int ID_MAGIC = 0x49445331; // "IDS1"
 
     /**
-     * Сохраняет ссылки на диск
+     * Отображает снимок ссылок в память для ленивого чтения
+     * @return хранилище или null, если снимка нет или он записан без индекса
      */
-    public static void saveLinks(Map<String, Link> links) {
+    public static MappedLinkStore openMappedLinks() {
+        Path linksFile = currentLinksFile();
+        if (!Files.exists(linksFile)) {
+            return null;
+        }
+
         try {
-            createDataDirectory();
-            
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(LINKS_FILE))) {
-                oos.writeObject(links);
-            }
+            return MappedLinkStore.open(linksFile);
         } catch (IOException e) {
-            System.err.println("Ошибка при сохранении ссылок: " + e.getMessage());
+            throw new IllegalStateException("Не удалось открыть снимок ссылок " + linksFile + ": " + e.getMessage(), e);
         }
     }
 
     /**
-     * Загружает ссылки с диска
+     * Отображает снимок пользователей в память для ленивого чтения
+     * @return хранилище или null, если снимка нет или он записан без индекса
      */
-    @SuppressWarnings("unchecked")
-    public static Map<String, Link> loadLinks() {
-        Map<String, Link> links = new HashMap<>();
-        
-        if (!Files.exists(Paths.get(LINKS_FILE))) {
-            return links;
+    public static MappedUserStore openMappedUsers() {
+        Path usersFile = currentUsersFile();
+        if (!Files.exists(usersFile)) {
+            return null;
         }
 
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(LINKS_FILE))) {
-            Object obj = ois.readObject();
-            if (obj instanceof Map) {
-                links = (Map<String, Link>) obj;
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Ошибка при загрузке ссылок: " + e.getMessage());
-            links = new HashMap<>();
+        try {
+            return MappedUserStore.open(usersFile);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось открыть снимок пользователей " + usersFile + ": " + e.getMessage(), e);
         }
-
-        return links;
     }
 
     /**
-     * Сохраняет пользователей на диск
+     * Загружает ссылки с диска
+     * @throws IllegalStateException если снимок существует, но не читается
      */
-    public static void saveUsers(Map<UUID, User> users) {
+    public static Map<String, Link> loadLinks() {
+        Path linksFile = currentLinksFile();
+        if (!Files.exists(linksFile)) {
+            return new HashMap<>();
+        }
+
         try {
-            createDataDirectory();
-            
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(USERS_FILE))) {
-                oos.writeObject(users);
-            }
+            return SnapshotFormat.readLinks(linksFile);
         } catch (IOException e) {
-            System.err.println("Ошибка при сохранении пользователей: " + e.getMessage());
+            throw new IllegalStateException("Не удалось загрузить ссылки из " + linksFile + ": " + e.getMessage(), e);
         }
     }
 
     /**
      * Загружает пользователей с диска
+     * @throws IllegalStateException если снимок существует, но не читается
      */
-    @SuppressWarnings("unchecked")
     public static Map<UUID, User> loadUsers() {
-        Map<UUID, User> users = new HashMap<>();
-        
-        if (!Files.exists(Paths.get(USERS_FILE))) {
-            return users;
+        Path usersFile = currentUsersFile();
+        if (!Files.exists(usersFile)) {
+            return new HashMap<>();
         }
 
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(USERS_FILE))) {
-            Object obj = ois.readObject();
-            if (obj instanceof Map) {
-                users = (Map<UUID, User>) obj;
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Ошибка при загрузке пользователей: " + e.getMessage());
-            users = new HashMap<>();
+        try {
+            return SnapshotFormat.readUsers(usersFile);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось загрузить пользователей из " + usersFile + ": " + e.getMessage(), e);
         }
-
-        return users;
     }
 
     /**
      * Создает директорию для данных, если её нет
      */
-    private static void createDataDirectory() {
+    static void createDataDirectory() {
         try {
             Path dataPath = Paths.get(DATA_DIR);
             if (!Files.exists(dataPath)) {
@@ -117,21 +121,192 @@ public class StorageService {
 
     /**
      * Сохраняет все данные (ссылки и пользователей)
+     * @return true, если новое поколение снимка зафиксировано
      */
-    public static void saveAll(Map<String, Link> links, Map<UUID, User> users) {
-        saveLinks(links);
-        saveUsers(users);
+    public static boolean saveAll(Map<String, Link> links, Map<UUID, User> users) {
+        return saveAll(links.values(), users.values());
+    }
+
+    /**
+     * Сохраняет все данные (ссылки и пользователей) как новое поколение снимка
+     * @return true, если новое поколение снимка зафиксировано
+     */
+    public static synchronized boolean saveAll(Iterable<Link> links, Iterable<User> users) {
+        createDataDirectory();
+        long generation = readGeneration() + 1;
+
+        try {
+            writeDurably(linksFile(generation), file -> SnapshotFormat.writeLinks(file, links));
+            writeDurably(usersFile(generation), file -> SnapshotFormat.writeUsers(file, users));
+            writeDurably(Paths.get(GENERATION_FILE), file -> {
+                ByteBuffer buffer = ByteBuffer.allocate(12).putInt(GENERATION_MAGIC).putLong(generation);
+                Files.write(file, buffer.array());
+            });
+        } catch (IOException e) {
+            System.err.println("Ошибка при сохранении снимка (поколение " + generation + "): " + e.getMessage());
+            return false;
+        }
+
+        deleteOldGenerations(generation);
+        return true;
     }
 
     /**
      * Удаляет все сохраненные данные
      */
-    public static void clearAll() {
+    public static synchronized void clearAll() {
         try {
-            Files.deleteIfExists(Paths.get(LINKS_FILE));
-            Files.deleteIfExists(Paths.get(USERS_FILE));
+            deleteOldGenerations(Long.MAX_VALUE);
+            Files.deleteIfExists(Paths.get(GENERATION_FILE));
+            Files.deleteIfExists(Paths.get(JOURNAL_FILE));
+            Files.deleteIfExists(Paths.get(JOURNAL_FILE + ".old"));
+            Files.deleteIfExists(Paths.get(ID_FILE));
         } catch (IOException e) {
             System.err.println("Ошибка при удалении данных: " + e.getMessage());
         }
     }
+
+    /**
+     * @return граница выданных идентификаторов коротких ссылок или 0, если их ещё не выдавали
+     * @throws IllegalStateException если файл поврежден
+     */
+    private static long readIdHighWater() {
+        Path file = Paths.get(ID_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() != 12 || buffer.getInt() != ID_MAGIC) {
+                throw new IllegalStateException("Файл " + file + " поврежден");
+            }
+            return buffer.getLong();
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Резервирует диапазон идентификаторов коротких ссылок: новая граница
+     * надежно сохраняется до возврата, поэтому после сбоя выдача продолжится
+     * за ней, и уже выданные идентификаторы не повторятся
+     * @param count размер диапазона
+     * @return первый идентификатор диапазона
+     */
+    static synchronized long reserveIds(long count) throws IOException {
+        long start = readIdHighWater();
+        createDataDirectory();
+        writeDurably(Paths.get(ID_FILE), file -> {
+            ByteBuffer buffer = ByteBuffer.allocate(12).putInt(ID_MAGIC).putLong(start + count);
+            Files.write(file, buffer.array());
+        });
+        return start;
+    }
+
+    /**
+     * Сбрасывает на диск записи о переименовании и удалении файлов в директории данных.
+     * На платформах, где директорию нельзя открыть (Windows), ничего не делает.
+     */
+    static void forceDataDirectory() {
+        try (FileChannel channel = FileChannel.open(Paths.get(DATA_DIR), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Директорию нельзя синхронизировать на этой платформе
+        }
+    }
+
+    /**
+     * Содержимое файла, записываемого через {@link #writeDurably}
+     */
+    private interface FileContent {
+        void writeTo(Path file) throws IOException;
+    }
+
+    /**
+     * Пишет файл во временный, сбрасывает его на диск и атомарно переименовывает
+     */
+    private static void writeDurably(Path target, FileContent content) throws IOException {
+        Path tempFile = Paths.get(target + ".tmp");
+        content.writeTo(tempFile);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDataDirectory();
+    }
+
+    /**
+     * @return номер действующего поколения снимка или 0, если снимков с поколением ещё нет
+     */
+    private static long readGeneration() {
+        Path file = Paths.get(GENERATION_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() != 12 || buffer.getInt() != GENERATION_MAGIC) {
+                throw new IllegalStateException("Файл " + file + " поврежден");
+            }
+            return buffer.getLong();
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Path currentLinksFile() {
+        long generation = readGeneration();
+        if (generation == 0) {
+            // Данные в старой раскладке; при необходимости переводим их в двоичный формат
+            LegacyDataMigrator.migrateIfNeeded(LINKS_FILE, USERS_FILE);
+            return Paths.get(LINKS_FILE);
+        }
+        return linksFile(generation);
+    }
+
+    private static Path currentUsersFile() {
+        long generation = readGeneration();
+        if (generation == 0) {
+            LegacyDataMigrator.migrateIfNeeded(LINKS_FILE, USERS_FILE);
+            return Paths.get(USERS_FILE);
+        }
+        return usersFile(generation);
+    }
+
+    private static Path linksFile(long generation) {
+        return Paths.get(DATA_DIR, "links-" + generation + ".dat");
+    }
+
+    private static Path usersFile(long generation) {
+        return Paths.get(DATA_DIR, "users-" + generation + ".dat");
+    }
+
+    /**
+     * Удаляет файлы поколений старше указанного и файлы в старой раскладке.
+     * Отображенный в память снимок на Windows удалить нельзя — он будет удален в следующий раз.
+     */
+    private static void deleteOldGenerations(long currentGeneration) {
+        Path dataPath = Paths.get(DATA_DIR);
+        if (!Files.isDirectory(dataPath)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dataPath, "{links,users}*.dat{,.tmp}")) {
+            for (Path file : files) {
+                String number = file.getFileName().toString().replaceAll("^(links|users)-?|\\.dat(\\.tmp)?$", "");
+                boolean stale = !number.matches("\\d+") || Long.parseLong(number) < currentGeneration;
+                if (stale) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Файл еще используется
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка при удалении старых снимков: " + e.getMessage());
+        }
+    }
 }
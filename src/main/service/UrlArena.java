@@ -0,0 +1,189 @@
+package service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Область байтов для исходных URL одного сегмента компактного хранилища.
+ *
+ * URL хранится один раз в UTF-8 с четырехбайтовым префиксом длины, ссылки
+ * ссылаются на него числом (номер блока и смещение). Одинаковые URL сегмента
+ * интернируются: повторное добавление возвращает уже записанную копию.
+ * Блоки и таблица интернирования выделяются в куче или, для хранилища вне
+ * кучи, прямыми буферами: в куче тогда остаются только сами буферы.
+ *
+ * Область только растет; место удаленных ссылок возвращает {@link #copyOf},
+ * которым сегмент пересобирает область из живых ссылок. Синхронизации нет:
+ * запись идет под блокировкой записи сегмента, чтение — под блокировкой чтения.
+ */
+final class UrlArena {
+    private static final int CHUNK_SHIFT = 20;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int FIRST_CHUNK_SIZE = 4096;
+    // Слот таблицы интернирования: хеш URL и ссылка + 1 (0 — пустой слот)
+    private static final int SLOT_SIZE = 12;
+    private static final int INITIAL_SLOTS = 64;
+
+    private final boolean direct;
+    // Блоки байтов растут удвоением до CHUNK_SIZE; URL длиннее блока получает отдельный блок
+    private ByteBuffer[] chunks = new ByteBuffer[4];
+    private int chunkCount;
+    private int position;
+    private ByteBuffer internTable;
+    private int internMask;
+    private int interned;
+    private long bytesUsed;
+
+    /**
+     * @param direct выделять блоки и таблицу вне кучи
+     */
+    UrlArena(boolean direct) {
+        this.direct = direct;
+        this.internTable = allocate(INITIAL_SLOTS * SLOT_SIZE);
+        this.internMask = INITIAL_SLOTS - 1;
+    }
+
+    /**
+     * Записывает URL, если такого еще нет
+     * @return ссылка на URL в области
+     */
+    long intern(String url) {
+        return intern(url.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Читает URL по ссылке, полученной из {@link #intern}
+     */
+    String get(long ref) {
+        ByteBuffer chunk = chunks[(int) (ref >>> CHUNK_SHIFT)];
+        int offset = (int) (ref & (CHUNK_SIZE - 1));
+        int length = chunk.getInt(offset);
+        if (chunk.hasArray()) {
+            return new String(chunk.array(), chunk.arrayOffset() + offset + 4, length, StandardCharsets.UTF_8);
+        }
+        return new String(bytes(chunk, offset, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Переносит URL из другой области без разбора UTF-8
+     * @return ссылка на URL в этой области
+     */
+    long copyOf(UrlArena source, long ref) {
+        ByteBuffer chunk = source.chunks[(int) (ref >>> CHUNK_SHIFT)];
+        int offset = (int) (ref & (CHUNK_SIZE - 1));
+        return intern(bytes(chunk, offset, chunk.getInt(offset)));
+    }
+
+    /**
+     * @return число байтов, занятых URL
+     */
+    long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    private long intern(byte[] bytes) {
+        int hash = Arrays.hashCode(bytes);
+        int slot = mix(hash) & internMask;
+        long stored;
+        while ((stored = internTable.getLong(slot * SLOT_SIZE + 4)) != 0) {
+            long ref = stored - 1;
+            if (internTable.getInt(slot * SLOT_SIZE) == hash && matches(ref, bytes)) {
+                return ref;
+            }
+            slot = (slot + 1) & internMask;
+        }
+
+        long ref = append(bytes);
+        internTable.putInt(slot * SLOT_SIZE, hash);
+        internTable.putLong(slot * SLOT_SIZE + 4, ref + 1);
+        if (++interned * 4 > (internMask + 1) * 3) {
+            growInternTable();
+        }
+        return ref;
+    }
+
+    private long append(byte[] bytes) {
+        int length = bytes.length + 4;
+        ByteBuffer chunk = chunkCount > 0 ? chunks[chunkCount - 1] : null;
+        int offset;
+        if (length > CHUNK_SIZE) {
+            chunk = allocate(length);
+            addChunk(chunk);
+            offset = 0;
+            // Следующий URL начнет новый обычный блок
+            position = length;
+        } else {
+            if (chunk == null || position + length > chunk.capacity()) {
+                int size = chunk == null ? FIRST_CHUNK_SIZE : Math.min(CHUNK_SIZE, chunk.capacity() * 2);
+                chunk = allocate(Math.max(size, length));
+                addChunk(chunk);
+                position = 0;
+            }
+            offset = position;
+            position += length;
+        }
+
+        chunk.putInt(offset, bytes.length);
+        chunk.duplicate().position(offset + 4).put(bytes);
+        bytesUsed += length;
+        return ((long) (chunkCount - 1) << CHUNK_SHIFT) | offset;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private void addChunk(ByteBuffer chunk) {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        chunks[chunkCount++] = chunk;
+    }
+
+    private boolean matches(long ref, byte[] bytes) {
+        ByteBuffer chunk = chunks[(int) (ref >>> CHUNK_SHIFT)];
+        int offset = (int) (ref & (CHUNK_SIZE - 1));
+        if (chunk.getInt(offset) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(offset + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growInternTable() {
+        ByteBuffer old = internTable;
+        int oldSlots = internMask + 1;
+        if ((long) oldSlots * 2 * SLOT_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Слишком много URL в сегменте: " + interned);
+        }
+        internTable = allocate(oldSlots * 2 * SLOT_SIZE);
+        internMask = oldSlots * 2 - 1;
+        for (int i = 0; i < oldSlots; i++) {
+            long stored = old.getLong(i * SLOT_SIZE + 4);
+            if (stored != 0) {
+                int hash = old.getInt(i * SLOT_SIZE);
+                int slot = mix(hash) & internMask;
+                while (internTable.getLong(slot * SLOT_SIZE + 4) != 0) {
+                    slot = (slot + 1) & internMask;
+                }
+                internTable.putInt(slot * SLOT_SIZE, hash);
+                internTable.putLong(slot * SLOT_SIZE + 4, stored);
+            }
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer chunk, int offset, int length) {
+        byte[] bytes = new byte[length];
+        chunk.duplicate().position(offset + 4).get(bytes);
+        return bytes;
+    }
+
+    private static int mix(int hash) {
+        return hash * 0x9E3779B9 ^ (hash >>> 16);
+    }
+}
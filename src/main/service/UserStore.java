@@ -0,0 +1,44 @@
+package service;
+
+import model.User;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Хранилище пользователей сервиса: userId -> User.
+ *
+ * Подключается через {@link LinkServiceConfig#setUserStore}; по умолчанию
+ * используется {@link HeapUserStore}. Все методы могут вызываться из
+ * нескольких потоков одновременно.
+ */
+public interface UserStore {
+
+    /**
+     * @return пользователь или null
+     */
+    User get(UUID userId);
+
+    /**
+     * Возвращает пользователя, атомарно создавая его при первом обращении
+     */
+    User getOrCreate(UUID userId);
+
+    /**
+     * Сохраняет пользователя, заменяя существующего с тем же id
+     */
+    void put(User user);
+
+    /**
+     * Сохраняет пользователя, если id свободен (пользователь, прочитанный из снимка)
+     * @return уже сохраненный пользователь с этим id или null, если пользователь добавлен
+     */
+    User putIfAbsent(User user);
+
+    int size();
+
+    /**
+     * Все пользователи (для снимка на диск)
+     */
+    Collection<User> snapshot();
+}
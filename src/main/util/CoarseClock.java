@@ -0,0 +1,85 @@
+package util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Часы с кешированным временем.
+ *
+ * Фоновый поток раз в заданный интервал обновляет текущее время, а {@link #millis()}
+ * только читает сохраненное значение — без системного вызова и создания объектов.
+ * Подходит для проверок срока действия, где точность в несколько миллисекунд не важна.
+ */
+public class CoarseClock extends Clock {
+    private final AtomicLong now;
+    private final ZoneId zone;
+    private final long resolutionMillis;
+    private volatile Thread ticker;
+
+    /**
+     * @param resolutionMillis интервал обновления времени
+     */
+    public CoarseClock(long resolutionMillis) {
+        this(new AtomicLong(System.currentTimeMillis()), ZoneId.systemDefault(), resolutionMillis);
+    }
+
+    private CoarseClock(AtomicLong now, ZoneId zone, long resolutionMillis) {
+        this.now = now;
+        this.zone = zone;
+        this.resolutionMillis = resolutionMillis;
+    }
+
+    /**
+     * Запускает поток обновления времени
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                now.set(System.currentTimeMillis());
+                try {
+                    Thread.sleep(resolutionMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "coarse-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Останавливает поток обновления времени
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker = null;
+        }
+    }
+
+    @Override
+    public long millis() {
+        return now.get();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        // Часы в другом поясе используют то же кешированное время
+        return new CoarseClock(now, zone, resolutionMillis);
+    }
+}
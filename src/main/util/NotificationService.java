@@ -1,6 +1,7 @@
 package util;
 
 import model.Link;
+import model.ResolveResult;
 
 /**
  * Сервис уведомлений пользователя
@@ -37,6 +38,36 @@ public class NotificationService {
         System.out.println("═══════════════════════════════════════");
     }
 
+    /**
+     * Уведомляет пользователя о недоступности ссылки по результату перехода
+     * @param result результат перехода
+     * @param reason причина недоступности
+     */
+    public static void notifyLinkUnavailable(ResolveResult result, String reason) {
+        if (result.getStatus() == ResolveResult.Status.NOT_FOUND) {
+            System.out.println("⚠️ Уведомление: Ссылка не найдена");
+            return;
+        }
+
+        System.out.println("═══════════════════════════════════════");
+        System.out.println("⚠️ УВЕДОМЛЕНИЕ");
+        System.out.println("═══════════════════════════════════════");
+        System.out.println("Короткая ссылка: " + result.getShortUrl());
+        System.out.println("Оригинальный URL: " + result.getOriginalUrl());
+        System.out.println("Причина: " + reason);
+        
+        if (result.getRemainingClicks() == 0) {
+            System.out.println("Переходов использовано: " + result.getCurrentClicks() + " / " + result.getClickLimit());
+        }
+        
+        if (result.getStatus() == ResolveResult.Status.EXPIRED) {
+            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+            System.out.println("Срок действия истек: " + result.getExpiresAt().format(formatter));
+        }
+        
+        System.out.println("═══════════════════════════════════════");
+    }
+
     /**
      * Уведомляет о создании ссылки
      * @param shortUrl короткая ссылка
@@ -0,0 +1,10 @@
+import service.CompactLinkStore;
+import service.LinkStore;
+
+public class CompactLinkStoreTest extends LinkStoreConformanceTest {
+
+    @Override
+    protected LinkStore createLinkStore() {
+        return new CompactLinkStore(false);
+    }
+}
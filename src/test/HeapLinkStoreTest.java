@@ -0,0 +1,10 @@
+import service.HeapLinkStore;
+import service.LinkStore;
+
+public class HeapLinkStoreTest extends LinkStoreConformanceTest {
+
+    @Override
+    protected LinkStore createLinkStore() {
+        return new HeapLinkStore();
+    }
+}
@@ -0,0 +1,433 @@
+import model.Link;
+import model.User;
+import service.HeapUserStore;
+import service.LinkService;
+import service.LinkServiceConfig;
+import service.LinkStore;
+import service.StorageService;
+import service.UserStore;
+import org.junit.Test;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+/**
+ * Общие тесты хранилищ ссылок и пользователей.
+ * Каждое хранилище подключается наследником, создающим его экземпляр.
+ */
+public abstract class LinkStoreConformanceTest {
+
+    protected abstract LinkStore createLinkStore();
+
+    protected UserStore createUserStore() {
+        return new HeapUserStore();
+    }
+
+    /**
+     * Дожидается задач и пробрасывает ошибку проверки из потока пула:
+     * иначе она только остановила бы свой поток, а тест прошел бы
+     */
+    private static void awaitAll(ExecutorService executor, List<Future<?>> tasks) throws Exception {
+        executor.shutdown();
+        try {
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AssertionError) {
+                throw (AssertionError) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Link link(String shortUrl, UUID userId, int clickLimit, long expiresAt) {
+        return new Link(shortUrl, "https://www.example.com/" + shortUrl.hashCode(), userId, clickLimit, expiresAt);
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        LinkStore store = createLinkStore();
+        UUID userId = UUID.randomUUID();
+        long expiresAt = System.currentTimeMillis() + 3_600_000L;
+
+        assertNull(store.get("clck.ru/ab1234"));
+        assertNull(store.putIfAbsent("clck.ru/ab1234", link("clck.ru/ab1234", userId, 5, expiresAt)));
+        assertNotNull("Занятый код не перезаписывается",
+                store.putIfAbsent("clck.ru/ab1234", link("clck.ru/ab1234", UUID.randomUUID(), 7, expiresAt)));
+
+        Link stored = store.get("clck.ru/ab1234");
+        assertEquals("clck.ru/ab1234", stored.getShortUrl());
+        assertEquals("https://www.example.com/" + "clck.ru/ab1234".hashCode(), stored.getOriginalUrl());
+        assertEquals(userId, stored.getUserId());
+        assertEquals(5, stored.getClickLimit());
+        assertEquals(expiresAt, stored.getExpiresAtMillis());
+        assertTrue(stored.isActive());
+        assertTrue(store.containsKey("clck.ru/ab1234"));
+        assertEquals(1, store.size());
+
+        Link removed = store.remove("clck.ru/ab1234");
+        assertEquals(userId, removed.getUserId());
+        assertNull(store.remove("clck.ru/ab1234"));
+        assertFalse(store.containsKey("clck.ru/ab1234"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testCreatedAtAfter2038() {
+        LinkStore store = createLinkStore();
+        LocalDateTime createdAt = LocalDateTime.of(2050, 6, 1, 12, 30, 15);
+        Link link = link("clck.ru/y2038", UUID.randomUUID(), 5, System.currentTimeMillis() + 3_600_000L);
+        link.setCreatedAt(createdAt);
+        store.putIfAbsent("clck.ru/y2038", link);
+
+        assertEquals("Время создания после 2038 года не переполняется",
+                createdAt, store.get("clck.ru/y2038").getCreatedAt());
+    }
+
+    @Test
+    public void testArbitraryCodes() {
+        LinkStore store = createLinkStore();
+        UUID userId = UUID.randomUUID();
+        long expiresAt = System.currentTimeMillis() + 3_600_000L;
+        String[] codes = {"clck.ru/A", "clck.ru/AA", "clck.ru/AAAAAAAAAAAA", "clck.ru/код-1", "other.host/x"};
+
+        for (String code : codes) {
+            assertNull(store.putIfAbsent(code, link(code, userId, 1, expiresAt)));
+        }
+        for (String code : codes) {
+            assertEquals(code, store.get(code).getShortUrl());
+        }
+        assertEquals(codes.length, store.size());
+
+        Set<String> scanned = new HashSet<>();
+        for (Link link : store.snapshot()) {
+            assertTrue("Каждая ссылка встречается один раз", scanned.add(link.getShortUrl()));
+        }
+        assertEquals(new HashSet<>(List.of(codes)), scanned);
+    }
+
+    @Test
+    public void testUpdateIsVisible() {
+        LinkStore store = createLinkStore();
+        long expiresAt = System.currentTimeMillis() + 3_600_000L;
+        store.put("clck.ru/up0001", link("clck.ru/up0001", UUID.randomUUID(), 5, expiresAt));
+
+        Link link = store.get("clck.ru/up0001");
+        link.setClickLimit(20);
+        link.setCurrentClicks(3);
+        link.setExpiresAtMillis(expiresAt + 1000);
+        store.update(link);
+
+        Link reread = store.get("clck.ru/up0001");
+        assertEquals(20, reread.getClickLimit());
+        assertEquals(3, reread.getCurrentClicks());
+        assertEquals(expiresAt + 1000, reread.getExpiresAtMillis());
+
+        // put заменяет ссылку целиком
+        store.put("clck.ru/up0001", link("clck.ru/up0001", UUID.randomUUID(), 9, expiresAt));
+        assertEquals(9, store.get("clck.ru/up0001").getClickLimit());
+        assertEquals(0, store.get("clck.ru/up0001").getCurrentClicks());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testClickLimitUnderContention() throws Exception {
+        LinkStore store = createLinkStore();
+        store.put("clck.ru/hot001", link("clck.ru/hot001", UUID.randomUUID(), 1000, System.currentTimeMillis() + 3_600_000L));
+
+        AtomicInteger reserved = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(executor.submit(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if (j % 2 == 0) {
+                        Link link = store.get("clck.ru/hot001");
+                        int clicks = store.tryReserveClick(link);
+                        if (clicks > 0) {
+                            assertEquals(clicks, link.getCurrentClicks());
+                            reserved.incrementAndGet();
+                        }
+                    } else if (store.tryReserveClick("clck.ru/hot001") > 0) {
+                        // Резервирование по коду делит тот же лимит
+                        reserved.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        awaitAll(executor, tasks);
+
+        assertEquals("Успешных переходов ровно столько, каков лимит", 1000, reserved.get());
+        assertEquals(1000, store.get("clck.ru/hot001").getCurrentClicks());
+
+        Link link = store.get("clck.ru/hot001");
+        store.remove("clck.ru/hot001");
+        assertEquals("По удаленной ссылке переход не учитывается", 0, store.tryReserveClick(link));
+        assertEquals(0, store.tryReserveClick("clck.ru/hot001"));
+    }
+
+    @Test
+    public void testConcurrentInsertAndRemove() throws Exception {
+        LinkStore store = createLinkStore();
+        long expiresAt = System.currentTimeMillis() + 3_600_000L;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    String code = "clck.ru/" + thread + "c" + i;
+                    assertNull(store.putIfAbsent(code, link(code, UUID.randomUUID(), 1, expiresAt)));
+                    if (i % 2 == 0) {
+                        assertNotNull(store.remove(code));
+                    }
+                }
+            }));
+        }
+        awaitAll(executor, tasks);
+
+        assertEquals(4000, store.size());
+        for (int t = 0; t < 4; t++) {
+            for (int i = 0; i < 2000; i++) {
+                assertEquals(i % 2 != 0, store.containsKey("clck.ru/" + t + "c" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testCompactKeepsLiveLinks() {
+        LinkStore store = createLinkStore();
+        UUID userId = UUID.randomUUID();
+        long expiresAt = System.currentTimeMillis() + 3_600_000L;
+        for (int i = 0; i < 1000; i++) {
+            String code = "clck.ru/cp" + i;
+            store.put(code, link(code, userId, 1, expiresAt));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            store.remove("clck.ru/cp" + i);
+        }
+
+        store.compact();
+        assertEquals(500, store.size());
+        for (int i = 0; i < 1000; i++) {
+            String code = "clck.ru/cp" + i;
+            Link link = store.get(code);
+            if (i % 2 == 0) {
+                assertNull(link);
+            } else {
+                assertEquals("https://www.example.com/" + code.hashCode(), link.getOriginalUrl());
+            }
+        }
+        // Одинаковый URL после пересборки снова интернируется
+        store.put("clck.ru/cp0", link("clck.ru/cp1", userId, 1, expiresAt));
+        assertEquals(store.get("clck.ru/cp1").getOriginalUrl(), store.get("clck.ru/cp0").getOriginalUrl());
+    }
+
+    @Test
+    public void testScanByOwnerAndExpiry() {
+        LinkStore store = createLinkStore();
+        UUID owner = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 20; i++) {
+            String code = "clck.ru/sc" + i;
+            store.put(code, link(code, i % 4 == 0 ? owner : other, 1, now + i * 1000L));
+        }
+        // Код другого вида хранилища копий держат отдельно
+        store.put("custom/owned-link", link("custom/owned-link", owner, 1, now));
+
+        List<String> owned = new ArrayList<>();
+        store.scanByOwner(owner, link -> owned.add(link.getShortUrl()));
+        assertEquals(6, owned.size());
+        assertTrue(owned.contains("clck.ru/sc4"));
+        assertTrue(owned.contains("custom/owned-link"));
+
+        List<Long> expiring = new ArrayList<>();
+        store.scanByExpiry(now + 4500, link -> expiring.add(link.getExpiresAtMillis()));
+        assertEquals(6, expiring.size());
+        for (long expiresAt : expiring) {
+            assertTrue(expiresAt <= now + 4500);
+        }
+    }
+
+    /**
+     * Хранилище, которое ненадолго задерживает поток после каждого изменения
+     */
+    private static final class SlowUpdateStore implements LinkStore {
+        private final LinkStore store;
+
+        SlowUpdateStore(LinkStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public boolean update(Link link) {
+            boolean updated = store.update(link);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return updated;
+        }
+
+        @Override
+        public Link get(String shortUrl) {
+            return store.get(shortUrl);
+        }
+
+        @Override
+        public Link putIfAbsent(String shortUrl, Link link) {
+            return store.putIfAbsent(shortUrl, link);
+        }
+
+        @Override
+        public void put(String shortUrl, Link link) {
+            store.put(shortUrl, link);
+        }
+
+        @Override
+        public Link remove(String shortUrl) {
+            return store.remove(shortUrl);
+        }
+
+        @Override
+        public void remove(String shortUrl, Link link) {
+            store.remove(shortUrl, link);
+        }
+
+        @Override
+        public boolean containsKey(String shortUrl) {
+            return store.containsKey(shortUrl);
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        @Override
+        public Iterable<Link> snapshot() {
+            return store.snapshot();
+        }
+
+        @Override
+        public int tryReserveClick(Link link) {
+            return store.tryReserveClick(link);
+        }
+
+        @Override
+        public int tryReserveClick(String shortUrl) {
+            return store.tryReserveClick(shortUrl);
+        }
+
+        @Override
+        public boolean removeIfUnchanged(String shortUrl, Link expected) {
+            return store.removeIfUnchanged(shortUrl, expected);
+        }
+
+        @Override
+        public boolean storesObjects() {
+            return store.storesObjects();
+        }
+
+        @Override
+        public void compact() {
+            store.compact();
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdatesMatchJournal() throws Exception {
+        StorageService.clearAll();
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        // Пауза после записи в хранилище расширяет окно до записи в журнал
+        config.setLinkStore(new SlowUpdateStore(createLinkStore()));
+        LinkService service = new LinkService(config);
+        UUID owner = UUID.randomUUID();
+        String shortUrl = service.createShortLink("https://www.example.com/update", owner, 1, 24);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier round = new CyclicBarrier(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            tasks.add(executor.submit(() -> {
+                // Одни потоки меняют лимит, другие — срок одной и той же ссылки; каждый
+                // раунд потоки начинают одновременно
+                for (int i = 0; i < 20; i++) {
+                    round.await(10, TimeUnit.SECONDS);
+                    if (thread % 2 == 0) {
+                        assertTrue(service.updateLink(shortUrl, owner, thread * 1000 + i + 2, null));
+                    } else {
+                        assertTrue(service.updateLink(shortUrl, owner, null, 100 + thread * 10 + i % 2 * 5));
+                    }
+                }
+                return null;
+            }));
+        }
+        awaitAll(executor, tasks);
+        Link expected = service.getLinkInfo(shortUrl);
+        service.flush();
+
+        // Журнал должен воспроизвести то же состояние, что осталось в памяти
+        LinkServiceConfig restartedConfig = LinkServiceConfig.fromSystemProperties();
+        restartedConfig.setLinkStore(createLinkStore());
+        LinkService restarted = new LinkService(restartedConfig);
+        Link replayed = restarted.getLinkInfo(shortUrl);
+        assertEquals(expected.getClickLimit(), replayed.getClickLimit());
+        assertEquals(expected.getExpiresAtMillis(), replayed.getExpiresAtMillis());
+        restarted.shutdown();
+        service.shutdown();
+        StorageService.clearAll();
+    }
+
+    @Test
+    public void testUserStore() throws Exception {
+        UserStore users = createUserStore();
+        UUID userId = UUID.randomUUID();
+        assertNull(users.get(userId));
+
+        List<User> created = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(executor.submit(() -> {
+                User user = users.getOrCreate(userId);
+                synchronized (created) {
+                    created.add(user);
+                }
+            }));
+        }
+        awaitAll(executor, tasks);
+        assertEquals(4, created.size());
+        for (User user : created) {
+            assertSame("Пользователь создается один раз", created.get(0), user);
+        }
+
+        users.put(new User(UUID.randomUUID()));
+        assertEquals(2, users.size());
+        assertEquals(2, users.snapshot().size());
+
+        // Пользователь из снимка не заменяет уже загруженного
+        assertSame(created.get(0), users.putIfAbsent(new User(userId)));
+        User fromSnapshot = new User(UUID.randomUUID());
+        assertNull(users.putIfAbsent(fromSnapshot));
+        assertSame(fromSnapshot, users.get(fromSnapshot.getId()));
+    }
+}
@@ -1,9 +1,58 @@
+import load.LatencyHistogram;
 import model.Link;
+import model.LinkPage;
+import model.ResolveResult;
+import model.User;
+import model.UserLinkIndex;
+import server.HttpRedirectServer;
+import server.NioRedirectServer;
+import server.ServerConfig;
+import service.CodeFilter;
+import service.HotLinkCache;
+import service.JournalService;
 import service.LinkService;
+import service.LinkServiceConfig;
+import service.ServiceMetrics;
 import service.ShortUrlGenerator;
+import service.SnapshotFormat;
+import service.StorageService;
 import org.junit.Test;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import static org.junit.Assert.*;
 
 /**
@@ -83,6 +132,356 @@ public class UrlShortenerTest {
         assertNull("Просроченная ссылка не должна быть доступна", url);
     }
 
+    @Test
+    public void testExpiredLinkRemovedByCleanup() throws Exception {
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setExpirationPrecisionMillis(50);
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        
+        String expiring = service.createShortLink("https://www.example.com", userId, 10, 0);
+        String alive = service.createShortLink("https://www.example.org", userId, 10, 24);
+        Thread.sleep(300);
+        
+        assertNull("Просроченная ссылка должна быть удалена", service.getLinkInfo(expiring));
+        assertNotNull("Действующая ссылка должна остаться", service.getLinkInfo(alive));
+        service.shutdown();
+    }
+
+    @Test
+    public void testExpiredLinkEvictedOnRead() {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setExpirationPrecisionMillis(TimeUnit.HOURS.toMillis(1));
+        config.setClock(manualClock(now));
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        
+        String shortUrl = service.createShortLink("https://www.example.com", userId, 10, 1);
+        assertNotNull("Ссылка должна быть доступна до истечения", service.getOriginalUrl(shortUrl));
+        
+        now.addAndGet(TimeUnit.HOURS.toMillis(2));
+        assertEquals("Срок действия ссылки истек", service.checkLinkStatus(shortUrl));
+        assertNull("Просроченная ссылка не должна быть доступна", service.getOriginalUrl(shortUrl));
+        assertNull("Просроченная ссылка должна быть удалена при чтении", service.getLinkInfo(shortUrl));
+        service.shutdown();
+    }
+
+    @Test
+    public void testExpiredSnapshotLinksSweptWithoutReads() throws Exception {
+        StorageService.clearAll();
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setExpirationPrecisionMillis(50);
+        config.setClock(manualClock(now));
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        for (int i = 0; i < 5; i++) {
+            service.createShortLink("https://www.example.com/sweep" + i, userId, 10, 1);
+        }
+        String alive = service.createShortLink("https://www.example.com/alive", userId, 10, 24);
+        service.shutdown();
+
+        // Ссылки остались только в отображенном снимке и в индекс сроков не попали
+        service = new LinkService(config);
+        assertEquals(0, service.getMetrics().getLinkCount());
+        now.addAndGet(TimeUnit.HOURS.toMillis(2));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.getUserLinkCount(userId) > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals("Просроченные ссылки из снимка удаляются без обращений к ним",
+                1, service.getUserLinkCount(userId));
+        assertNotNull(service.getLinkInfo(alive));
+        service.shutdown();
+    }
+
+    private static Clock manualClock(AtomicLong now) {
+        return new Clock() {
+            @Override
+            public long millis() {
+                return now.get();
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now.get());
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return ZoneId.systemDefault();
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+        };
+    }
+
+    @Test
+    public void testResolve() {
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        String shortUrl = service.createShortLink("https://www.example.com", userId, 2, 24);
+        
+        ResolveResult first = service.resolve(shortUrl);
+        assertTrue("Первый переход должен быть успешным", first.isSuccess());
+        assertEquals("https://www.example.com", first.getOriginalUrl());
+        assertEquals("Должен остаться один переход", 1, first.getRemainingClicks());
+        
+        assertEquals(0, service.resolve(shortUrl).getRemainingClicks());
+        
+        ResolveResult exhausted = service.resolve(shortUrl);
+        assertEquals(ResolveResult.Status.CLICK_LIMIT_REACHED, exhausted.getStatus());
+        assertNull("Недоступная ссылка не должна давать URL для перехода", service.getOriginalUrl(shortUrl));
+        
+        assertEquals(ResolveResult.Status.NOT_FOUND, service.resolve("clck.ru/missing").getStatus());
+    }
+
+    @Test
+    public void testHttpRedirect() throws Exception {
+        LinkService service = new LinkService();
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setWorkers(2);
+        HttpRedirectServer server = new HttpRedirectServer(service, config);
+        server.start();
+        try {
+            UUID userId = UUID.randomUUID();
+            String shortUrl = service.createShortLink("https://www.example.com", userId, 1, 24);
+            String code = shortUrl.substring(shortUrl.indexOf('/') + 1);
+            URL url = new URL("http://localhost:" + server.getPort() + "/" + code);
+            
+            HttpURLConnection first = (HttpURLConnection) url.openConnection();
+            first.setInstanceFollowRedirects(false);
+            assertEquals(302, first.getResponseCode());
+            assertEquals("https://www.example.com", first.getHeaderField("Location"));
+            
+            HttpURLConnection second = (HttpURLConnection) url.openConnection();
+            second.setInstanceFollowRedirects(false);
+            assertEquals("Исчерпанная ссылка должна отвечать 410", 410, second.getResponseCode());
+            
+            HttpURLConnection metrics = (HttpURLConnection) new URL(
+                    "http://localhost:" + server.getPort() + "/api/metrics").openConnection();
+            assertEquals(200, metrics.getResponseCode());
+            String text = new String(metrics.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(text, text.contains("urlshortener_resolve_total{result=\"ok\"} 1\n"));
+            assertTrue(text, text.contains("urlshortener_resolve_total{result=\"click_limit_reached\"} 1\n"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testHttpRejectsNonPositiveParameters() throws Exception {
+        LinkService service = new LinkService();
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setWorkers(2);
+        HttpRedirectServer server = new HttpRedirectServer(service, config);
+        server.start();
+        try {
+            UUID userId = UUID.randomUUID();
+            String shortUrl = service.createShortLink("https://www.example.com", userId, 5, 24);
+            String api = "http://localhost:" + server.getPort() + "/api/links";
+            String link = api + "/" + shortUrl.substring(shortUrl.indexOf('/') + 1);
+
+            for (String params : new String[]{"clickLimit=0", "clickLimit=-1", "expirationHours=0", "expirationHours=-5"}) {
+                assertEquals("POST " + params, 400, request("POST", api,
+                        "url=https%3A%2F%2Fwww.example.com&userId=" + userId + "&" + params));
+                assertEquals("PUT " + params, 400, request("PUT", link, "userId=" + userId + "&" + params));
+            }
+            Link unchanged = service.getLinkInfo(shortUrl);
+            assertEquals("Отклоненный запрос не меняет ссылку", 5, unchanged.getClickLimit());
+            assertEquals(1, service.getUserLinkCount(userId));
+
+            assertEquals(204, request("PUT", link, "userId=" + userId + "&clickLimit=7&expirationHours=48"));
+            assertEquals(201, request("POST", api, "url=https%3A%2F%2Fwww.example.com&userId=" + userId
+                    + "&clickLimit=3&expirationHours=1"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Отправляет форму и возвращает код ответа
+     */
+    private static int request(String method, String url, String form) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        connection.getOutputStream().write(form.getBytes(StandardCharsets.UTF_8));
+        return connection.getResponseCode();
+    }
+
+    @Test
+    public void testResolveRemainingClicksUnderContention() throws Exception {
+        LinkService service = new LinkService();
+        String shortUrl = service.createShortLink("https://www.example.com", UUID.randomUUID(), 2000, 24);
+        Set<Integer> remaining = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(executor.submit(() -> {
+                for (int j = 0; j < 250; j++) {
+                    ResolveResult result = service.resolve(shortUrl);
+                    assertTrue(result.isSuccess());
+                    assertTrue("Остаток каждого перехода свой", remaining.add(result.getRemainingClicks()));
+                }
+            }));
+        }
+        executor.shutdown();
+        for (Future<?> task : tasks) {
+            task.get(30, TimeUnit.SECONDS);
+        }
+        assertEquals(2000, remaining.size());
+        assertTrue(remaining.contains(0));
+        assertTrue(remaining.contains(1999));
+        service.shutdown();
+    }
+
+    @Test
+    public void testHttpOverloadAnswers503() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LinkService service = new LinkService() {
+            @Override
+            public ResolveResult resolve(String shortUrl) {
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.resolve(shortUrl);
+            }
+        };
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setWorkers(1);
+        config.setQueueCapacity(1);
+        HttpRedirectServer server = new HttpRedirectServer(service, config);
+        server.start();
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            URL url = new URL("http://localhost:" + server.getPort() + "/missing");
+            List<Future<Integer>> pending = new ArrayList<>();
+            pending.add(clients.submit(() -> ((HttpURLConnection) url.openConnection()).getResponseCode()));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            // Второй запрос занимает очередь, третий ей уже не помещается
+            pending.add(clients.submit(() -> ((HttpURLConnection) url.openConnection()).getResponseCode()));
+            Thread.sleep(200);
+
+            HttpURLConnection rejected = (HttpURLConnection) url.openConnection();
+            rejected.setReadTimeout(5000);
+            assertEquals(503, rejected.getResponseCode());
+            assertEquals("1", rejected.getHeaderField("Retry-After"));
+
+            release.countDown();
+            for (Future<Integer> response : pending) {
+                assertEquals(404, (int) response.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testNioRedirectPipelined() throws Exception {
+        // Очистка не должна успеть удалить просроченную ссылку до запроса
+        LinkServiceConfig serviceConfig = LinkServiceConfig.fromSystemProperties();
+        serviceConfig.setExpirationPrecisionMillis(TimeUnit.HOURS.toMillis(1));
+        LinkService service = new LinkService(serviceConfig);
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setSelectorThreads(1);
+        NioRedirectServer server = new NioRedirectServer(service, config);
+        server.start();
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            UUID userId = UUID.randomUUID();
+            String shortUrl = service.createShortLink("https://www.example.com", userId, 1, 24);
+            String code = shortUrl.substring(shortUrl.indexOf('/') + 1);
+            
+            // Два запроса в одном пакете: второй переход должен упереться в лимит
+            String request = "GET /" + code + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+            socket.getOutputStream().write((request + request).getBytes(StandardCharsets.US_ASCII));
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            
+            assertEquals("HTTP/1.1 302 Found", reader.readLine());
+            assertEquals("Location: https://www.example.com", reader.readLine());
+            while (!reader.readLine().isEmpty()) {
+                // пропускаем заголовки
+            }
+            assertEquals("HTTP/1.1 410 Gone", reader.readLine());
+            skipResponse(reader);
+            
+            // Просроченная ссылка — 410, а не 404, хотя переход уже удалил её
+            String expired = service.createShortLink("https://www.example.com", userId, 10, 0);
+            Thread.sleep(100);
+            socket.getOutputStream().write(("GET /" + expired.substring(expired.indexOf('/') + 1)
+                    + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            assertEquals("HTTP/1.1 410 Gone", reader.readLine());
+            skipResponse(reader);
+            
+            socket.getOutputStream().write("GET /missing HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            assertEquals("HTTP/1.1 404 Not Found", reader.readLine());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Пропускает заголовки и тело ответа с Content-Length
+     */
+    private static void skipResponse(BufferedReader reader) throws Exception {
+        int length = 0;
+        String line;
+        while (!(line = reader.readLine()).isEmpty()) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            reader.read();
+        }
+    }
+
+    @Test
+    public void testSequentialCodesUnique() throws Exception {
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setCodeGenerator("sequential");
+        config.setIdBlockSize(16);
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 200; j++) {
+                    codes.add(service.createShortLink("https://www.example.com", userId, 10, 24));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue("Потоки должны завершиться", executor.awaitTermination(30, TimeUnit.SECONDS));
+        
+        assertEquals("Все коды должны быть уникальными", 1600, codes.size());
+        for (String code : codes) {
+            assertTrue(code.startsWith("clck.ru/" + userId.toString().substring(0, 2)));
+            assertEquals(ShortUrlGenerator.SEQUENTIAL_MIN_LENGTH, code.length() - "clck.ru/".length());
+        }
+        assertEquals(123456789L, ShortUrlGenerator.fromBase62(ShortUrlGenerator.toBase62(123456789L, 7)));
+        service.shutdown();
+    }
+
     @Test
     public void testShortUrlGenerator() {
         UUID userId1 = UUID.randomUUID();
@@ -95,6 +494,11 @@ public class UrlShortenerTest {
         assertNotNull("Короткая ссылка не должна быть null", shortUrl1);
         assertTrue("Короткая ссылка должна начинаться с clck.ru/", shortUrl1.startsWith("clck.ru/"));
         assertNotEquals("Разные пользователи должны получать разные ссылки", shortUrl1, shortUrl2);
+        
+        String randomUrl = ShortUrlGenerator.generateShortUrl(userId1);
+        assertTrue("Префикс — первые символы UUID", randomUrl.startsWith("clck.ru/" + userId1.toString().substring(0, 2)));
+        assertEquals("Код из 6 символов", "clck.ru/".length() + 6, randomUrl.length());
+        assertTrue(shortUrl1.startsWith("clck.ru/" + userId1.toString().substring(0, 2)));
     }
 
     @Test
@@ -112,6 +516,443 @@ public class UrlShortenerTest {
         assertNull("Удаленная ссылка не должна быть найдена", link);
     }
 
+    @Test
+    public void testCompactStorageEngine() throws Exception {
+        checkStorageEngine("compact");
+    }
+
+    @Test
+    public void testOffHeapStorageEngine() throws Exception {
+        checkStorageEngine("offheap");
+    }
+
+    private void checkStorageEngine(String engine) throws Exception {
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setStorageEngine(engine);
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 500; i++) {
+            codes.add(service.createShortLink("https://www.example.com/" + (i % 10), userId, 50, 24));
+        }
+        assertEquals(500, service.getUserLinks(userId).size());
+        String shortUrl = codes.iterator().next();
+        assertTrue(service.getLinkInfo(shortUrl).getOriginalUrl().startsWith("https://www.example.com/"));
+        
+        // Лимит соблюдается точно при параллельных переходах
+        AtomicInteger successful = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 20; j++) {
+                    if (service.resolve(shortUrl).isSuccess()) {
+                        successful.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(50, successful.get());
+        assertEquals(50, service.getLinkInfo(shortUrl).getCurrentClicks());
+        
+        assertTrue(service.updateLink(shortUrl, userId, 100, null));
+        assertEquals(100, service.getLinkInfo(shortUrl).getClickLimit());
+        assertEquals(0, service.getLinkInfo(shortUrl).getCurrentClicks());
+        
+        String removed = codes.stream().filter(code -> !code.equals(shortUrl)).findFirst().get();
+        assertTrue(service.deleteLink(removed, userId));
+        assertNull(service.getLinkInfo(removed));
+        service.shutdown();
+        
+        // После перезапуска ссылки читаются из снимка в компактное хранилище
+        LinkService reloaded = new LinkService(config);
+        assertEquals(100, reloaded.getLinkInfo(shortUrl).getClickLimit());
+        assertNull(reloaded.getLinkInfo(removed));
+        assertEquals(499, reloaded.getUserLinks(userId).size());
+        reloaded.shutdown();
+    }
+
+    @Test
+    public void testUnchangedLinksEvictedAfterSnapshot() {
+        checkEvictionAfterSnapshot("heap");
+        checkEvictionAfterSnapshot("compact");
+    }
+
+    private void checkEvictionAfterSnapshot(String engine) {
+        StorageService.clearAll();
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setStorageEngine(engine);
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            codes.add(service.createShortLink("https://www.example.com/evict" + i, userId, 10));
+        }
+        service.shutdown();
+
+        // Ссылки читаются из отображенного снимка и остаются в памяти до следующего снимка
+        service = new LinkService(config);
+        Link held = service.getLinkInfo(codes.get(0));
+        for (String code : codes) {
+            assertTrue(service.resolve(code).isSuccess());
+        }
+        assertTrue(service.deleteLink(codes.get(1), userId));
+        assertEquals(49, service.getMetrics().getLinkCount());
+        service.saveData();
+        assertEquals("Неизмененные ссылки вытесняются из памяти", 0, service.getMetrics().getLinkCount());
+
+        // Переход по вытесненной ссылке учитывается в заново прочитанной
+        if (engine.equals("heap")) {
+            assertTrue(held.isRetired());
+            assertEquals(0, held.tryReserveClick());
+        }
+        assertTrue(service.resolve(codes.get(0)).isSuccess());
+        assertEquals(2, service.getLinkInfo(codes.get(0)).getCurrentClicks());
+        assertTrue(service.updateLink(codes.get(2), userId, 20, null));
+        assertEquals(20, service.getLinkInfo(codes.get(2)).getClickLimit());
+        assertNull(service.getLinkInfo(codes.get(1)));
+        service.saveData();
+        assertNull("Удаленная ссылка не возвращается после снимка", service.getLinkInfo(codes.get(1)));
+        assertEquals(2, service.getLinkInfo(codes.get(0)).getCurrentClicks());
+        assertEquals(20, service.getLinkInfo(codes.get(2)).getClickLimit());
+        service.shutdown();
+    }
+
+    @Test
+    public void testUsersReadFromSnapshotOnDemand() {
+        StorageService.clearAll();
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        UUID otherId = UUID.randomUUID();
+        for (int i = 0; i < 10; i++) {
+            service.createShortLink("https://www.example.com/user" + i, userId, 10);
+        }
+        service.createShortLink("https://www.example.com/other", otherId, 10);
+        service.shutdown();
+
+        // При запуске пользователи не читаются: снимок пользователей отображается в память
+        service = new LinkService();
+        assertEquals(0, service.getMetrics().getUserCount());
+        assertEquals(10, service.getUserLinkCount(userId));
+        assertEquals(1, service.getMetrics().getUserCount());
+
+        // Новая ссылка пользователя из снимка дополняет его список, а не заменяет
+        service.createShortLink("https://www.example.com/more", otherId, 10);
+        assertEquals(2, service.getUserLinkCount(otherId));
+        service.saveData();
+        service.shutdown();
+
+        service = new LinkService();
+        assertEquals(10, service.getUserLinkCount(userId));
+        assertEquals(2, service.getUserLinkCount(otherId));
+        assertEquals(2, service.getUserLinks(otherId).size());
+        service.shutdown();
+    }
+
+    @Test
+    public void testFirstSnapshotMappedWithoutRestart() {
+        StorageService.clearAll();
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setStorageEngine("compact");
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            codes.add(service.createShortLink("https://www.example.com/first" + i, userId, 10));
+        }
+        assertTrue(service.deleteLink(codes.get(1), userId));
+
+        // Процесс запущен без снимка: записанный снимок отображается сразу, а не после перезапуска
+        service.saveData();
+        assertEquals("Неизмененные ссылки вытесняются из памяти", 0, service.getMetrics().getLinkCount());
+        assertTrue(service.resolve(codes.get(0)).isSuccess());
+        assertEquals(1, service.getLinkInfo(codes.get(0)).getCurrentClicks());
+        assertNull(service.getLinkInfo(codes.get(1)));
+        assertEquals(19, service.getUserLinkCount(userId));
+        service.shutdown();
+    }
+
+    @Test
+    public void testUserLinkIndexPaging() {
+        UserLinkIndex index = new UserLinkIndex();
+        for (int i = 0; i < 200_000; i++) {
+            index.add("clck.ru/u" + i);
+        }
+        // Удаление из середины не зависит от числа ссылок пользователя
+        for (int i = 0; i < 200_000; i += 2) {
+            assertTrue(index.remove("clck.ru/u" + i));
+        }
+        assertEquals(100_000, index.size());
+        
+        List<String> page = new ArrayList<>();
+        UserLinkIndex.Cursor cursor = index.page(null, 3, page);
+        assertEquals(List.of("clck.ru/u1", "clck.ru/u3", "clck.ru/u5"), page);
+        
+        // Ссылку курсора удалили между страницами: обход продолжается со следующей
+        index.remove("clck.ru/u5");
+        page.clear();
+        index.page(cursor, 2, page);
+        assertEquals(List.of("clck.ru/u7", "clck.ru/u9"), page);
+
+        // Курсор переживает уплотнение после массового удаления
+        for (int i = 11; i < 150_000; i += 2) {
+            index.remove("clck.ru/u" + i);
+        }
+        assertFalse(index.contains("clck.ru/u11"));
+        assertTrue(index.contains("clck.ru/u150001"));
+        page.clear();
+        index.page(cursor, 3, page);
+        assertEquals(List.of("clck.ru/u7", "clck.ru/u9", "clck.ru/u150001"), page);
+        for (int i = 11; i < 150_000; i += 2) {
+            index.add("clck.ru/u" + i);
+        }
+        assertEquals("Повторно добавленный код уходит в конец", "clck.ru/u149999", index.toList().get(index.size() - 1));
+
+        int count = 0;
+        Iterator<String> iterator = index.iterator(1000);
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(99_999, count);
+    }
+
+    @Test
+    public void testUserLinksPagination() {
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        List<String> created = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            created.add(service.createShortLink("https://www.example.com/page" + i, userId, 10));
+        }
+        // Каждая третья ссылка почти исчерпана, первая исчерпана полностью
+        for (int i = 0; i < 25; i += 3) {
+            for (int click = 0; click < (i == 0 ? 10 : 9); click++) {
+                service.getOriginalUrl(created.get(i));
+            }
+        }
+        
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            LinkPage page = service.getUserLinks(userId, cursor, 10, LinkPage.Filter.ALL);
+            assertTrue(page.getLinks().size() <= 10);
+            page.getLinks().forEach(link -> seen.add(link.getShortUrl()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(created, seen);
+        assertEquals(3, pages);
+        
+        // Удаление ссылки между страницами не сбивает курсор
+        LinkPage first = service.getUserLinks(userId, null, 5, LinkPage.Filter.ALL);
+        assertTrue(service.deleteLink(created.get(4), userId));
+        LinkPage second = service.getUserLinks(userId, first.getNextCursor(), 5, LinkPage.Filter.ALL);
+        assertEquals(created.get(5), second.getLinks().get(0).getShortUrl());
+        
+        List<String> nearLimit = new ArrayList<>();
+        Iterator<Link> iterator = service.iterateUserLinks(userId, LinkPage.Filter.NEAR_LIMIT, 2);
+        while (iterator.hasNext()) {
+            nearLimit.add(iterator.next().getShortUrl());
+        }
+        assertEquals(List.of(created.get(3), created.get(6), created.get(9), created.get(12),
+                created.get(15), created.get(18), created.get(21), created.get(24)), nearLimit);
+        
+        // Редкий отбор просматривает ограниченное число ссылок и возвращает курсор
+        LinkPage expired = service.getUserLinks(userId, null, 1, LinkPage.Filter.EXPIRED);
+        assertTrue(expired.getLinks().isEmpty());
+        assertTrue(expired.hasMore());
+        assertEquals(24, service.getUserLinkCount(userId));
+        assertEquals(23, service.getUserLinks(userId, null, 100, LinkPage.Filter.ACTIVE).getLinks().size());
+        
+        try {
+            service.getUserLinks(userId, "не-курсор", 10, LinkPage.Filter.ALL);
+            fail("Неверный курсор должен отклоняться");
+        } catch (IllegalArgumentException expected) {
+            // ожидаемо
+        }
+    }
+
+    @Test
+    public void testLatencyHistogramPercentiles() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        // 1..1 000 000 мкс в наносекундах, поровну в двух гистограммах
+        for (long micros = 1; micros <= 1_000_000; micros++) {
+            (micros % 2 == 0 ? first : second).record(micros * 1000);
+        }
+        first.add(second);
+        
+        assertEquals(1_000_000, first.getTotalCount());
+        assertEquals(1_000_000_000L, first.getMax());
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            double expected = percentile * 10_000_000;
+            double actual = first.getValueAtPercentile(percentile);
+            assertTrue("p" + percentile + " = " + actual, actual >= expected && actual <= expected * (1 + 1.0 / 64));
+        }
+        assertEquals(first.getMax(), first.getValueAtPercentile(100));
+        
+        LatencyHistogram small = new LatencyHistogram();
+        small.record(3);
+        small.record(-5);
+        assertEquals("Малые значения хранятся точно", 3, small.getValueAtPercentile(100));
+        assertEquals(0, small.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testServiceMetrics() throws Exception {
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        String shortUrl = service.createShortLink("https://www.example.com/metrics", userId, 2);
+        service.resolve(shortUrl);
+        service.resolve(shortUrl);
+        service.resolve(shortUrl);
+        service.resolve("clck.ru/nonexistent");
+        service.updateLink(shortUrl, userId, 50, null);
+        service.deleteLink(shortUrl, userId);
+        service.flush();
+        
+        ServiceMetrics metrics = service.getMetrics();
+        assertEquals(2, metrics.getResolveOk());
+        assertEquals(1, metrics.getResolveClickLimitReached());
+        assertEquals(1, metrics.getResolveNotFound());
+        assertEquals(1, metrics.getLinksCreated());
+        assertEquals(1, metrics.getLinksUpdated());
+        assertEquals(1, metrics.getLinksDeleted());
+        assertTrue(metrics.getFlushes() > 0);
+        assertTrue(metrics.getJournalBytesWritten() > 0);
+        
+        metrics.register();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("urlshortener:type=LinkService");
+            assertEquals(2L, server.getAttribute(name, "ResolveOk"));
+            assertEquals(metrics.getLinkCount(), server.getAttribute(name, "LinkCount"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer()
+                .isRegistered(new ObjectName("urlshortener:type=LinkService")));
+    }
+
+    @Test
+    public void testHotLinkCacheScanResistance() {
+        HotLinkCache cache = new HotLinkCache(1600, 0);
+        long expiresAt = System.currentTimeMillis() + 3_600_000L;
+        UUID userId = UUID.randomUUID();
+        for (int i = 0; i < 200; i++) {
+            String code = "clck.ru/hot" + i;
+            cache.put(code, new Link(code, "https://www.example.com/" + i, userId, 10, expiresAt), cache.stamp(code));
+            assertNotNull(cache.get(code));
+        }
+        // Однократный проход по множеству кодов не вытесняет ссылки с повторными обращениями
+        for (int i = 0; i < 20_000; i++) {
+            String code = "clck.ru/scan" + i;
+            cache.put(code, new Link(code, "https://www.example.com/scan", userId, 10, expiresAt), cache.stamp(code));
+        }
+        assertTrue(cache.size() <= 1600);
+        assertTrue(cache.getEvictions() > 0);
+        for (int i = 0; i < 200; i++) {
+            assertNotNull("Популярная ссылка вытеснена проходом", cache.get("clck.ru/hot" + i));
+        }
+        
+        // Ссылка, прочитанная до инвалидации, не попадает в кеш
+        long stamp = cache.stamp("clck.ru/stale");
+        cache.invalidate("clck.ru/stale");
+        cache.put("clck.ru/stale", new Link("clck.ru/stale", "https://old.example.com", userId, 10, expiresAt), stamp);
+        assertNull(cache.get("clck.ru/stale"));
+    }
+
+    @Test
+    public void testHotLinkCacheInvalidation() {
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setStorageEngine("compact");
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        String shortUrl = service.createShortLink("https://www.example.com/cached", userId, 3);
+        
+        assertEquals(2, service.resolve(shortUrl).getRemainingClicks());
+        assertEquals(1, service.resolve(shortUrl).getRemainingClicks());
+        assertTrue(service.getMetrics().getLinkCacheHits() >= 1);
+        
+        // Изменение лимита сразу видно при переходе, а не из устаревшей копии в кеше
+        assertTrue(service.updateLink(shortUrl, userId, 10, null));
+        assertEquals(9, service.resolve(shortUrl).getRemainingClicks());
+        
+        assertTrue(service.deleteLink(shortUrl, userId));
+        assertEquals(ResolveResult.Status.NOT_FOUND, service.resolve(shortUrl).getStatus());
+        service.shutdown();
+    }
+
+    @Test
+    public void testMissingCodesAnsweredByFilter() {
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        String shortUrl = service.createShortLink("https://www.example.com/probe", userId, 10);
+        
+        long filteredBefore = service.getMetrics().getFilteredLookups();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ResolveResult.Status.NOT_FOUND, service.resolve("clck.ru/zz" + i + "probe").getStatus());
+        }
+        assertTrue("Почти все несуществующие коды отсекаются фильтром",
+                service.getMetrics().getFilteredLookups() - filteredBefore > 900);
+        
+        // Удаленный код снова отсекается фильтром, не доходя до хранилища
+        assertTrue(service.deleteLink(shortUrl, userId));
+        filteredBefore = service.getMetrics().getFilteredLookups();
+        assertEquals("Ссылка не найдена", service.checkLinkStatus(shortUrl));
+        assertNull(service.getOriginalUrl(shortUrl));
+        assertEquals(filteredBefore + 2, service.getMetrics().getFilteredLookups());
+        
+        // Новая ссылка видна сразу после создания
+        String created = service.createShortLink("https://www.example.com/probe2", userId, 10);
+        assertEquals("https://www.example.com/probe2", service.getOriginalUrl(created));
+        service.saveData();
+        service.shutdown();
+        
+        // После перезапуска фильтр заполняется из индекса снимка в фоне;
+        // до этого поиск идет в обход фильтра, но ответ тот же
+        LinkService reloaded = new LinkService();
+        assertEquals("https://www.example.com/probe2", reloaded.getOriginalUrl(created));
+        long deadline = System.currentTimeMillis() + 5000;
+        do {
+            filteredBefore = reloaded.getMetrics().getFilteredLookups();
+            assertNull(reloaded.getOriginalUrl(shortUrl));
+        } while (reloaded.getMetrics().getFilteredLookups() == filteredBefore
+                && System.currentTimeMillis() < deadline);
+        assertEquals(filteredBefore + 1, reloaded.getMetrics().getFilteredLookups());
+        reloaded.shutdown();
+    }
+
+    @Test
+    public void testCodeFilter() {
+        CodeFilter filter = new CodeFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("clck.ru/code" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue("Добавленный код не может быть пропущен", filter.mightContain("clck.ru/code" + i));
+        }
+        
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain("clck.ru/code" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Слишком много ложных срабатываний: " + falsePositives, falsePositives < 500);
+        
+        for (int i = 0; i < 500; i++) {
+            filter.remove("clck.ru/code" + i);
+        }
+        for (int i = 500; i < 1000; i++) {
+            assertTrue("Удаление не должно затрагивать другие коды", filter.mightContain("clck.ru/code" + i));
+        }
+    }
+
     @Test
     public void testDeleteOtherUserLink() {
         LinkService service = new LinkService();
@@ -155,4 +996,459 @@ public class UrlShortenerTest {
         assertTrue("Статус должен указывать на исчерпание лимита", 
                    status.contains("Лимит") || status.contains("исчерпан"));
     }
+
+    @Test
+    public void testSnapshotFormatRoundTrip() throws Exception {
+        UUID userId = UUID.randomUUID();
+        Link link = new Link("clck.ru/abcdef", "https://www.example.com/путь", userId, 7,
+                LocalDateTime.now().plusHours(5).withNano(0));
+        link.setCurrentClicks(3);
+        User user = new User(userId);
+        user.addShortUrl(link.getShortUrl());
+
+        Path linksFile = Files.createTempFile("links", ".dat");
+        Path usersFile = Files.createTempFile("users", ".dat");
+        try {
+            SnapshotFormat.writeLinks(linksFile, Collections.singletonList(link));
+            SnapshotFormat.writeUsers(usersFile, Collections.singletonList(user));
+
+            Map<String, Link> links = SnapshotFormat.readLinks(linksFile);
+            Link loaded = links.get(link.getShortUrl());
+            assertNotNull("Ссылка должна быть прочитана", loaded);
+            assertEquals("Оригинальный URL должен совпадать", link.getOriginalUrl(), loaded.getOriginalUrl());
+            assertEquals("User ID должен совпадать", userId, loaded.getUserId());
+            assertEquals("Счетчик переходов должен совпадать", 3, loaded.getCurrentClicks());
+            assertEquals("Срок действия должен совпадать", link.getExpiresAt(), loaded.getExpiresAt());
+
+            Map<UUID, User> users = SnapshotFormat.readUsers(usersFile);
+            assertEquals("Список ссылок пользователя должен совпадать",
+                    user.getShortUrls(), users.get(userId).getShortUrls());
+        } finally {
+            Files.deleteIfExists(linksFile);
+            Files.deleteIfExists(usersFile);
+        }
+    }
+
+    @Test
+    public void testCrashBeforeGenerationSwitchKeepsPreviousSnapshot() throws Exception {
+        StorageService.clearAll();
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        String first = service.createShortLink("https://www.example.com/first", userId, 5, 24);
+        service.saveData();
+        long generation = snapshotGeneration();
+        String second = service.createShortLink("https://www.example.com/second", userId, 5, 24);
+        service.flush();
+
+        // Файлы нового поколения записаны, а snapshot.gen переключить не удалось
+        Path blocked = blockFile(Paths.get("data", "snapshot.gen.tmp"));
+        try {
+            service.saveData();
+            assertTrue("Файлы нового поколения уже записаны",
+                    Files.exists(Paths.get("data", "links-" + (generation + 1) + ".dat")));
+            assertEquals("Поколение не переключается без snapshot.gen", generation, snapshotGeneration());
+
+            LinkService restarted = new LinkService();
+            assertNotNull("Ссылка из предыдущего поколения загружается", restarted.getLinkInfo(first));
+            assertNotNull("Ссылка после снимка восстанавливается из журнала", restarted.getLinkInfo(second));
+            assertEquals(2, restarted.getUserLinkCount(userId));
+        } finally {
+            unblockFile(blocked);
+        }
+
+        LinkService restarted = new LinkService();
+        restarted.saveData();
+        assertEquals("Следующий снимок перезаписывает недописанное поколение", generation + 1, snapshotGeneration());
+        assertEquals(2, new LinkService().getUserLinkCount(userId));
+    }
+
+    @Test
+    public void testCorruptSnapshotRejectedOnLoad() throws Exception {
+        StorageService.clearAll();
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        for (int i = 0; i < 20; i++) {
+            service.createShortLink("https://www.example.com/" + i, userId, 5, 24);
+        }
+        service.shutdown();
+        long generation = snapshotGeneration();
+        Path linksFile = Paths.get("data", "links-" + generation + ".dat");
+        Path usersFile = Paths.get("data", "users-" + generation + ".dat");
+        byte[] links = Files.readAllBytes(linksFile);
+        byte[] users = Files.readAllBytes(usersFile);
+
+        byte[] badMagic = links.clone();
+        badMagic[0] ^= 0xFF;
+        byte[] badCount = links.clone();
+        ByteBuffer.wrap(badCount).putInt(8, Integer.MAX_VALUE);
+        byte[][] corrupted = {
+                Arrays.copyOf(links, links.length - 1),
+                Arrays.copyOf(links, links.length / 2),
+                Arrays.copyOf(links, links.length + 16),
+                badMagic,
+                badCount
+        };
+        try {
+            for (byte[] bytes : corrupted) {
+                Files.write(linksFile, bytes);
+                assertRejectedOnLoad();
+            }
+            Files.write(linksFile, links);
+            Files.write(usersFile, Arrays.copyOf(users, users.length - 1));
+            assertRejectedOnLoad();
+        } finally {
+            Files.write(linksFile, links);
+            Files.write(usersFile, users);
+        }
+        assertEquals("Исходный снимок загружается", 20, new LinkService().getUserLinkCount(userId));
+    }
+
+    @Test
+    public void testGenerationSwitchedOnlyAfterFilesMoved() throws Exception {
+        StorageService.clearAll();
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        String first = service.createShortLink("https://www.example.com/first", userId, 5, 24);
+        service.saveData();
+        long generation = snapshotGeneration();
+        byte[] generationFile = Files.readAllBytes(Paths.get("data", "snapshot.gen"));
+        String second = service.createShortLink("https://www.example.com/second", userId, 5, 24);
+
+        // Сбой при записи файла пользователей: ссылки нового поколения уже на месте
+        Path blocked = blockFile(Paths.get("data", "users-" + (generation + 1) + ".dat.tmp"));
+        try {
+            service.saveData();
+        } finally {
+            unblockFile(blocked);
+        }
+        assertArrayEquals("snapshot.gen не меняется, пока не записаны все файлы поколения",
+                generationFile, Files.readAllBytes(Paths.get("data", "snapshot.gen")));
+        assertFalse(Files.exists(Paths.get("data", "users-" + (generation + 1) + ".dat")));
+
+        service.saveData();
+        assertEquals(generation + 1, snapshotGeneration());
+        assertTrue(Files.exists(Paths.get("data", "links-" + (generation + 1) + ".dat")));
+        assertTrue(Files.exists(Paths.get("data", "users-" + (generation + 1) + ".dat")));
+        assertFalse("Предыдущее поколение удаляется после переключения",
+                Files.exists(Paths.get("data", "links-" + generation + ".dat")));
+        try (DirectoryStream<Path> temp = Files.newDirectoryStream(Paths.get("data"), "*.tmp")) {
+            assertFalse("Временные файлы переименованы", temp.iterator().hasNext());
+        }
+        service.shutdown();
+
+        LinkService restarted = new LinkService();
+        assertNotNull(restarted.getLinkInfo(first));
+        assertNotNull(restarted.getLinkInfo(second));
+    }
+
+    private static long snapshotGeneration() throws Exception {
+        return ByteBuffer.wrap(Files.readAllBytes(Paths.get("data", "snapshot.gen"))).getLong(4);
+    }
+
+    /**
+     * Занимает путь непустой директорией, чтобы запись файла по нему завершилась ошибкой
+     */
+    private static Path blockFile(Path file) throws Exception {
+        Files.createDirectories(file);
+        return Files.createFile(file.resolve("blocked"));
+    }
+
+    private static void unblockFile(Path blocked) throws Exception {
+        Files.deleteIfExists(blocked);
+        Files.deleteIfExists(blocked.getParent());
+    }
+
+    private static void assertRejectedOnLoad() {
+        try {
+            new LinkService();
+            fail("Поврежденный снимок должен отклоняться при загрузке");
+        } catch (IllegalStateException expected) {
+            // ожидаемо
+        }
+    }
+
+    @Test
+    public void testLegacyDataMigratedOnStart() throws Exception {
+        StorageService.clearAll();
+        UUID userId = UUID.randomUUID();
+        LocalDateTime expiresAt = LocalDateTime.now().plusHours(5).withNano(0);
+        Link link = new Link("clck.ru/legacy", "https://www.example.com/старый", userId, 7, expiresAt);
+        link.setCurrentClicks(3);
+        User user = new User(userId);
+        user.addShortUrl(link.getShortUrl());
+
+        // Файлы в старой раскладке, записанные Java-сериализацией
+        Path linksFile = Paths.get("data", "links.dat");
+        Path usersFile = Paths.get("data", "users.dat");
+        Path linksBackup = Paths.get("data", "links.dat.legacy");
+        Path usersBackup = Paths.get("data", "users.dat.legacy");
+        Files.createDirectories(linksFile.getParent());
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(linksFile))) {
+            out.writeObject(new HashMap<>(Collections.singletonMap(link.getShortUrl(), link)));
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(usersFile))) {
+            out.writeObject(new HashMap<>(Collections.singletonMap(userId, user)));
+        }
+
+        try {
+            LinkService service = new LinkService();
+            assertLegacyLinkLoaded(service, userId, expiresAt);
+            assertTrue("Файлы в двоичном формате", SnapshotFormat.hasMagic(linksFile, SnapshotFormat.LINKS_MAGIC));
+            assertTrue(SnapshotFormat.hasMagic(usersFile, SnapshotFormat.USERS_MAGIC));
+            assertTrue("Исходные файлы сохраняются", Files.exists(linksBackup) && Files.exists(usersBackup));
+
+            // Повторный запуск читает уже переведенные файлы и не мигрирует их снова
+            Files.delete(linksBackup);
+            Files.delete(usersBackup);
+            service = new LinkService();
+            assertLegacyLinkLoaded(service, userId, expiresAt);
+            assertFalse("Миграция не повторяется", Files.exists(linksBackup) || Files.exists(usersBackup));
+
+            // После снимка данные живут в файлах поколения
+            service.shutdown();
+            assertLegacyLinkLoaded(new LinkService(), userId, expiresAt);
+            assertFalse(Files.exists(linksBackup) || Files.exists(usersBackup));
+        } finally {
+            Files.deleteIfExists(linksBackup);
+            Files.deleteIfExists(usersBackup);
+            StorageService.clearAll();
+        }
+    }
+
+    private static void assertLegacyLinkLoaded(LinkService service, UUID userId, LocalDateTime expiresAt) {
+        Link loaded = service.getLinkInfo("clck.ru/legacy");
+        assertNotNull("Ссылка из старого формата должна загрузиться", loaded);
+        assertEquals("https://www.example.com/старый", loaded.getOriginalUrl());
+        assertEquals(userId, loaded.getUserId());
+        assertEquals("Лимит переходов сохраняется", 7, loaded.getClickLimit());
+        assertEquals("Счетчик переходов сохраняется", 3, loaded.getCurrentClicks());
+        assertEquals("Срок действия сохраняется", expiresAt, loaded.getExpiresAt());
+        assertEquals("Пользователь сохраняется со списком ссылок", 1, service.getUserLinkCount(userId));
+    }
+
+    @Test
+    public void testConfigRejectsInvalidValues() {
+        LinkServiceConfig config = new LinkServiceConfig();
+        List<Runnable> invalid = List.of(
+                () -> config.setFlushIntervalMillis(0),
+                () -> config.setFlushDirtyThreshold(0),
+                () -> config.setClockResolutionMillis(-1),
+                () -> config.setClickReconcileIntervalMillis(0),
+                () -> config.setIdBlockSize(0),
+                () -> config.setCodeFilterCapacity(-8),
+                () -> config.setExpirationPrecisionMillis(0),
+                () -> config.setCompactionThreshold(-1),
+                () -> config.setHotCacheMaxBytes(-1));
+        for (Runnable setter : invalid) {
+            try {
+                setter.run();
+                fail("Недопустимое значение настройки должно отклоняться");
+            } catch (IllegalArgumentException expected) {
+                // ожидаемо
+            }
+        }
+        assertEquals("Отклоненное значение не сохраняется", 1000, config.getFlushDirtyThreshold());
+
+        // Системные свойства проходят те же проверки
+        System.setProperty("urlshortener.codes.idBlockSize", "0");
+        try {
+            LinkServiceConfig.fromSystemProperties();
+            fail("Недопустимое системное свойство должно отклоняться");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("urlshortener.codes.idBlockSize"));
+        } finally {
+            System.clearProperty("urlshortener.codes.idBlockSize");
+        }
+    }
+
+    @Test
+    public void testChangesRecoveredFromJournalAfterFlush() {
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        
+        String shortUrl = service.createShortLink("https://www.example.com", userId, 5, 24);
+        service.getOriginalUrl(shortUrl);
+        service.flush();
+        
+        LinkService restarted = new LinkService();
+        Link link = restarted.getLinkInfo(shortUrl);
+        assertNotNull("Ссылка должна восстановиться из журнала", link);
+        assertEquals("Счетчик переходов должен восстановиться из журнала", 1, link.getCurrentClicks());
+    }
+
+    @Test
+    public void testLongUrlRecoveredFromJournal() {
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        StringBuilder longUrl = new StringBuilder("https://www.example.com/");
+        while (longUrl.length() < 60_000) {
+            longUrl.append("путь/");
+        }
+
+        // В modified UTF-8 такой URL занимает больше 64 КБ
+        String shortUrl = service.createShortLink(longUrl.toString(), userId, 5, 24);
+        service.flush();
+
+        LinkService restarted = new LinkService();
+        Link link = restarted.getLinkInfo(shortUrl);
+        assertNotNull("Ссылка с длинным URL должна восстановиться из журнала", link);
+        assertEquals(longUrl.toString(), link.getOriginalUrl());
+
+        try {
+            service.createShortLink("https://www.example.com/" + new String(new char[70_000]).replace('\0', 'a'),
+                    userId, 5, 24);
+            fail("Слишком длинный URL должен отклоняться");
+        } catch (IllegalArgumentException expected) {
+            // ожидаемо
+        }
+    }
+
+    @Test
+    public void testCompactionThresholdGrowsWithSnapshot() {
+        StorageService.clearAll();
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setCompactionThreshold(10);
+        config.setCompactionSnapshotPercent(100);
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        String shortUrl = service.createShortLink("https://www.example.com", userId, 1000, 24);
+        for (int i = 1; i < 200; i++) {
+            service.createShortLink("https://www.example.com/" + i, userId, 1, 24);
+        }
+        service.saveData();
+        long snapshots = service.getMetrics().getSnapshots();
+
+        // 50 изменений при снимке из 201 записи — журнал еще не сворачивается
+        for (int i = 0; i < 50; i++) {
+            service.getOriginalUrl(shortUrl);
+        }
+        service.flush();
+        assertEquals("Снимок не должен перезаписываться каждые 10 записей",
+                snapshots, service.getMetrics().getSnapshots());
+
+        for (int i = 0; i < 200; i++) {
+            service.getOriginalUrl(shortUrl);
+        }
+        service.flush();
+        assertTrue("Журнал размером со снимок должен свернуться",
+                service.getMetrics().getSnapshots() > snapshots);
+        service.shutdown();
+    }
+
+    @Test
+    public void testOutOfOrderClickRecordsDoNotRollBackCounter() {
+        LinkService service = new LinkService();
+        String shortUrl = service.createShortLink("https://www.example.com", UUID.randomUUID(), 10, 24);
+        service.flush();
+
+        // Параллельные переходы могут попасть в журнал не по порядку зарезервированных значений
+        JournalService journal = new JournalService("data/journal.log");
+        journal.open();
+        journal.logClick(shortUrl, 6);
+        journal.logClick(shortUrl, 5);
+        journal.close();
+
+        LinkService restarted = new LinkService();
+        assertEquals("Меньшее значение из журнала не должно откатить счетчик назад",
+                6, restarted.getLinkInfo(shortUrl).getCurrentClicks());
+    }
+
+    @Test
+    public void testClickLimitUnderConcurrency() throws Exception {
+        LinkService service = new LinkService();
+        UUID userId = UUID.randomUUID();
+        int clickLimit = 100;
+        String shortUrl = service.createShortLink("https://www.example.com", userId, clickLimit, 24);
+        
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successful = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 50; j++) {
+                    if (service.getOriginalUrl(shortUrl) != null) {
+                        successful.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue("Потоки должны завершиться", executor.awaitTermination(30, TimeUnit.SECONDS));
+        
+        assertEquals("Успешных переходов должно быть ровно столько, сколько позволяет лимит",
+                clickLimit, successful.get());
+        assertEquals("Счетчик переходов должен совпадать с лимитом",
+                clickLimit, service.getLinkInfo(shortUrl).getCurrentClicks());
+    }
+
+    @Test
+    public void testStripedCounterResetAndHeadroom() throws Exception {
+        // Ссылке с лимитом меньше запаса распределенный счетчик не нужен
+        Link small = new Link("small", "https://www.example.com", UUID.randomUUID(), 10, Long.MAX_VALUE);
+        AtomicInteger registered = new AtomicInteger();
+        assertEquals(0, small.tryRecordStripedClick(1024, link -> registered.incrementAndGet()));
+        assertEquals("Ссылка без запаса не должна регистрироваться", 0, registered.get());
+
+        // Сброс счетчика во время выдачи квот не оставляет лишних квот
+        Link link = new Link("reset", "https://www.example.com", UUID.randomUUID(), Integer.MAX_VALUE, Long.MAX_VALUE);
+        AtomicInteger stop = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                while (stop.get() == 0) {
+                    link.tryRecordStripedClick(64, l -> { });
+                }
+            });
+        }
+        for (int i = 0; i < 2000; i++) {
+            link.setCurrentClicks(0);
+        }
+        stop.set(1);
+        executor.shutdown();
+        assertTrue("Потоки должны завершиться", executor.awaitTermination(30, TimeUnit.SECONDS));
+        link.reconcileClicks();
+        assertTrue("Счетчик после сброса не может стать отрицательным", link.getCurrentClicks() >= 0);
+    }
+
+    @Test
+    public void testStripedClicksRespectLimit() throws Exception {
+        LinkServiceConfig config = LinkServiceConfig.fromSystemProperties();
+        config.setStripedClicks(true);
+        config.setStripedClickMargin(64);
+        LinkService service = new LinkService(config);
+        UUID userId = UUID.randomUUID();
+        int clickLimit = 5000;
+        String shortUrl = service.createShortLink("https://www.example.com", userId, clickLimit, 24);
+        
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger successful = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if (service.getOriginalUrl(shortUrl) != null) {
+                        successful.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue("Потоки должны завершиться", executor.awaitTermination(30, TimeUnit.SECONDS));
+        
+        assertEquals("Распределенный счетчик не должен превышать лимит", clickLimit, successful.get());
+        assertTrue("Лимит должен быть исчерпан", service.getLinkInfo(shortUrl).isClickLimitReached());
+        
+        service.shutdown();
+        LinkService reloaded = new LinkService();
+        assertEquals("Сверенные переходы должны сохраниться",
+                clickLimit, reloaded.getLinkInfo(shortUrl).getCurrentClicks());
+        reloaded.shutdown();
+    }
 }